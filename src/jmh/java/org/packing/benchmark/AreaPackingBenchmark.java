@@ -0,0 +1,75 @@
+package jmh.java.org.packing.benchmark;
+
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.primitives.MArea;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Packs orders containing non rectangular pieces, which go through the
+ * Area based bounding box packing of {@link Bin}. Every tenth piece of a
+ * uniform order is turned into an L shape.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AreaPackingBenchmark {
+
+    @Param({"100", "1000"})
+    public int pieces;
+
+    private final Dimension bin = new Dimension(3000, 2000);
+
+    private MArea[] order;
+
+    @Setup(Level.Invocation)
+    public void generate() {
+        order = order(pieces, bin);
+    }
+
+    @Benchmark
+    public Bin[] pack() {
+        return BinPacking.BinPackingStrategy(order, bin);
+    }
+
+    private static MArea[] order(int n, Dimension bin) {
+        MArea[] pieces = InstanceGenerator.UNIFORM.generate(n, bin, 42);
+        for (int i = 0; i < n; i += 10) {
+            Rectangle2D bounds = pieces[i].getBounds2D();
+            double w = bounds.getWidth();
+            double h = bounds.getHeight();
+            Path2D.Double l = new Path2D.Double();
+            l.moveTo(0, 0);
+            l.lineTo(w, 0);
+            l.lineTo(w, h / 2);
+            l.lineTo(w / 2, h / 2);
+            l.lineTo(w / 2, h);
+            l.lineTo(0, h);
+            l.closePath();
+            pieces[i] = new MArea(l, pieces[i].getID());
+        }
+        return pieces;
+    }
+}
@@ -0,0 +1,142 @@
+package jmh.java.org.packing.benchmark;
+
+
+
+import main.java.org.packing.core.FitScan;
+import main.java.org.packing.utils.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares the best short side fit scans on free lists of 1000 to 100000
+ * random rectangles: the former scan of a list of rectangles, the scalar
+ * scan of separate width and height arrays, and the {@link FitScan} scan
+ * with its kernel, which uses the Vector API when run with
+ * {@code --add-modules jdk.incubator.vector}. Scores are per query; the
+ * setup fails if the three scans do not select the same rectangles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FitScanBenchmark {
+
+    private static final int QUERIES = 1000;
+
+    @Param({"1000", "10000", "100000"})
+    public int free;
+
+    @Param({"42"})
+    public long seed;
+
+    private List<Rectangle2D.Double> list;
+
+    private double[] widths;
+
+    private double[] heights;
+
+    private double[] pieces;
+
+    @Setup
+    public void generate() {
+        Random random = new Random(seed);
+        list = new ArrayList<>();
+        widths = new double[free];
+        heights = new double[free];
+        for (int i = 0; i < free; i++) {
+            widths[i] = 1 + random.nextInt(1000);
+            heights[i] = 1 + random.nextInt(1000);
+            list.add(new Rectangle2D.Double(0, 0, widths[i], heights[i]));
+        }
+        pieces = new double[2 * QUERIES];
+        for (int i = 0; i < pieces.length; i++) {
+            pieces[i] = 1 + random.nextInt(1000);
+        }
+        for (int q = 0; q < QUERIES; q++) {
+            double w = pieces[2 * q];
+            double h = pieces[2 * q + 1];
+            int byList = scanList(list, w, h);
+            if (byList != FitScan.findBestShortSideFitScalar(widths, heights, free, w, h)
+                    || byList != FitScan.findBestShortSideFit(widths, heights, free, w, h)) {
+                throw new IllegalStateException("The scans select different rectangles for query " + q);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int list() {
+        int sum = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            sum += scanList(list, pieces[2 * q], pieces[2 * q + 1]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int scalar() {
+        int sum = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            sum += FitScan.findBestShortSideFitScalar(widths, heights, free, pieces[2 * q], pieces[2 * q + 1]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public int kernel() {
+        int sum = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            sum += FitScan.findBestShortSideFit(widths, heights, free, pieces[2 * q], pieces[2 * q + 1]);
+        }
+        return sum;
+    }
+
+    /**
+     * The scan of a list of rectangles, from the last to the first, as done
+     * before the sizes were kept in arrays.
+     */
+    private static int scanList(List<Rectangle2D.Double> freeRectangles, double width, double height) {
+        Rectangle2D pieceBB = new Rectangle2D.Double(0, 0, width, height);
+        int res = -1;
+        double min = Double.MAX_VALUE;
+        for (int i = freeRectangles.size() - 1; i >= 0; i--) {
+            Rectangle2D.Double freeRect = freeRectangles.get(i);
+            if (Utils.fits(pieceBB, freeRect)) {
+                double m = Math.min(freeRect.getWidth() - pieceBB.getWidth(), freeRect.getHeight() - pieceBB.getHeight());
+                if (m < min) {
+                    min = m;
+                    res = i << 1;
+                }
+            }
+            if (Utils.fitsRotated(pieceBB, freeRect)) {
+                double m = Math.min(freeRect.getWidth() - pieceBB.getHeight(), freeRect.getHeight() - pieceBB.getWidth());
+                if (m < min) {
+                    min = m;
+                    res = (i << 1) | 1;
+                }
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,69 @@
+package jmh.java.org.packing.benchmark;
+
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.FreeSpaceIndex;
+import main.java.org.packing.primitives.MArea;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares the free space indexes on orders of random rectangles with sides
+ * between 1 and {@code maxSide}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FreeSpaceIndexBenchmark {
+
+    @Param
+    public FreeSpaceIndex index;
+
+    @Param({"2000"})
+    public int pieces;
+
+    @Param({"60"})
+    public int maxSide;
+
+    @Param({"42"})
+    public long seed;
+
+    private final Dimension bin = new Dimension(3000, 2000);
+
+    private MArea[] order;
+
+    @Setup(Level.Invocation)
+    public void generate() {
+        Random random = new Random(seed);
+        order = new MArea[pieces];
+        for (int i = 0; i < pieces; i++) {
+            order[i] = new MArea(new Rectangle2D.Double(0, 0, 1 + random.nextInt(maxSide), 1 + random.nextInt(maxSide)), i);
+        }
+    }
+
+    @Benchmark
+    public Bin[] pack() {
+        return BinPacking.BinPackingStrategy(order, bin, index);
+    }
+}
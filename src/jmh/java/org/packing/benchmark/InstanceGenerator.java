@@ -0,0 +1,99 @@
+package jmh.java.org.packing.benchmark;
+
+
+
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+
+/**
+ * Synthetic rectangle orders for the benchmarks. Side lengths are whole
+ * numbers relative to the bin dimensions, so every piece fits in an empty
+ * bin in at least one orientation.
+ */
+public enum InstanceGenerator {
+    /**
+     * Sides uniformly distributed up to a third of the bin.
+     */
+    UNIFORM {
+        @Override
+        double[] side(Random random, Dimension bin) {
+            return new double[]{uniform(random, bin.width / 3), uniform(random, bin.height / 3)};
+        }
+    },
+
+    /**
+     * Mostly small pieces with a long tail of large ones.
+     */
+    SKEWED {
+        @Override
+        double[] side(Random random, Dimension bin) {
+            double scale = Math.pow(random.nextDouble(), 4);
+            return new double[]{1 + Math.floor(scale * (bin.width / 2 - 1)), 1 + Math.floor(random.nextDouble() * scale * (bin.height / 2 - 1))};
+        }
+    },
+
+    /**
+     * Pieces of at most one hundredth of the bin sides.
+     */
+    MANY_TINY {
+        @Override
+        double[] side(Random random, Dimension bin) {
+            return new double[]{uniform(random, Math.max(bin.width / 100, 1)), uniform(random, Math.max(bin.height / 100, 1))};
+        }
+    },
+
+    /**
+     * Pieces between a third and the whole of the bin sides.
+     */
+    FEW_HUGE {
+        @Override
+        double[] side(Random random, Dimension bin) {
+            return new double[]{bin.width / 3 + uniform(random, bin.width - bin.width / 3),
+                    bin.height / 3 + uniform(random, bin.height - bin.height / 3)};
+        }
+    },
+
+    /**
+     * Pieces whose sides differ by at most a tenth.
+     */
+    NEAR_SQUARE {
+        @Override
+        double[] side(Random random, Dimension bin) {
+            double side = uniform(random, Math.min(bin.width, bin.height) / 4);
+            return new double[]{side, Math.max(1, Math.floor(side * (0.9 + 0.2 * random.nextDouble())))};
+        }
+    };
+
+    /**
+     * Generates an order of rectangles with IDs 0 to n - 1.
+     *
+     * @param n    number of pieces.
+     * @param bin  dimensions of the bins.
+     * @param seed seed of the random generator.
+     * @return the pieces.
+     */
+    public MArea[] generate(int n, Dimension bin, long seed) {
+        Random random = new Random(seed);
+        MArea[] pieces = new MArea[n];
+        for (int i = 0; i < n; i++) {
+            double[] side = side(random, bin);
+            double width = Math.min(side[0], Math.min(bin.width, bin.height));
+            double height = Math.min(side[1], Math.max(bin.width, bin.height));
+            pieces[i] = new MArea(new Rectangle2D.Double(0, 0, width, height), i);
+        }
+        return pieces;
+    }
+
+    /**
+     * Draws the width and height of one piece.
+     */
+    abstract double[] side(Random random, Dimension bin);
+
+    private static double uniform(Random random, int max) {
+        return 1 + random.nextInt(Math.max(max, 1));
+    }
+}
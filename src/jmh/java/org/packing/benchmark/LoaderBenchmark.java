@@ -0,0 +1,74 @@
+package jmh.java.org.packing.benchmark;
+
+
+
+import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.utils.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares the Scanner based loader with the memory mapped one on a
+ * synthetic order file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoaderBenchmark {
+
+    @Param({"1000000"})
+    public int pieces;
+
+    private Path file;
+
+    @Setup
+    public void write() throws IOException {
+        Dimension bin = new Dimension(3000, 2000);
+        file = Files.createTempFile("order", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write(bin.width + " " + bin.height + "\n" + pieces + "\n");
+            for (MArea piece : InstanceGenerator.UNIFORM.generate(pieces, bin, 42)) {
+                writer.write(piece.getBounds2D().getWidth() + " " + piece.getBounds2D().getHeight() + "\n");
+            }
+        }
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Object scanner() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            return Utils.loadPieces(reader);
+        }
+    }
+
+    @Benchmark
+    public Object mapped() throws IOException {
+        return Utils.loadPieces(file);
+    }
+}
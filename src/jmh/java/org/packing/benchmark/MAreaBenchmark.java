@@ -0,0 +1,116 @@
+package jmh.java.org.packing.benchmark;
+
+
+
+import main.java.org.packing.primitives.MArea;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the {@link MArea} operations on the packing hot path:
+ * {@link MArea#intersection}, {@link MArea#rotate},
+ * {@link MArea#placeInPosition} and {@link MArea#getBoundingBox2D}, on a
+ * rectangle and against the union of {@code placed} rectangles. Scores are
+ * per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MAreaBenchmark {
+
+    private static final int OPERATIONS = 10_000;
+
+    @Param({"1000"})
+    public int placed;
+
+    private MArea[] pieces;
+
+    private MArea total;
+
+    @Setup
+    public void generate() {
+        pieces = InstanceGenerator.UNIFORM.generate(OPERATIONS, new Dimension(3000, 2000), 42);
+        total = new MArea();
+        int columns = (int) Math.ceil(Math.sqrt(placed));
+        for (int i = 0; i < placed; i++) {
+            total.add(new MArea(new Rectangle2D.Double((i % columns) * 20, (i / columns) * 20, 10, 10), i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int intersection() {
+        int hits = 0;
+        for (MArea piece : pieces) {
+            if (piece.intersection(total)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public MArea[] rotate(Copies copies) {
+        for (MArea piece : copies.pieces) {
+            piece.rotate(90);
+        }
+        return copies.pieces;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public MArea[] placeInPosition(Copies copies) {
+        for (MArea piece : copies.pieces) {
+            piece.placeInPosition(100, 200);
+        }
+        return copies.pieces;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public double getBoundingBox2D() {
+        double sum = 0;
+        for (MArea piece : pieces) {
+            sum += piece.getBoundingBox2D().getWidth();
+        }
+        return sum;
+    }
+
+    /**
+     * Fresh copies of the pieces for the operations that move them, so that
+     * the copies are only made, and counted by {@code -prof gc}, for those.
+     */
+    @State(Scope.Thread)
+    public static class Copies {
+
+        private MArea[] pieces;
+
+        @Setup(Level.Invocation)
+        public void copy(MAreaBenchmark benchmark) {
+            pieces = new MArea[benchmark.pieces.length];
+            for (int i = 0; i < pieces.length; i++) {
+                pieces[i] = new MArea(benchmark.pieces[i], benchmark.pieces[i].getID());
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package jmh.java.org.packing.benchmark;
+
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.NfpNesting;
+import main.java.org.packing.primitives.MArea;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares bounding box packing with no-fit polygon nesting on irregular
+ * parts (L shapes, triangles, ellipses and U shapes). The order repeats
+ * {@code shapes} distinct parts. The nesting engine is measured cold, with
+ * a new engine per invocation, and warm, with its no-fit polygons already
+ * cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NestingBenchmark {
+
+    @Param({"100"})
+    public int pieces;
+
+    @Param({"10", "100"})
+    public int shapes;
+
+    private final Dimension bin = new Dimension(1000, 700);
+
+    private MArea[] catalogue;
+
+    private NfpNesting warm;
+
+    private MArea[] order;
+
+    @Setup
+    public void generate() {
+        catalogue = parts(shapes, 9);
+        warm = nesting();
+        warm.NestingStrategy(order(catalogue, pieces));
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        order = order(catalogue, pieces);
+    }
+
+    @Benchmark
+    public Bin[] boundingBoxes() {
+        return BinPacking.BinPackingStrategy(order, bin);
+    }
+
+    @Benchmark
+    public Bin[] noFitCold() {
+        return nesting().NestingStrategy(order);
+    }
+
+    @Benchmark
+    public Bin[] noFitWarm() {
+        return warm.NestingStrategy(order);
+    }
+
+    private NfpNesting nesting() {
+        return new NfpNesting(bin, new double[]{0, 90, 180, 270}, piece -> piece.getID() % shapes,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Copies of the catalogue parts, piece i being part i modulo the
+     * catalogue size.
+     */
+    private static MArea[] order(MArea[] catalogue, int n) {
+        MArea[] pieces = new MArea[n];
+        for (int i = 0; i < n; i++) {
+            pieces[i] = new MArea(catalogue[i % catalogue.length], i);
+        }
+        return pieces;
+    }
+
+    private static MArea[] parts(int n, long seed) {
+        Random random = new Random(seed);
+        MArea[] parts = new MArea[n];
+        for (int i = 0; i < n; i++) {
+            double w = 60 + random.nextInt(200);
+            double h = 60 + random.nextInt(200);
+            Path2D.Double s = new Path2D.Double();
+            switch (i % 4) {
+                case 0:
+                    s.moveTo(0, 0);
+                    s.lineTo(w, 0);
+                    s.lineTo(w, h / 3);
+                    s.lineTo(w / 3, h / 3);
+                    s.lineTo(w / 3, h);
+                    s.lineTo(0, h);
+                    break;
+                case 1:
+                    s.moveTo(0, 0);
+                    s.lineTo(w, 0);
+                    s.lineTo(w / 2, h);
+                    break;
+                case 2:
+                    s.append(new Ellipse2D.Double(0, 0, w, h), false);
+                    break;
+                default:
+                    s.moveTo(0, 0);
+                    s.lineTo(w, 0);
+                    s.lineTo(w, h);
+                    s.lineTo(2 * w / 3, h);
+                    s.lineTo(2 * w / 3, h / 3);
+                    s.lineTo(w / 3, h / 3);
+                    s.lineTo(w / 3, h);
+                    s.lineTo(0, h);
+            }
+            s.closePath();
+            parts[i] = new MArea(s, i);
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,65 @@
+package jmh.java.org.packing.benchmark;
+
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.primitives.MArea;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares filling the bins one after the other with first fit decreasing
+ * over all the open bins, on the orders of every {@link InstanceGenerator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OpenBinsBenchmark {
+
+    @Param
+    public InstanceGenerator generator;
+
+    @Param({"2000"})
+    public int pieces;
+
+    @Param({"42"})
+    public long seed;
+
+    private final Dimension bin = new Dimension(3000, 2000);
+
+    private MArea[] order;
+
+    @Setup(Level.Invocation)
+    public void generate() {
+        order = generator.generate(pieces, bin, seed);
+    }
+
+    @Benchmark
+    public Bin[] perBin() {
+        return BinPacking.BinPackingStrategy(order, bin, PackingOptions.DEFAULT);
+    }
+
+    @Benchmark
+    public Bin[] firstFitDecreasing() {
+        return BinPacking.FirstFitDecreasingStrategy(order, bin, PackingOptions.DEFAULT);
+    }
+}
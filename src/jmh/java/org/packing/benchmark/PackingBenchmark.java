@@ -0,0 +1,61 @@
+package jmh.java.org.packing.benchmark;
+
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.primitives.MArea;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Packs the synthetic orders of every {@link InstanceGenerator} at growing
+ * sizes with the default options. This is the baseline to compare
+ * performance changes against.
+ * <p>
+ * The order is generated again before each invocation, since packing moves
+ * its pieces; {@code -prof gc} counts that allocation too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PackingBenchmark {
+
+    @Param
+    public InstanceGenerator generator;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int pieces;
+
+    private final Dimension bin = new Dimension(3000, 2000);
+
+    private MArea[] order;
+
+    @Setup(Level.Invocation)
+    public void generate() {
+        order = generator.generate(pieces, bin, 42);
+    }
+
+    @Benchmark
+    public Bin[] pack() {
+        return BinPacking.BinPackingStrategy(order, bin, PackingOptions.DEFAULT);
+    }
+}
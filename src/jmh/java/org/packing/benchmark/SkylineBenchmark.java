@@ -0,0 +1,73 @@
+package jmh.java.org.packing.benchmark;
+
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.PackingEngine;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.core.PlacementRule;
+import main.java.org.packing.primitives.MArea;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares the packing engines on the orders of every
+ * {@link InstanceGenerator}: the maximal rectangles with best short side
+ * fit, and both skylines with the bottom left and the min waste rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SkylineBenchmark {
+
+    @Param
+    public InstanceGenerator generator;
+
+    @Param({"MAXIMAL_RECTANGLES/BEST_SHORT_SIDE_FIT", "SKYLINE/BOTTOM_LEFT", "SKYLINE/BEST_SHORT_SIDE_FIT",
+            "SKYLINE_WASTE_MAP/BOTTOM_LEFT", "SKYLINE_WASTE_MAP/BEST_SHORT_SIDE_FIT"})
+    public String variant;
+
+    @Param({"100000"})
+    public int pieces;
+
+    private final Dimension bin = new Dimension(3000, 2000);
+
+    private PackingOptions options;
+
+    private MArea[] order;
+
+    @Setup
+    public void parseVariant() {
+        String[] parts = variant.split("/");
+        options = PackingOptions.DEFAULT.withEngine(PackingEngine.valueOf(parts[0]))
+                .withPlacementRule(PlacementRule.valueOf(parts[1]));
+    }
+
+    @Setup(Level.Invocation)
+    public void generate() {
+        order = generator.generate(pieces, bin, 42);
+    }
+
+    @Benchmark
+    public Bin[] pack() {
+        return BinPacking.BinPackingStrategy(order, bin, options);
+    }
+}
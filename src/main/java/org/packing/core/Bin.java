@@ -1,7 +1,6 @@
 package main.java.org.packing.core;
 
 import main.java.org.packing.primitives.MArea;
-import main.java.org.packing.utils.Utils;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
@@ -20,30 +19,159 @@ public class Bin {
 	/**
 	 * Pieces contained in the bin.
 	 */
-	private MArea[] placedPieces;
+	private final List<MArea> placedPieces = new ArrayList<>();
+
+	/**
+	 * Bounding boxes of the placed pieces, as consecutive x, y, width and
+	 * height records in placement order. Kept along with the pieces so that
+	 * the Area path only tests a new piece against the pieces its box
+	 * overlaps, whatever the number of calls that placed them.
+	 */
+	private double[] placedBounds = new double[4 * 16];
+
+	/**
+	 * Sum of the areas of the placed pieces.
+	 */
+	private double usedArea;
+
+	/**
+	 * Options controlling how pieces are packed.
+	 */
+	private final PackingOptions options;
+
+	/**
+	 * Metrics of the options.
+	 */
+	private final PackingMetrics metrics;
+
+	/**
+	 * Whether measurements are taken, false with disabled metrics so the
+	 * clock is not read.
+	 */
+	private final boolean metered;
+
+	/**
+	 * Largest number of free rectangles held by the bin.
+	 */
+	private int freeRectanglesPeak = 1;
 
 	/**
 	 * Rectangular holes in the bin
 	 */
 	private List<Rectangle2D.Double> freeRectangles = new ArrayList<java.awt.geom.Rectangle2D.Double>();
 
+	/**
+	 * Widths and heights of the free rectangles, in list order, for the fit
+	 * scan of {@link #findWhereToPlace}.
+	 */
+	private double[] freeWidths = new double[16];
+
+	private double[] freeHeights = new double[16];
+
+	/**
+	 * List reused by {@link #eliminateNonMaximal} for the next free
+	 * rectangles, swapped with {@link #freeRectangles} after each placement.
+	 */
+	private List<Rectangle2D.Double> spareRectangles = new ArrayList<>();
+
+	/**
+	 * Flags reused by {@link #eliminateNonMaximal} for the boxes found to be
+	 * non-maximal.
+	 */
+	private boolean[] contained = new boolean[16];
+
+	/**
+	 * Primitive packer used while the bin only contains rectangular pieces
+	 * it accepts, null once another piece has been packed.
+	 */
+	private PrimitivePacker rectanglePacker;
+
+	/**
+	 * Containment tests made by {@link #eliminateNonMaximal}.
+	 */
+	private long containmentTests;
+
+	/**
+	 * Containment tests avoided by {@link #eliminateNonMaximal}.
+	 */
+	private long containmentTestsSaved;
+
 	/**
 	 * Initializes this bin with the specified dimensions.
 	 *
 	 * @param dimension dimensions for this bin.
 	 */
 	public Bin(Dimension dimension) {
+		this(dimension, PackingOptions.DEFAULT);
+	}
+
+	/**
+	 * Initializes this bin with the specified dimensions and the index to use
+	 * over its free rectangles when packing rectangular pieces.
+	 *
+	 * @param dimension      dimensions for this bin.
+	 * @param freeSpaceIndex index over the free rectangles.
+	 */
+	public Bin(Dimension dimension, FreeSpaceIndex freeSpaceIndex) {
+		this(dimension, PackingOptions.DEFAULT.withFreeSpaceIndex(freeSpaceIndex));
+	}
+
+	/**
+	 * Initializes this bin with the specified dimensions and packing options.
+	 *
+	 * @param dimension dimensions for this bin.
+	 * @param options   options controlling how pieces are packed.
+	 */
+	public Bin(Dimension dimension, PackingOptions options) {
 		this.dimension = new Dimension(dimension.width, dimension.height);
+		this.options = options;
+		this.metrics = options.getMetrics();
+		this.metered = metrics != PackingMetrics.DISABLED;
 		freeRectangles.add(new Rectangle2D.Double(0, 0, dimension.getWidth(), dimension.getHeight()));
+		rectanglePacker = PrimitivePacker.create(this.dimension, options);
 	}
 
 	/**
-	 * Get the placed pieces.
+	 * Initializes a bin already holding its pieces, placed by another engine
+	 * or restored from a previous packing. Its free space is not known, so
+	 * nothing more can be placed in it.
 	 *
-	 * @return placed pieces.
+	 * @param dimension dimensions for this bin.
+	 * @param options   options the pieces were packed with.
+	 * @param placed    pieces in their final position.
+	 */
+	Bin(Dimension dimension, PackingOptions options, List<MArea> placed) {
+		this.dimension = new Dimension(dimension.width, dimension.height);
+		this.options = options;
+		this.metrics = options.getMetrics();
+		this.metered = metrics != PackingMetrics.DISABLED;
+		this.freeRectanglesPeak = 0;
+		for (MArea piece : placed) {
+			addPlaced(piece);
+		}
+	}
+
+	/**
+	 * Get the placed pieces, with their pose applied to their geometry so
+	 * that plain {@link java.awt.geom.Area} operations see them in place.
+	 *
+	 * @return placed pieces, empty if none.
 	 */
 	public MArea[] getPlacedPieces() {
-		return placedPieces;
+		MArea[] pieces = placedPieces.toArray(new MArea[0]);
+		for (MArea piece : pieces) {
+			piece.materialize();
+		}
+		return pieces;
+	}
+
+	/**
+	 * Get the number of placed pieces.
+	 *
+	 * @return number of placed pieces.
+	 */
+	public int getPlacedCount() {
+		return placedPieces.size();
 	}
 
 	/**
@@ -55,6 +183,183 @@ public class Bin {
 		return dimension;
 	}
 
+	/**
+	 * Get the packing options.
+	 *
+	 * @return packing options.
+	 */
+	public PackingOptions getOptions() {
+		return options;
+	}
+
+	/**
+	 * Fraction of the bin area covered by the placed pieces.
+	 *
+	 * @return utilization between 0 and 1.
+	 */
+	public double getUtilization() {
+		return usedArea / (dimension.getWidth() * dimension.getHeight());
+	}
+
+	/**
+	 * Largest number of free rectangles the bin held after a placement.
+	 *
+	 * @return free rectangles peak.
+	 */
+	public int getFreeRectanglesPeak() {
+		return freeRectanglesPeak;
+	}
+
+	/**
+	 * Places a single piece inside this bin, next to the pieces already
+	 * placed. For rectangular pieces the cost does not depend on how many
+	 * pieces the bin holds.
+	 *
+	 * @param piece piece to be placed.
+	 * @return true if the piece was placed, false if it does not fit.
+	 */
+	public boolean place(MArea piece) {
+		return BBCompleteStrategy(new MArea[]{piece}).length == 0;
+	}
+
+
+	/**
+	 * Places a rectangular piece in a free rectangle of the primitive packer
+	 * chosen by the caller, used when the free space of several bins is
+	 * searched at once.
+	 *
+	 * @param piece rectangular piece accepted by the primitive packer.
+	 * @param fit   free rectangle and orientation, as passed to
+	 *              {@link PrimitivePacker#place}.
+	 * @return true if the piece was placed, false if it would overlap an
+	 * already placed piece.
+	 */
+	boolean place(MArea piece, int fit) {
+		Rectangle2D.Double pieceBB = piece.getBoundingBox2D();
+		if (!rectanglePacker.place(fit, pieceBB.getWidth(), pieceBB.getHeight(), piece.getID())) {
+			if (metered) {
+				metrics.count(Metric.PIECES_REJECTED, 1);
+			}
+			return false;
+		}
+		freeRectanglesPeak = Math.max(freeRectanglesPeak, rectanglePacker.getFreeCount());
+		int k = rectanglePacker.getPlacedCount() - 1;
+		double rotation = piece.getRotation();
+		if (rectanglePacker.isPlacedRotated(k)) {
+			rotation = (rotation + 90) % 360;
+		}
+		addPlaced(new MArea(rectanglePacker.getPlacedBounds(k), rectanglePacker.getPlacedID(k), rotation));
+		if (metered) {
+			metrics.count(Metric.PIECES_PLACED, 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Places copies of a rectangular piece in blocks, grids of copies placed
+	 * by the primitive packer as a single rectangle. Each block goes in the
+	 * free rectangle chosen for one copy, and is as large as that rectangle
+	 * and the copies left allow, in the orientation holding the most copies.
+	 * Blocks get smaller as the free rectangles do, down to single copies.
+	 *
+	 * @param piece   rectangular piece accepted by the primitive packer.
+	 * @param firstID ID of the first copy to place, the following ones
+	 *                getting consecutive IDs.
+	 * @param count   number of copies to place.
+	 * @return number of copies placed, from the first one.
+	 */
+	int placeBlocks(MArea piece, int firstID, int count) {
+		Rectangle2D.Double pieceBB = piece.getBoundingBox2D();
+		double width = pieceBB.getWidth();
+		double height = pieceBB.getHeight();
+		int placed = 0;
+		while (placed < count) {
+			long start = metered ? System.nanoTime() : 0;
+			int fit = rectanglePacker.findWhereToPlace(width, height);
+			if (metered) {
+				metrics.record(Metric.FIND_TIME, System.nanoTime() - start);
+			}
+			if (fit == -1) {
+				break;
+			}
+			int left = count - placed;
+			double freeWidth = rectanglePacker.getFreeWidth(fit >> 1);
+			double freeHeight = rectanglePacker.getFreeHeight(fit >> 1);
+			long upright = block(freeWidth, freeHeight, width, height, left);
+			long turned = block(freeWidth, freeHeight, height, width, left);
+			boolean rotated = size(turned) > size(upright) || (size(turned) == size(upright) && (fit & 1) == 1);
+			long block = rotated ? turned : upright;
+			double w = rotated ? height : width;
+			double h = rotated ? width : height;
+			int columns = (int) (block >>> 32);
+			int rows = (int) block;
+
+			if (size(block) <= 1 || !rectanglePacker.accepts(columns * w, rows * h)
+					|| !rectanglePacker.place((fit >> 1) << 1, columns * w, rows * h, firstID + placed)) {
+				// a single copy where the packer found room for it
+				if (!rectanglePacker.place(fit, width, height, firstID + placed)) {
+					break;
+				}
+				columns = 1;
+				rows = 1;
+				rotated = (fit & 1) == 1;
+				w = rotated ? height : width;
+				h = rotated ? width : height;
+			}
+			freeRectanglesPeak = Math.max(freeRectanglesPeak, rectanglePacker.getFreeCount());
+
+			Rectangle2D.Double bounds = rectanglePacker.getPlacedBounds(rectanglePacker.getPlacedCount() - 1);
+			double rotation = rotated ? (piece.getRotation() + 90) % 360 : piece.getRotation();
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < columns; c++) {
+					Rectangle2D.Double copy = new Rectangle2D.Double(bounds.x + c * w, bounds.y + r * h, w, h);
+					addPlaced(new MArea(copy, firstID + placed++, rotation));
+				}
+			}
+		}
+		if (metered) {
+			metrics.count(Metric.PIECES_PLACED, placed);
+		}
+		return placed;
+	}
+
+	/**
+	 * Largest grid of copies fitting in a free rectangle.
+	 *
+	 * @return columns &lt;&lt; 32 | rows, 0 if no copy fits.
+	 */
+	private static long block(double freeWidth, double freeHeight, double width, double height, int copies) {
+		int columns = (int) Math.min(Math.floor(freeWidth / width), copies);
+		while (columns > 0 && columns * width > freeWidth) {
+			columns--;
+		}
+		if (columns == 0) {
+			return 0;
+		}
+		int rows = (int) Math.min(Math.floor(freeHeight / height), copies / columns);
+		while (rows > 0 && rows * height > freeHeight) {
+			rows--;
+		}
+		return rows == 0 ? 0 : (long) columns << 32 | rows;
+	}
+
+	/**
+	 * @return number of copies of a grid returned by {@link #block}.
+	 */
+	private static long size(long block) {
+		return (block >>> 32) * (int) block;
+	}
+
+	/**
+	 * Get the primitive packer holding the free space while the bin only
+	 * contains rectangular pieces.
+	 *
+	 * @return primitive packer, null once another piece has been packed or
+	 * the bin has been closed.
+	 */
+	PrimitivePacker getRectanglePacker() {
+		return rectanglePacker;
+	}
 
 	/**
 	 * Performs the complete bounding box based strategies to place the pieces
@@ -64,9 +369,83 @@ public class Bin {
 	 * @return the pieces that could not be placed inside the bin.
 	 */
 	public MArea[] BBCompleteStrategy(MArea[] toPlace) {
+		if (rectanglePacker != null && allAccepted(toPlace)) {
+			return rectanglePacking(toPlace);
+		}
 		return boundingBoxPacking(toPlace);
 	}
 
+	/**
+	 * Checks whether all the pieces are axis aligned rectangles accepted by
+	 * the primitive packer.
+	 *
+	 * @param pieces pieces to check.
+	 * @return true if every piece can be packed by the primitive packer,
+	 * false otherwise.
+	 */
+	private boolean allAccepted(MArea[] pieces) {
+		for (MArea piece : pieces) {
+			if (!piece.isRectangular()) {
+				return false;
+			}
+			if (options.getFixedPointScale() > 0) {
+				Rectangle2D.Double bb = piece.getBoundingBox2D();
+				if (!rectanglePacker.accepts(bb.getWidth(), bb.getHeight())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Places rectangular pieces inside the bin using the maximal rectangles
+	 * strategy on primitive arrays. Produces the same layout as
+	 * {@link #boundingBoxPacking} without any Area operation. Method called
+	 * from {@link #BBCompleteStrategy}
+	 *
+	 * @param pieces rectangular pieces to be placed.
+	 * @return the pieces that could not be placed inside the bin.
+	 */
+	private MArea[] rectanglePacking(MArea[] pieces) {
+		List<MArea> sources = new ArrayList<>();
+		List<MArea> notPlacedPieces = new ArrayList<>();
+
+		Arrays.sort(pieces, options.getPieceOrder().getComparator());
+
+		for (int i = pieces.length - 1; i >= 0; i--) {
+			Rectangle2D.Double pieceBB = pieces[i].getBoundingBox2D();
+			long start = metered ? System.nanoTime() : 0;
+			int fit = rectanglePacker.findWhereToPlace(pieceBB.getWidth(), pieceBB.getHeight());
+			if (metered) {
+				metrics.record(Metric.FIND_TIME, System.nanoTime() - start);
+			}
+			if (fit != -1 && rectanglePacker.place(fit, pieceBB.getWidth(), pieceBB.getHeight(), pieces[i].getID())) {
+				sources.add(pieces[i]);
+				freeRectanglesPeak = Math.max(freeRectanglesPeak, rectanglePacker.getFreeCount());
+			} else {
+				notPlacedPieces.add(pieces[i]);
+			}
+		}
+		if (metered) {
+			metrics.count(Metric.PIECES_PLACED, sources.size());
+			metrics.count(Metric.PIECES_REJECTED, notPlacedPieces.size());
+		}
+
+		// a block takes a single placement of the packer
+		int before = rectanglePacker.getPlacedCount() - sources.size();
+		for (int i = 0; i < sources.size(); i++) {
+			int k = before + i;
+			double rotation = sources.get(i).getRotation();
+			if (rectanglePacker.isPlacedRotated(k)) {
+				rotation = (rotation + 90) % 360;
+			}
+			addPlaced(new MArea(rectanglePacker.getPlacedBounds(k), rectanglePacker.getPlacedID(k), rotation));
+		}
+
+		return notPlacedPieces.toArray(new MArea[0]);
+	}
+
 	/**
 	 * Places the pieces inside the bin using the maximal rectangles strategy.
 	 * Method called from {@link #BBCompleteStrategy}
@@ -75,32 +454,51 @@ public class Bin {
 	 * @return the pieces that could not be placed inside the bin.
 	 */
 	private MArea[] boundingBoxPacking(MArea[] pieces) {
-		List<MArea> placedPieces = new ArrayList<>();
+		long begin = metered ? System.nanoTime() : 0;
 		List<MArea> notPlacedPieces = new ArrayList<>();
 
-		Arrays.sort(pieces, MArea.BY_AREA);
+		Arrays.sort(pieces, options.getPieceOrder().getComparator());
 
-		MArea total = new MArea();
-		if (this.placedPieces != null) {
-			for (MArea a : this.placedPieces) {
-				total.add(a);
-				placedPieces.add(a);
-			}
+		if (rectanglePacker != null) {
+			freeRectangles = rectanglePacker.toFreeRectangles();
+			releasePacker();
 		}
+		copyFreeSizes();
 
+		int placedCount = 0;
 		for (int i = pieces.length - 1; i >= 0; i--) {
+			long start = metered ? System.nanoTime() : 0;
 			int where = findWhereToPlace(pieces[i], freeRectangles);
+			if (metered) {
+				start = lap(Metric.FIND_TIME, start);
+			}
 			if (where != -1) {
 				Rectangle2D.Double freeRect = freeRectangles.get(where);
 				MArea placed = new MArea(pieces[i], pieces[i].getID());
-				placed.placeInPosition(freeRect.getX(), freeRect.getMaxY() - placed.getBoundingBox().getHeight());
-				if (!placed.intersection(total)) {
+				placed.placeInPosition(freeRect.getX(), freeRect.getMaxY() - placed.getBoundingBox2D().getHeight());
+				boolean overlaps = overlapsPlaced(placed);
+				if (metered) {
+					metrics.count(Metric.INTERSECTIONS, 1);
+					start = System.nanoTime();
+				}
+				if (!overlaps) {
 					Rectangle2D.Double pieceBB = placed.getBoundingBox2D();
 					splitScheme(freeRect, pieceBB, freeRectangles);
-					computeFreeRectangles(pieceBB, freeRectangles);
-					eliminateNonMaximal();
-					placedPieces.add(placed);
-					total.add(placed);
+					if (metered) {
+						start = lap(Metric.SPLIT_TIME, start);
+					}
+					int firstNew = computeFreeRectangles(pieceBB, freeRectangles, freeRectangles.size() - splitCount(freeRect, pieceBB));
+					if (metered) {
+						start = lap(Metric.COMPUTE_FREE_TIME, start);
+					}
+					eliminateNonMaximal(firstNew);
+					if (metered) {
+						lap(Metric.ELIMINATE_TIME, start);
+						metrics.record(Metric.FREE_RECTANGLES, freeRectangles.size());
+					}
+					freeRectanglesPeak = Math.max(freeRectanglesPeak, freeRectangles.size());
+					addPlaced(placed);
+					placedCount++;
 				} else {
 					notPlacedPieces.add(pieces[i]);
 				}
@@ -109,14 +507,110 @@ public class Bin {
 			}
 		}
 
-		this.placedPieces = placedPieces.toArray(new MArea[0]);
+		if (metered) {
+			metrics.count(Metric.PIECES_PLACED, placedCount);
+			metrics.count(Metric.PIECES_REJECTED, notPlacedPieces.size());
+			lap(Metric.BOUNDING_BOX_TIME, begin);
+		}
 		return notPlacedPieces.toArray(new MArea[0]);
 
 	}
 
+	/**
+	 * Releases the free space of the bin, off heap storage included, and
+	 * applies the pose of its pieces. The bin keeps its pieces, but no more
+	 * pieces can be placed in it.
+	 */
+	public void close() {
+		for (MArea piece : placedPieces) {
+			piece.materialize();
+		}
+		if (rectanglePacker != null) {
+			releasePacker();
+		}
+		freeRectangles = new ArrayList<>();
+		spareRectangles = new ArrayList<>();
+		contained = new boolean[0];
+		freeWidths = new double[0];
+		freeHeights = new double[0];
+	}
+
+	/**
+	 * Drops the primitive packer, keeping its counters.
+	 */
+	private void releasePacker() {
+		containmentTests += rectanglePacker.getContainmentTests();
+		containmentTestsSaved += rectanglePacker.getContainmentTestsSaved();
+		rectanglePacker.release();
+		rectanglePacker = null;
+	}
+
+	/**
+	 * Records the time elapsed since a start in a histogram.
+	 *
+	 * @param metric histogram of the timed step.
+	 * @param start  start of the step, from {@link System#nanoTime}.
+	 * @return end of the step, start of the next one.
+	 */
+	private long lap(Metric metric, long start) {
+		long now = System.nanoTime();
+		metrics.record(metric, now - start);
+		return now;
+	}
+
+	/**
+	 * Records a placed piece.
+	 *
+	 * @param placed piece in its final position.
+	 */
+	private void addPlaced(MArea placed) {
+		int o = 4 * placedPieces.size();
+		if (o == placedBounds.length) {
+			placedBounds = Arrays.copyOf(placedBounds, 2 * o);
+		}
+		Rectangle2D.Double bb = placed.getBoundingBox2D();
+		placedBounds[o] = bb.x;
+		placedBounds[o + 1] = bb.y;
+		placedBounds[o + 2] = bb.width;
+		placedBounds[o + 3] = bb.height;
+		placedPieces.add(placed);
+		usedArea += placed.getArea();
+	}
+
+	/**
+	 * Checks whether a piece in its candidate position overlaps a placed
+	 * piece. Only the pieces whose bounding boxes overlap its own are tested
+	 * with an Area intersection, and none when both are rectangles, so no
+	 * union of the placed pieces is built. Touching edges do not count as an
+	 * overlap. Method called from {@link #boundingBoxPacking}
+	 *
+	 * @param piece piece in its candidate position.
+	 * @return true if the piece overlaps a placed piece.
+	 */
+	private boolean overlapsPlaced(MArea piece) {
+		Rectangle2D.Double bb = piece.getBoundingBox2D();
+		double maxX = bb.x + bb.width;
+		double maxY = bb.y + bb.height;
+		boolean rectangular = piece.isRectangular();
+		double[] bounds = placedBounds;
+		for (int i = 0, n = placedPieces.size(); i < n; i++) {
+			int o = 4 * i;
+			if (bounds[o] < maxX && bb.x < bounds[o] + bounds[o + 2] && bounds[o + 1] < maxY
+					&& bb.y < bounds[o + 1] + bounds[o + 3]) {
+				MArea other = placedPieces.get(i);
+				if ((rectangular && other.isRectangular()) || piece.intersection(other)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Finds in which free rectangular space the specified piece can be placed.
-	 * Method called from {@link #boundingBoxPacking}
+	 * The sizes copied into {@link #freeWidths} and {@link #freeHeights} are
+	 * scanned by {@link FitScan}. Method called from
+	 * {@link #boundingBoxPacking}
 	 *
 	 * @param piece          piece to place inside an empty rectangular space.
 	 * @param freeRectangles list of empty rectangular spaces.
@@ -127,37 +621,15 @@ public class Bin {
 	 * </ul>
 	 */
 	private int findWhereToPlace(MArea piece, List<Rectangle2D.Double> freeRectangles) {
-		boolean lastRotated = false;
 		Rectangle2D pieceBB = piece.getBoundingBox2D();
-		int res = -1;
-		double min = Double.MAX_VALUE;
-		for (int i = freeRectangles.size() - 1; i >= 0; i--) {
-			Rectangle2D.Double freeRect = freeRectangles.get(i);
-			if (Utils.fits(pieceBB, freeRect)) {
-				double m = Math.min(freeRect.getWidth() - pieceBB.getWidth(), freeRect.getHeight() - pieceBB.getHeight());
-				if (m < min) {
-					min = m;
-					res = i;
-					if (lastRotated) {
-						piece.rotate(90);
-						lastRotated = false;
-					}
-
-				}
-			}
-			if (Utils.fitsRotated(pieceBB, freeRect)) {
-				double m = Math.min(freeRect.getWidth() - pieceBB.getHeight(), freeRect.getHeight() - pieceBB.getWidth());
-				if (m < min) {
-					min = m;
-					res = i;
-					if (!lastRotated) {
-						piece.rotate(90);
-						lastRotated = true;
-					}
-				}
-			}
+		long found = FitScan.findWhereToPlace(freeWidths, freeHeights, freeRectangles.size(), pieceBB.getWidth(),
+				pieceBB.getHeight());
+		// the piece is turned as often as the orientation of the best fit
+		// changed during the scan
+		for (int turns = (int) (found >>> 32); turns > 0; turns--) {
+			piece.rotate(90);
 		}
-		return res;
+		return (int) found >> 1;
 	}
 
 	/**
@@ -187,18 +659,48 @@ public class Bin {
 		}
 	}
 
+	/**
+	 * Number of rectangles added by {@link #splitScheme} for a placement.
+	 *
+	 * @param usedFreeArea      rectangular area that contains the newly placed piece.
+	 * @param justPlacedPieceBB bounding box of the newly placed piece.
+	 * @return number of new free rectangles.
+	 */
+	private static int splitCount(Rectangle2D.Double usedFreeArea, Rectangle2D.Double justPlacedPieceBB) {
+		int count = 0;
+		if (justPlacedPieceBB.getY() - usedFreeArea.getY() > 0) {
+			count++;
+		}
+		if (usedFreeArea.getMaxX() - justPlacedPieceBB.getMaxX() > 0) {
+			count++;
+		}
+		return count;
+	}
+
 	/**
 	 * Recalculates the free rectangular boxes in the bin. Method called after a
 	 * piece has been placed. Method called from {@link #boundingBoxPacking}
 	 *
 	 * @param justPlacedPieceBB bounding box of the piece that was just added.
 	 * @param freeRectangles    free rectangular boxes in the bin.
+	 * @param firstNew          position of the first rectangle created by the
+	 *                          current placement.
+	 * @return position of the first rectangle created by the current
+	 * placement, once the split rectangles have been removed.
 	 */
-	private void computeFreeRectangles(Rectangle2D.Double justPlacedPieceBB, List<Rectangle2D.Double> freeRectangles) {
-		Rectangle2D.Double[] rects = freeRectangles.toArray(new Rectangle2D.Double[0]);
-		for (Rectangle2D.Double freeR : rects) {
-			if (freeR.intersects(justPlacedPieceBB)) {
-				freeRectangles.remove(freeR);
+	private int computeFreeRectangles(Rectangle2D.Double justPlacedPieceBB, List<Rectangle2D.Double> freeRectangles, int firstNew) {
+		// the rectangles there before the split are visited in place, the
+		// ones appended by the split come after them
+		int position = 0;
+		for (int visited = 0, n = freeRectangles.size(); visited < n; visited++) {
+			Rectangle2D.Double freeR = freeRectangles.get(position);
+			if (!freeR.intersects(justPlacedPieceBB)) {
+				position++;
+			} else {
+				freeRectangles.remove(position);
+				if (position < firstNew) {
+					firstNew--;
+				}
 				Rectangle2D rIntersection = freeR.createIntersection(justPlacedPieceBB);
 				// top
 				double widht = freeR.getWidth();
@@ -233,28 +735,120 @@ public class Bin {
 				}
 			}
 		}
-
+		return firstNew;
 	}
 
 	/**
-	 * Eliminates all non-maximal boxes from the empty spaces in the bin. Method
-	 * called from {@link #boundingBoxPacking}
+	 * Eliminates all non-maximal boxes from the empty spaces in the bin, and
+	 * sorts them by area. The boxes that were already there are maximal
+	 * among themselves, so only the pairs involving a box created by the
+	 * current placement are tested. Method called from
+	 * {@link #boundingBoxPacking}
+	 *
+	 * @param firstNew position of the first box created by the current
+	 *                 placement.
 	 */
-	private void eliminateNonMaximal() {
-		Rectangle2D.Double[] freeRectArray = freeRectangles.toArray(new Rectangle2D.Double[0]);
-		Arrays.sort(freeRectArray, RECTANGLE_AREA_COMPARATOR);
-		freeRectangles.clear();
-		for (int i = 0; i < freeRectArray.length; i++) {
-			boolean contained = false;
-			for (int j = freeRectArray.length - 1; j >= i; j--) {
-				if (j != i && freeRectArray[j].contains(freeRectArray[i])) {
-					contained = true;
-					break;
+	private void eliminateNonMaximal(int firstNew) {
+		int n = freeRectangles.size();
+		if (contained.length < n) {
+			contained = new boolean[Math.max(n, 2 * contained.length)];
+		} else {
+			Arrays.fill(contained, 0, n, false);
+		}
+		boolean[] contained = this.contained;
+		long tests = 0;
+		for (int i = firstNew; i < n; i++) {
+			Rectangle2D.Double created = freeRectangles.get(i);
+			for (int j = 0; j < n; j++) {
+				// pairs of new boxes are tested once, from the first of them
+				if (j == i || (j >= firstNew && j < i)) {
+					continue;
 				}
+				Rectangle2D.Double other = freeRectangles.get(j);
+				tests++;
+				if (other.contains(created) && sortsAfter(other, j, created, i)) {
+					contained[i] = true;
+				} else if (created.contains(other) && sortsAfter(created, i, other, j)) {
+					contained[j] = true;
+				}
+			}
+		}
+		containmentTests += tests;
+		containmentTestsSaved += (long) n * (n - 1) / 2 - tests;
+		if (metered) {
+			metrics.count(Metric.CONTAINMENT_TESTS, tests);
+		}
+
+		List<Rectangle2D.Double> maximal = spareRectangles;
+		maximal.clear();
+		for (int i = 0; i < n; i++) {
+			if (!contained[i]) {
+				maximal.add(freeRectangles.get(i));
 			}
-			if (!contained)
-				freeRectangles.add(freeRectArray[i]);
 		}
+		maximal.sort(RECTANGLE_AREA_COMPARATOR);
+		spareRectangles = freeRectangles;
+		freeRectangles = maximal;
+		copyFreeSizes();
+	}
+
+	/**
+	 * Copies the sizes of the free rectangles into {@link #freeWidths} and
+	 * {@link #freeHeights}, after the list has changed.
+	 */
+	private void copyFreeSizes() {
+		int n = freeRectangles.size();
+		if (freeWidths.length < n) {
+			freeWidths = new double[Math.max(n, 2 * freeWidths.length)];
+			freeHeights = new double[freeWidths.length];
+		}
+		for (int i = 0; i < n; i++) {
+			Rectangle2D.Double r = freeRectangles.get(i);
+			freeWidths[i] = r.width;
+			freeHeights[i] = r.height;
+		}
+	}
+
+	/**
+	 * Checks whether a box comes after another one once the free boxes are
+	 * stably sorted by area.
+	 *
+	 * @param a         first box.
+	 * @param positionA position of the first box in the unsorted list.
+	 * @param b         second box.
+	 * @param positionB position of the second box in the unsorted list.
+	 * @return true if the first box comes after the second one.
+	 */
+	private static boolean sortsAfter(Rectangle2D a, int positionA, Rectangle2D b, int positionB) {
+		int cmp = RECTANGLE_AREA_COMPARATOR.compare(a, b);
+		return cmp > 0 || (cmp == 0 && positionA > positionB);
+	}
+
+	/**
+	 * Number of containment tests made while eliminating non-maximal boxes.
+	 *
+	 * @return containment tests made.
+	 */
+	public long getContainmentTests() {
+		long tests = containmentTests;
+		if (rectanglePacker != null) {
+			tests += rectanglePacker.getContainmentTests();
+		}
+		return tests;
+	}
+
+	/**
+	 * Number of containment tests avoided by only testing the boxes created
+	 * by each placement, compared with testing every pair of free boxes.
+	 *
+	 * @return containment tests saved.
+	 */
+	public long getContainmentTestsSaved() {
+		long saved = containmentTestsSaved;
+		if (rectanglePacker != null) {
+			saved += rectanglePacker.getContainmentTestsSaved();
+		}
+		return saved;
 	}
 
 
@@ -4,10 +4,20 @@ package main.java.org.packing.core;
 
 
 import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.primitives.PieceType;
 
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
 
 public class BinPacking {
 	/**
@@ -19,13 +29,81 @@ public class BinPacking {
 	 * @return list of generated bins.
 	 */
 	public static Bin[] BinPackingStrategy(MArea[] pieces, Dimension binDimension) {
+		return BinPackingStrategy(pieces, binDimension, FreeSpaceIndex.LINEAR);
+	}
+
+	/**
+	 * Applies the packing strategies to the provided pieces, using the
+	 * specified index over the free rectangles of every bin.
+	 *
+	 * @param pieces            pieces to be nested inside the bins.
+	 * @param binDimension      dimensions for the generated bins.
+	 * @param freeSpaceIndex    index over the free rectangles of the bins.
+	 * @return list of generated bins.
+	 */
+	public static Bin[] BinPackingStrategy(MArea[] pieces, Dimension binDimension, FreeSpaceIndex freeSpaceIndex) {
+		return BinPackingStrategy(pieces, binDimension, PackingOptions.DEFAULT.withFreeSpaceIndex(freeSpaceIndex));
+	}
+
+	/**
+	 * Applies the packing strategies to the provided pieces, with the
+	 * specified packing options for every bin.
+	 *
+	 * @param pieces            pieces to be nested inside the bins.
+	 * @param binDimension      dimensions for the generated bins.
+	 * @param options           options controlling how pieces are packed.
+	 * @return list of generated bins.
+	 */
+	public static Bin[] BinPackingStrategy(MArea[] pieces, Dimension binDimension, PackingOptions options) {
+		return BinPackingStrategy(pieces, binDimension, options, () -> false);
+	}
+
+	/**
+	 * Applies the packing strategies to the provided pieces, giving up between
+	 * two bins once cancelled. The time of every bin and of the whole order
+	 * is reported to the metrics of the options.
+	 *
+	 * @param pieces            pieces to be nested inside the bins.
+	 * @param binDimension      dimensions for the generated bins.
+	 * @param options           options controlling how pieces are packed.
+	 * @param cancelled         checked before opening each bin.
+	 * @return list of generated bins, null if cancelled.
+	 */
+	static Bin[] BinPackingStrategy(MArea[] pieces, Dimension binDimension, PackingOptions options, BooleanSupplier cancelled) {
+		long start = System.nanoTime();
+		Bin[] bins = pack(pieces, binDimension, options, cancelled);
+		if (bins != null) {
+			options.getMetrics().orderPacked(pieces.length, bins, System.nanoTime() - start);
+		}
+		return bins;
+	}
+
+	/**
+	 * Fills bins one after the other until every piece is placed, reporting
+	 * the time of each bin to the metrics of the options. Each bin is closed
+	 * once filled, releasing its free space.
+	 *
+	 * @param pieces            pieces to be nested inside the bins.
+	 * @param binDimension      dimensions for the generated bins.
+	 * @param options           options controlling how pieces are packed.
+	 * @param cancelled         checked before opening each bin.
+	 * @return list of generated bins, null if cancelled.
+	 */
+	private static Bin[] pack(MArea[] pieces, Dimension binDimension, PackingOptions options, BooleanSupplier cancelled) {
+		PackingMetrics metrics = options.getMetrics();
 		List<Bin> bins = new ArrayList<>();
 		boolean stillToPlace = true;
 		MArea[] notPlaced = pieces;
 		while (stillToPlace) {
+			if (cancelled.getAsBoolean()) {
+				return null;
+			}
 			stillToPlace = false;
-			Bin bin = new Bin(binDimension);
+			long start = System.nanoTime();
+			Bin bin = new Bin(binDimension, options);
 			notPlaced = bin.BBCompleteStrategy(notPlaced);
+			bin.close();
+			metrics.binPacked(bin, System.nanoTime() - start);
 
 			bins.add(bin);
 			if (notPlaced.length > 0)
@@ -34,4 +112,338 @@ public class BinPacking {
 		return bins.toArray(new Bin[0]);
 	}
 
+	/**
+	 * Packs the provided pieces first fit decreasing over all the open bins.
+	 * The pieces are taken from the largest to the smallest and each one goes
+	 * to the free rectangle with the smallest short side leftover among the
+	 * free rectangles of every bin opened so far, found through one
+	 * {@link OpenBinIndex} instead of bin by bin; a new bin is opened only
+	 * when the piece fits nowhere. Space left in the first bins is so reused
+	 * by the small pieces coming last. A bin is closed as soon as its free
+	 * rectangles are too small for the pieces still to come.
+	 * <p>
+	 * Only rectangular pieces accepted by the primitive packers are packed
+	 * this way, with the best short side fit rule; other orders, or other
+	 * placement rules, are packed by {@link #BinPackingStrategy}.
+	 *
+	 * @param pieces            pieces to be nested inside the bins.
+	 * @param binDimension      dimensions for the generated bins.
+	 * @param options           options controlling how pieces are packed.
+	 * @return list of generated bins.
+	 * @throws IllegalArgumentException if a piece does not fit in an empty
+	 *                                  bin.
+	 */
+	public static Bin[] FirstFitDecreasingStrategy(MArea[] pieces, Dimension binDimension, PackingOptions options) {
+		if (!openBinsAccepted(pieces, binDimension, options)) {
+			return BinPackingStrategy(pieces, binDimension, options);
+		}
+		long start = System.nanoTime();
+		Bin[] bins = packOpenBins(pieces, binDimension, options);
+		options.getMetrics().orderPacked(pieces.length, bins, System.nanoTime() - start);
+		return bins;
+	}
+
+	/**
+	 * Checks whether the pieces can be packed over all the open bins.
+	 *
+	 * @return true for rectangular pieces accepted by the primitive packers
+	 * and the best short side fit rule.
+	 */
+	private static boolean openBinsAccepted(MArea[] pieces, Dimension binDimension, PackingOptions options) {
+		if (options.getPlacementRule() != PlacementRule.BEST_SHORT_SIDE_FIT) {
+			return false;
+		}
+		PrimitivePacker packer = PrimitivePacker.create(binDimension, options.withOffHeap(false));
+		for (MArea piece : pieces) {
+			Rectangle2D.Double bb = piece.getBoundingBox2D();
+			if (!piece.isRectangular() || !packer.accepts(bb.getWidth(), bb.getHeight())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Places the pieces, from the largest to the smallest, in the best free
+	 * rectangle of all the open bins, reporting the time spent on each bin
+	 * to the metrics of the options. Every bin is closed at the end.
+	 *
+	 * @param pieces            rectangular pieces to be nested inside the
+	 *                          bins.
+	 * @param binDimension      dimensions for the generated bins.
+	 * @param options           options controlling how pieces are packed.
+	 * @return list of generated bins.
+	 */
+	private static Bin[] packOpenBins(MArea[] pieces, Dimension binDimension, PackingOptions options) {
+		MArea[] sorted = pieces.clone();
+		Arrays.sort(sorted, options.getPieceOrder().getComparator().reversed());
+		// smallest side of the pieces from each position to the end
+		double[] smallestSide = new double[sorted.length];
+		double side = Double.MAX_VALUE;
+		for (int i = sorted.length - 1; i >= 0; i--) {
+			Rectangle2D.Double bb = sorted[i].getBoundingBox2D();
+			side = Math.min(side, Math.min(bb.getWidth(), bb.getHeight()));
+			smallestSide[i] = side;
+		}
+
+		OpenBinIndex index = new OpenBinIndex(options.getFixedPointScale());
+		long[] nanos = new long[16];
+		for (int i = 0; i < sorted.length; i++) {
+			long start = System.nanoTime();
+			MArea piece = sorted[i];
+			Rectangle2D.Double bb = piece.getBoundingBox2D();
+			index.dropSmallerThan(smallestSide[i]);
+			int found = index.findWhereToPlace(bb.getWidth(), bb.getHeight());
+			int b = found == -1 ? -1 : index.place(found, piece);
+			if (b == -1) {
+				Bin bin = new Bin(binDimension, options);
+				int fit = bin.getRectanglePacker().findWhereToPlace(bb.getWidth(), bb.getHeight());
+				if (fit == -1 || !bin.place(piece, fit)) {
+					bin.close();
+					for (Bin open : index.getBins()) {
+						open.close();
+					}
+					throw new IllegalArgumentException("Piece " + piece.getID() + " does not fit in an empty bin");
+				}
+				b = index.addBin(bin);
+			}
+			if (b == nanos.length) {
+				nanos = Arrays.copyOf(nanos, b * 2);
+			}
+			nanos[b] += System.nanoTime() - start;
+		}
+
+		PackingMetrics metrics = options.getMetrics();
+		List<Bin> bins = index.getBins();
+		for (int b = 0; b < bins.size(); b++) {
+			bins.get(b).close();
+			metrics.binPacked(bins.get(b), nanos[b]);
+		}
+		return bins.toArray(new Bin[0]);
+	}
+
+	/**
+	 * Packs piece types, each with a number of identical copies, filling the
+	 * bins one after the other. In every bin the types are taken from the
+	 * largest to the smallest, and the copies of a type are placed in blocks,
+	 * grids of copies placed as a single rectangle, so that the work of
+	 * finding a free rectangle and splitting the free space is done once per
+	 * block instead of once per copy. Blocks are only made smaller, down to
+	 * single copies, when the free rectangles are.
+	 * <p>
+	 * Only types of rectangular pieces accepted by the primitive packers are
+	 * packed this way; other orders are expanded into single copies and
+	 * packed by {@link #BinPackingStrategy}.
+	 *
+	 * @param types             piece types to be nested inside the bins,
+	 *                          their copies getting consecutive IDs from the
+	 *                          ID of the piece.
+	 * @param binDimension      dimensions for the generated bins.
+	 * @param options           options controlling how pieces are packed.
+	 * @return list of generated bins.
+	 * @throws IllegalArgumentException if a piece does not fit in an empty
+	 *                                  bin.
+	 */
+	public static Bin[] BlockPackingStrategy(PieceType[] types, Dimension binDimension, PackingOptions options) {
+		MArea[] pieces = new MArea[types.length];
+		int count = 0;
+		for (int t = 0; t < types.length; t++) {
+			pieces[t] = types[t].getPiece();
+			count += types[t].getQuantity();
+		}
+		if (!blocksAccepted(pieces, binDimension, options)) {
+			return BinPackingStrategy(PieceType.toMAreas(types), binDimension, options);
+		}
+		long start = System.nanoTime();
+		Bin[] bins = packBlocks(types, binDimension, options);
+		options.getMetrics().orderPacked(count, bins, System.nanoTime() - start);
+		return bins;
+	}
+
+	/**
+	 * Checks whether the piece types can be packed in blocks.
+	 *
+	 * @return true for rectangular pieces accepted by the primitive packers.
+	 */
+	private static boolean blocksAccepted(MArea[] pieces, Dimension binDimension, PackingOptions options) {
+		PrimitivePacker packer = PrimitivePacker.create(binDimension, options.withOffHeap(false));
+		for (MArea piece : pieces) {
+			Rectangle2D.Double bb = piece.getBoundingBox2D();
+			if (!piece.isRectangular() || !packer.accepts(bb.getWidth(), bb.getHeight())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Fills bins one after the other with blocks of every type, from the
+	 * largest type to the smallest, reporting the time of each bin to the
+	 * metrics of the options. Each bin is closed once filled.
+	 *
+	 * @param types             types of rectangular pieces.
+	 * @param binDimension      dimensions for the generated bins.
+	 * @param options           options controlling how pieces are packed.
+	 * @return list of generated bins.
+	 */
+	private static Bin[] packBlocks(PieceType[] types, Dimension binDimension, PackingOptions options) {
+		Comparator<MArea> order = options.getPieceOrder().getComparator();
+		Comparator<PieceType> byPiece = (a, b) -> order.compare(a.getPiece(), b.getPiece());
+		Map<PieceType, Integer> placed = new IdentityHashMap<>();
+		PieceType[] notPlaced = types;
+
+		PackingMetrics metrics = options.getMetrics();
+		List<Bin> bins = new ArrayList<>();
+		while (notPlaced.length > 0) {
+			long start = System.nanoTime();
+			Bin bin = new Bin(binDimension, options);
+			// sorted and taken from the end, as the bins do with single pieces
+			Arrays.sort(notPlaced, byPiece);
+			List<PieceType> left = new ArrayList<>();
+			for (int t = notPlaced.length - 1; t >= 0; t--) {
+				PieceType type = notPlaced[t];
+				int done = placed.getOrDefault(type, 0);
+				if (done < type.getQuantity()) {
+					done += bin.placeBlocks(type.getPiece(), type.getID(done), type.getQuantity() - done);
+					placed.put(type, done);
+				}
+				if (done < type.getQuantity()) {
+					left.add(type);
+				}
+			}
+			bin.close();
+			if (bin.getPlacedCount() == 0 && !left.isEmpty()) {
+				PieceType type = left.get(0);
+				throw new IllegalArgumentException("Piece " + type.getID(placed.get(type)) + " does not fit in an empty bin");
+			}
+			metrics.binPacked(bin, System.nanoTime() - start);
+			bins.add(bin);
+			notPlaced = left.toArray(new PieceType[0]);
+		}
+		return bins.toArray(new Bin[0]);
+	}
+
+	/**
+	 * Applies the packing strategies to the provided pieces on several
+	 * threads of the common pool. See
+	 * {@link #ParallelBinPackingStrategy(MArea[], Dimension, PackingOptions, int, long, ForkJoinPool)}.
+	 *
+	 * @param pieces            pieces to be nested inside the bins.
+	 * @param binDimension      dimensions for the generated bins.
+	 * @param parallelism       number of partitions packed concurrently.
+	 * @param seed              seed for distributing the pieces among the
+	 *                          partitions.
+	 * @return list of generated bins.
+	 */
+	public static Bin[] ParallelBinPackingStrategy(MArea[] pieces, Dimension binDimension, int parallelism, long seed) {
+		return ParallelBinPackingStrategy(pieces, binDimension, PackingOptions.DEFAULT, parallelism, seed, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Applies the packing strategies to the provided pieces on several
+	 * threads. The pieces are sorted by size and dealt, in blocks of
+	 * {@code parallelism} pieces shuffled with the seed, to as many
+	 * partitions, so that every partition gets a similar mix of sizes. Each
+	 * partition is packed concurrently with {@link #BinPackingStrategy}; the
+	 * last, partially filled, bin of every partition is then emptied and its
+	 * pieces packed again together. Only the bins of the result are reported
+	 * to the metrics of the options.
+	 * <p>
+	 * The result only depends on the pieces, the seed and the parallelism,
+	 * never on the pool or on thread scheduling. With a parallelism of 1 it
+	 * is the result of {@link #BinPackingStrategy}.
+	 *
+	 * @param pieces            pieces to be nested inside the bins.
+	 * @param binDimension      dimensions for the generated bins.
+	 * @param options           options controlling how pieces are packed.
+	 * @param parallelism       number of partitions packed concurrently.
+	 * @param seed              seed for distributing the pieces among the
+	 *                          partitions.
+	 * @param pool              pool running the partitions.
+	 * @return list of generated bins.
+	 */
+	public static Bin[] ParallelBinPackingStrategy(MArea[] pieces, Dimension binDimension, PackingOptions options,
+	                                               int parallelism, long seed, ForkJoinPool pool) {
+		if (parallelism <= 1 || pieces.length < 2 * parallelism) {
+			return BinPackingStrategy(pieces, binDimension, options);
+		}
+		long start = System.nanoTime();
+
+		MArea[][] partitions = partition(pieces, options.getPieceOrder(), parallelism, seed);
+		PackingMetrics metrics = options.getMetrics();
+		HeldMetrics[] held = new HeldMetrics[partitions.length];
+		List<ForkJoinTask<Bin[]>> tasks = new ArrayList<>();
+		for (int p = 0; p < partitions.length; p++) {
+			MArea[] partition = partitions[p];
+			// the last bin of every partition is packed again: only the bins
+			// kept are reported
+			if (metrics != PackingMetrics.DISABLED) {
+				held[p] = new HeldMetrics(metrics);
+			}
+			PackingOptions partitionOptions = held[p] == null ? options : options.withMetrics(held[p]);
+			tasks.add(pool.submit(() -> pack(partition, binDimension, partitionOptions, () -> false)));
+		}
+
+		List<Bin> bins = new ArrayList<>();
+		List<MArea> leftovers = new ArrayList<>();
+		for (int p = 0; p < tasks.size(); p++) {
+			Bin[] packed = tasks.get(p).join();
+			for (int b = 0; b < packed.length - 1; b++) {
+				bins.add(packed[b]);
+				if (held[p] != null) {
+					held[p].release(b);
+				}
+			}
+			leftovers.addAll(Arrays.asList(packed[packed.length - 1].getPlacedPieces()));
+		}
+		bins.addAll(Arrays.asList(pack(leftovers.toArray(new MArea[0]), binDimension, options, () -> false)));
+		Bin[] result = bins.toArray(new Bin[0]);
+		metrics.orderPacked(pieces.length, result, System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Deals the pieces, sorted from the largest to the smallest, to the
+	 * partitions. Each block of consecutive pieces gives one piece to every
+	 * partition, in an order shuffled with the seed.
+	 *
+	 * @param pieces      pieces to be distributed.
+	 * @param pieceOrder  order used to sort the pieces.
+	 * @param parallelism number of partitions.
+	 * @param seed        seed for shuffling the blocks.
+	 * @return pieces of each partition.
+	 */
+	private static MArea[][] partition(MArea[] pieces, PieceOrder pieceOrder, int parallelism, long seed) {
+		MArea[] sorted = pieces.clone();
+		Arrays.sort(sorted, pieceOrder.getComparator().reversed());
+
+		List<List<MArea>> partitions = new ArrayList<>();
+		for (int i = 0; i < parallelism; i++) {
+			partitions.add(new ArrayList<>());
+		}
+		Random random = new Random(seed);
+		int[] order = new int[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			order[i] = i;
+		}
+		for (int i = 0; i < sorted.length; i++) {
+			int k = i % parallelism;
+			if (k == 0) {
+				for (int j = parallelism - 1; j > 0; j--) {
+					int r = random.nextInt(j + 1);
+					int t = order[j];
+					order[j] = order[r];
+					order[r] = t;
+				}
+			}
+			partitions.get(order[k]).add(sorted[i]);
+		}
+
+		MArea[][] result = new MArea[parallelism][];
+		for (int i = 0; i < parallelism; i++) {
+			result[i] = partitions.get(i).toArray(new MArea[0]);
+		}
+		return result;
+	}
+
 }
@@ -0,0 +1,24 @@
+package main.java.org.packing.core;
+
+/**
+ * Lowest short side leftover over a range of free rectangles stored as
+ * separate width and height arrays, the inner loop of the fit scans. Used
+ * by {@link FitScan} to skip the ranges where the best fit cannot be.
+ */
+interface FitKernel {
+
+	/**
+	 * Computes the smallest short side leftover of a piece over a range of
+	 * free rectangles, in both orientations, with the same arithmetic as the
+	 * scalar scans.
+	 *
+	 * @param widths  widths of the free rectangles.
+	 * @param heights heights of the free rectangles.
+	 * @param from    first rectangle of the range.
+	 * @param to      end of the range, exclusive.
+	 * @param width   width of the piece.
+	 * @param height  height of the piece.
+	 * @return smallest leftover, positive infinity if the piece fits in none.
+	 */
+	double minLeftover(double[] widths, double[] heights, int from, int to, double width, double height);
+}
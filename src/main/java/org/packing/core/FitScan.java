@@ -0,0 +1,142 @@
+package main.java.org.packing.core;
+
+/**
+ * Best short side fit scan over free rectangles stored as separate width
+ * and height arrays, as done by the list based implementation in
+ * {@link Bin}: the rectangles are visited from the last to the first, the
+ * first rectangle with the smallest leftover wins and the unrotated
+ * orientation is preferred.
+ * <p>
+ * The rectangles are scanned in blocks. A {@link FitKernel} first computes
+ * the smallest leftover of the whole block, and the block is only visited
+ * one rectangle at a time when it holds a better fit than the best found so
+ * far. The kernel uses the Vector API when the {@code jdk.incubator.vector}
+ * module is available, and there is no kernel otherwise, every block being
+ * visited. The kernel computes the leftovers exactly as the scalar loop
+ * does, so the selection is the same with or without it.
+ */
+public final class FitScan {
+	/**
+	 * Number of rectangles checked by the kernel at once.
+	 */
+	static final int BLOCK = 64;
+
+	/**
+	 * Vector kernel, null if the Vector API is not available.
+	 */
+	private static final FitKernel KERNEL = load();
+
+	private FitScan() {
+	}
+
+	/**
+	 * @return true if the scans use the Vector API.
+	 */
+	public static boolean isVectorized() {
+		return KERNEL != null;
+	}
+
+	/**
+	 * Finds the free rectangle with the smallest short side leftover for a
+	 * piece, trying both orientations.
+	 *
+	 * @param widths  widths of the free rectangles.
+	 * @param heights heights of the free rectangles.
+	 * @param n       number of free rectangles.
+	 * @param width   width of the piece.
+	 * @param height  height of the piece.
+	 * @return <ul>
+	 * <li><b>-1</b> if not valid position was found.</li>
+	 * <li><b>position &lt;&lt; 1 | rotated</b> otherwise.</li>
+	 * </ul>
+	 */
+	public static int findBestShortSideFit(double[] widths, double[] heights, int n, double width, double height) {
+		return (int) scan(KERNEL, widths, heights, n, width, height);
+	}
+
+	/**
+	 * Same as {@link #findBestShortSideFit} without the kernel, visiting
+	 * every rectangle.
+	 */
+	public static int findBestShortSideFitScalar(double[] widths, double[] heights, int n, double width, double height) {
+		return (int) scan(null, widths, heights, n, width, height);
+	}
+
+	/**
+	 * Scan of {@link Bin}, which also turns the piece each time the
+	 * orientation of the best fit found so far changes.
+	 *
+	 * @return position &lt;&lt; 1 | rotated, or -1, in the low 32 bits, and
+	 * the number of orientation changes in the high 32 bits.
+	 */
+	static long findWhereToPlace(double[] widths, double[] heights, int n, double width, double height) {
+		return scan(KERNEL, widths, heights, n, width, height);
+	}
+
+	private static long scan(FitKernel kernel, double[] widths, double[] heights, int n, double width, double height) {
+		boolean lastRotated = false;
+		int turns = 0;
+		int res = -1;
+		double min = Double.MAX_VALUE;
+		for (int end = n; end > 0; end -= BLOCK) {
+			int start = Math.max(0, end - BLOCK);
+			if (kernel != null && !(kernel.minLeftover(widths, heights, start, end, width, height) < min)) {
+				continue;
+			}
+			for (int i = end - 1; i >= start; i--) {
+				double fw = widths[i];
+				double fh = heights[i];
+				if (height <= fh && width <= fw) {
+					double m = Math.min(fw - width, fh - height);
+					if (m < min) {
+						min = m;
+						res = i << 1;
+						if (lastRotated) {
+							turns++;
+							lastRotated = false;
+						}
+					}
+				}
+				if (height <= fw && width <= fh) {
+					double m = Math.min(fw - height, fh - width);
+					if (m < min) {
+						min = m;
+						res = (i << 1) | 1;
+						if (!lastRotated) {
+							turns++;
+							lastRotated = true;
+						}
+					}
+				}
+			}
+		}
+		return (long) turns << 32 | (res & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Smallest leftover of a block, for the scans of the other free space
+	 * stores.
+	 *
+	 * @return smallest leftover, negative infinity without a kernel so that
+	 * no block is skipped.
+	 */
+	static double minLeftover(double[] widths, double[] heights, int from, int to, double width, double height) {
+		return KERNEL == null ? Double.NEGATIVE_INFINITY
+				: KERNEL.minLeftover(widths, heights, from, to, width, height);
+	}
+
+	/**
+	 * Loads the vector kernel by name, so that this class still links when
+	 * the Vector API module is not there.
+	 */
+	private static FitKernel load() {
+		try {
+			FitKernel kernel = (FitKernel) Class.forName(FitScan.class.getPackage().getName() + ".VectorFitKernel")
+					.getDeclaredConstructor().newInstance();
+			kernel.minLeftover(new double[]{1}, new double[]{1}, 0, 1, 1, 1);
+			return kernel;
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,744 @@
+package main.java.org.packing.core;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed point implementation of the maximal rectangles strategy used by
+ * {@link Bin}. Coordinates are stored as integer multiples of
+ * {@code 1 / scale} in packed int arrays, four ints per rectangle, and the
+ * fit, split and containment tests are integer operations, so layouts are
+ * exactly reproducible. For pieces on the grid it produces the same layouts
+ * as {@link RectanglePacker}; pieces off the grid are not accepted.
+ * <p>
+ * The free rectangles are always scanned linearly, the free space index of
+ * the options is not used. Free rectangles and placements can be kept off
+ * the heap, in slabs of direct memory given back when the packer is
+ * released.
+ */
+final class FixedPointRectanglePacker implements PrimitivePacker {
+	/**
+	 * Number of values in a rectangle record: x, y, width, height.
+	 */
+	static final int RECT = 4;
+
+	/**
+	 * Number of values in a placement info record: ID, rotated flag.
+	 */
+	static final int INFO = 2;
+
+	/**
+	 * Largest distance to the grid, in grid units, of a size still taken as
+	 * being on the grid; absorbs the rounding of decimal sizes.
+	 */
+	private static final double GRID_TOLERANCE = 1e-6;
+
+	/**
+	 * Grid units per unit of length.
+	 */
+	private final int scale;
+
+	/**
+	 * Rule choosing the free rectangle for each piece.
+	 */
+	private final PlacementRule placementRule;
+
+	/**
+	 * Metrics receiving the time of each step of a placement.
+	 */
+	private final PackingMetrics metrics;
+
+	/**
+	 * Whether measurements are taken.
+	 */
+	private final boolean metered;
+
+	private final int binWidth;
+
+	private final int binHeight;
+
+	/**
+	 * Free rectangles, as rectangle records indexed by slot.
+	 */
+	private IntRecords free;
+
+	/**
+	 * Sequence number of each slot, -1 if the slot is not in use. Rectangles
+	 * sorted by area and then by sequence number are in the list order of
+	 * {@link Bin}.
+	 */
+	private IntRecords seq;
+
+	/**
+	 * Slots below this mark have been used at least once.
+	 */
+	private int slots;
+
+	/**
+	 * Released slots available for reuse.
+	 */
+	private IntRecords released;
+
+	private int releasedCount;
+
+	/**
+	 * Number of free rectangles.
+	 */
+	private int freeCount;
+
+	private int nextSeq;
+
+	/**
+	 * Free rectangles created by the last placement, as consecutive rectangle
+	 * records, before they are added to the free rectangles.
+	 */
+	private int[] created = new int[RECT * 16];
+
+	/**
+	 * Number of rectangles in {@link #created}.
+	 */
+	private int createdCount;
+
+	/**
+	 * Slots of the free rectangles hit by the last placement.
+	 */
+	private final SlotList hit = new SlotList();
+
+	/**
+	 * Slots of the rectangles added by the last placement.
+	 */
+	private final SlotList added = new SlotList();
+
+	/**
+	 * Containment tests made by {@link #eliminateNonMaximal}.
+	 */
+	private long containmentTests;
+
+	/**
+	 * Containment tests avoided by {@link #eliminateNonMaximal}, compared with
+	 * testing every pair of free rectangles.
+	 */
+	private long containmentTestsSaved;
+
+	/**
+	 * Placed pieces, as consecutive rectangle records.
+	 */
+	private IntRecords placed;
+
+	/**
+	 * ID and rotated flag (0 or 1) of the placed pieces.
+	 */
+	private IntRecords placedInfo;
+
+	/**
+	 * Number of placed pieces.
+	 */
+	private int placedCount;
+
+	/**
+	 * Initializes an empty packer for a bin with the specified dimensions.
+	 *
+	 * @param dimension dimensions of the bin.
+	 * @param options   options selecting the scale, the placement rule and
+	 *                  the storage.
+	 * @throws IllegalArgumentException if the bin is too large for the
+	 *                                  scale.
+	 */
+	FixedPointRectanglePacker(Dimension dimension, PackingOptions options) {
+		scale = options.getFixedPointScale();
+		placementRule = options.getPlacementRule();
+		metrics = options.getMetrics();
+		metered = metrics != PackingMetrics.DISABLED;
+		long width = (long) dimension.width * scale;
+		long height = (long) dimension.height * scale;
+		if (width > Integer.MAX_VALUE || height > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Bin " + dimension.width + "x" + dimension.height
+					+ " too large for fixed point scale " + scale);
+		}
+		binWidth = (int) width;
+		binHeight = (int) height;
+		free = records(options, RECT * 16);
+		seq = records(options, 16);
+		released = records(options, 16);
+		placed = records(options, RECT * 16);
+		placedInfo = records(options, INFO * 16);
+		addFree(0, 0, binWidth, binHeight);
+	}
+
+	private static IntRecords records(PackingOptions options, int capacity) {
+		if (options.isOffHeap()) {
+			return IntRecords.offHeap(SlabAllocator.SHARED, capacity);
+		}
+		return IntRecords.onHeap(capacity);
+	}
+
+	/**
+	 * Gives the off heap storage back to the allocator.
+	 */
+	@Override
+	public void release() {
+		free.release();
+		seq.release();
+		released.release();
+		placed.release();
+		placedInfo.release();
+	}
+
+	/**
+	 * Accepts the pieces whose sizes are multiples of {@code 1 / scale}.
+	 */
+	@Override
+	public boolean accepts(double width, double height) {
+		return onGrid(width) && onGrid(height);
+	}
+
+	private boolean onGrid(double value) {
+		double scaled = value * scale;
+		return scaled >= 0 && scaled <= Integer.MAX_VALUE && Math.abs(scaled - Math.rint(scaled)) <= GRID_TOLERANCE;
+	}
+
+	/**
+	 * @return value in grid units.
+	 */
+	private int toFixed(double value) {
+		return (int) Math.rint(value * scale);
+	}
+
+	@Override
+	public int getPlacedCount() {
+		return placedCount;
+	}
+
+	@Override
+	public int getFreeCount() {
+		return freeCount;
+	}
+
+	@Override
+	public int getFreeSlots() {
+		return slots;
+	}
+
+	@Override
+	public long getFreeSequence(int slot) {
+		return seq.get(slot);
+	}
+
+	@Override
+	public double getFreeWidth(int slot) {
+		return free.get(slot * RECT + 2) / (double) scale;
+	}
+
+	@Override
+	public double getFreeHeight(int slot) {
+		return free.get(slot * RECT + 3) / (double) scale;
+	}
+
+	/**
+	 * Finds the best free rectangle for a piece according to the placement
+	 * rule, trying both orientations. Ties are resolved as in {@link Bin}:
+	 * the last rectangle of the list wins and the unrotated orientation is
+	 * preferred.
+	 */
+	@Override
+	public int findWhereToPlace(double width, double height) {
+		IntRecords free = this.free;
+		IntRecords seq = this.seq;
+		int w = toFixed(width);
+		int h = toFixed(height);
+		if (placementRule == PlacementRule.BEST_SHORT_SIDE_FIT) {
+			return findBestShortSideFit(w, h);
+		}
+		int res = -1;
+		long bestPrimary = Long.MAX_VALUE;
+		long bestSecondary = Long.MAX_VALUE;
+		for (int i = 0, n = slots; i < n; i++) {
+			if (seq.get(i) < 0) {
+				continue;
+			}
+			int o = i * RECT;
+			int fw = free.get(o + 2);
+			int fh = free.get(o + 3);
+			for (int rotated = 0; rotated < 2; rotated++) {
+				int pw = rotated == 0 ? w : h;
+				int ph = rotated == 0 ? h : w;
+				if (pw > fw || ph > fh) {
+					continue;
+				}
+				long primary;
+				long secondary;
+				switch (placementRule) {
+					case BEST_LONG_SIDE_FIT:
+						primary = Math.max(fw - pw, fh - ph);
+						secondary = Math.min(fw - pw, fh - ph);
+						break;
+					case BEST_AREA_FIT:
+						primary = (long) fw * fh - (long) pw * ph;
+						secondary = Math.min(fw - pw, fh - ph);
+						break;
+					case BOTTOM_LEFT:
+						primary = binHeight - (free.get(o + 1) + fh - ph);
+						secondary = free.get(o);
+						break;
+					default:
+						primary = -contact(free.get(o), free.get(o + 1) + fh - ph, pw, ph);
+						secondary = 0;
+						break;
+				}
+				if (primary < bestPrimary || (primary == bestPrimary && (secondary < bestSecondary
+						|| (secondary == bestSecondary && res != -1 && after(i, res >> 1))))) {
+					bestPrimary = primary;
+					bestSecondary = secondary;
+					res = (i << 1) | rotated;
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Best short side fit, the default rule, in a loop of its own.
+	 */
+	private int findBestShortSideFit(int width, int height) {
+		IntRecords free = this.free;
+		IntRecords seq = this.seq;
+		int res = -1;
+		int min = Integer.MAX_VALUE;
+		for (int i = 0, n = slots; i < n; i++) {
+			if (seq.get(i) < 0) {
+				continue;
+			}
+			int fw = free.get(i * RECT + 2);
+			int fh = free.get(i * RECT + 3);
+			if (height <= fh && width <= fw) {
+				int m = Math.min(fw - width, fh - height);
+				if (m < min || (m == min && after(i, res >> 1))) {
+					min = m;
+					res = i << 1;
+				}
+			}
+			if (height <= fw && width <= fh) {
+				int m = Math.min(fw - height, fh - width);
+				if (m < min || (m == min && after(i, res >> 1))) {
+					min = m;
+					res = (i << 1) | 1;
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Length of the perimeter of a candidate position touching the bin sides
+	 * or the placed pieces.
+	 */
+	private long contact(int x, int y, int w, int h) {
+		IntRecords placed = this.placed;
+		long contact = 0;
+		if (x == 0 || x + w == binWidth) {
+			contact += h;
+		}
+		if (y == 0 || y + h == binHeight) {
+			contact += w;
+		}
+		for (int i = 0, n = placedCount * RECT; i < n; i += RECT) {
+			int px = placed.get(i);
+			int py = placed.get(i + 1);
+			int pw = placed.get(i + 2);
+			int ph = placed.get(i + 3);
+			if (px + pw == x || px == x + w) {
+				contact += Math.max(0, Math.min(y + h, py + ph) - Math.max(y, py));
+			}
+			if (py + ph == y || py == y + h) {
+				contact += Math.max(0, Math.min(x + w, px + pw) - Math.max(x, px));
+			}
+		}
+		return contact;
+	}
+
+	@Override
+	public boolean place(int fit, double width, double height, int id) {
+		int where = fit >> 1;
+		int rotated = fit & 1;
+		int w = toFixed(rotated == 1 ? height : width);
+		int h = toFixed(rotated == 1 ? width : height);
+		int o = where * RECT;
+		int fx = free.get(o);
+		int fy = free.get(o + 1);
+		int fw = free.get(o + 2);
+		int fh = free.get(o + 3);
+		int x = fx;
+		int y = fy + fh - h;
+		if (overlapsPlaced(x, y, w, h)) {
+			return false;
+		}
+		removeFree(where);
+		createdCount = 0;
+		long start = metered ? System.nanoTime() : 0;
+		splitScheme(fx, fy, fw, fh, x, y, w);
+		long split = metered ? System.nanoTime() : 0;
+		computeFreeRectangles(x, y, w, h);
+		long computed = metered ? System.nanoTime() : 0;
+		eliminateNonMaximal();
+		if (metered) {
+			long eliminated = System.nanoTime();
+			metrics.record(Metric.SPLIT_TIME, split - start);
+			metrics.record(Metric.COMPUTE_FREE_TIME, computed - split);
+			metrics.record(Metric.ELIMINATE_TIME, eliminated - computed);
+			metrics.record(Metric.FREE_RECTANGLES, freeCount);
+		}
+		addPlaced(x, y, w, h, id, rotated);
+		return true;
+	}
+
+	/**
+	 * Direct rectangle test of a candidate position against every placed
+	 * piece. Touching edges do not count as an overlap.
+	 */
+	private boolean overlapsPlaced(int x, int y, int w, int h) {
+		IntRecords placed = this.placed;
+		int maxX = x + w;
+		int maxY = y + h;
+		for (int i = 0, n = placedCount * RECT; i < n; i += RECT) {
+			int px = placed.get(i);
+			int py = placed.get(i + 1);
+			if (px < maxX && py < maxY && x < px + placed.get(i + 2) && y < py + placed.get(i + 3)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Divides the free rectangle where a piece was just placed following the
+	 * maximal rectangles splitting strategy. The used rectangle has already
+	 * been removed; the new rectangles are queued as created ones.
+	 */
+	private void splitScheme(int fx, int fy, int fw, int fh, int px, int py, int pw) {
+		// top
+		int height = py - fy;
+		if (height > 0) {
+			addCreated(fx, fy, fw, height);
+		}
+		// right
+		int width = fx + fw - (px + pw);
+		if (width > 0) {
+			addCreated(px + pw, fy, width, fh);
+		}
+	}
+
+	/**
+	 * Splits every free rectangle intersecting the just placed piece into the
+	 * parts left uncovered by it. Rectangles are processed in list order, and
+	 * the ones queued by {@link #splitScheme} last, as the list
+	 * implementation does.
+	 */
+	private void computeFreeRectangles(int px, int py, int pw, int ph) {
+		hit.clear();
+		intersecting(px, py, pw, ph, hit);
+		sortByListOrder(hit);
+		for (int i = 0; i < hit.size; i++) {
+			int o = hit.slots[i] * RECT;
+			split(free.get(o), free.get(o + 1), free.get(o + 2), free.get(o + 3), px, py, pw, ph);
+			removeFree(hit.slots[i]);
+		}
+
+		int queued = createdCount;
+		boolean removed = false;
+		for (int i = 0; i < queued; i++) {
+			int o = i * RECT;
+			if (split(created[o], created[o + 1], created[o + 2], created[o + 3], px, py, pw, ph)) {
+				created[o + 2] = 0;
+				removed = true;
+			}
+		}
+		if (removed) {
+			int k = 0;
+			for (int i = 0; i < createdCount; i++) {
+				if (created[i * RECT + 2] > 0) {
+					System.arraycopy(created, i * RECT, created, k * RECT, RECT);
+					k++;
+				}
+			}
+			createdCount = k;
+		}
+	}
+
+	/**
+	 * Splits a rectangle if it intersects the just placed piece, queuing the
+	 * uncovered parts as created rectangles.
+	 *
+	 * @return true if the rectangle intersects the piece and must be removed.
+	 */
+	private boolean split(int x, int y, int w, int h, int px, int py, int pw, int ph) {
+		if (!intersects(x, y, w, h, px, py, pw, ph)) {
+			return false;
+		}
+		int ix = Math.max(x, px);
+		int iy = Math.max(y, py);
+		int iw = Math.min(x + w, px + pw) - ix;
+		int ih = Math.min(y + h, py + ph) - iy;
+		// top
+		int height = iy - y;
+		if (height > 0) {
+			addCreated(x, y, w, height);
+		}
+		// left
+		int width = ix - x;
+		if (width > 0) {
+			addCreated(x, y, width, h);
+		}
+		// bottom
+		height = y + h - (iy + ih);
+		if (height > 0) {
+			addCreated(x, iy + ih, w, height);
+		}
+		// right
+		width = x + w - (ix + iw);
+		if (width > 0) {
+			addCreated(ix + iw, y, width, h);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the created rectangles to the free rectangles and eliminates all
+	 * the non-maximal ones, testing only the created rectangles against the
+	 * ones they intersect, as {@link RectanglePacker} does.
+	 */
+	private void eliminateNonMaximal() {
+		added.clear();
+		for (int i = 0; i < createdCount; i++) {
+			int o = i * RECT;
+			added.add(addFree(created[o], created[o + 1], created[o + 2], created[o + 3]));
+		}
+		createdCount = 0;
+
+		IntRecords free = this.free;
+		IntRecords seq = this.seq;
+		long tests = 0;
+		hit.clear();
+		for (int i = 0; i < added.size; i++) {
+			int slot = added.slots[i];
+			int o = slot * RECT;
+			int x = free.get(o);
+			int y = free.get(o + 1);
+			int w = free.get(o + 2);
+			int h = free.get(o + 3);
+			for (int other = 0, n = slots; other < n; other++) {
+				if (other == slot || seq.get(other) < 0) {
+					continue;
+				}
+				int p = other * RECT;
+				if (!intersects(free.get(p), free.get(p + 1), free.get(p + 2), free.get(p + 3), x, y, w, h)) {
+					continue;
+				}
+				tests++;
+				if (after(other, slot) && contains(other, slot)) {
+					hit.add(slot);
+				} else if (after(slot, other) && contains(slot, other)) {
+					hit.add(other);
+				}
+			}
+		}
+		long n = freeCount;
+		containmentTests += tests;
+		containmentTestsSaved += n * (n - 1) / 2 - tests;
+		if (metered) {
+			metrics.count(Metric.CONTAINMENT_TESTS, tests);
+		}
+
+		for (int i = 0; i < hit.size; i++) {
+			int slot = hit.slots[i];
+			if (seq.get(slot) >= 0) {
+				removeFree(slot);
+			}
+		}
+	}
+
+	/**
+	 * Collects the live free rectangles intersecting a box.
+	 */
+	private void intersecting(int x, int y, int w, int h, SlotList out) {
+		IntRecords free = this.free;
+		IntRecords seq = this.seq;
+		for (int i = 0, n = slots; i < n; i++) {
+			int o = i * RECT;
+			if (seq.get(i) >= 0
+					&& intersects(free.get(o), free.get(o + 1), free.get(o + 2), free.get(o + 3), x, y, w, h)) {
+				out.add(i);
+			}
+		}
+	}
+
+	/**
+	 * Same test as {@link Rectangle2D#intersects(Rectangle2D)}.
+	 */
+	private static boolean intersects(int x, int y, int w, int h, int rx, int ry, int rw, int rh) {
+		if (w <= 0 || h <= 0 || rw <= 0 || rh <= 0) {
+			return false;
+		}
+		return rx + rw > x && ry + rh > y && rx < x + w && ry < y + h;
+	}
+
+	/**
+	 * Same test as {@link Rectangle2D#contains(Rectangle2D)}.
+	 *
+	 * @return true if the outer rectangle contains the inner one.
+	 */
+	private boolean contains(int outer, int inner) {
+		IntRecords free = this.free;
+		int o = outer * RECT;
+		int i = inner * RECT;
+		int x0 = free.get(o);
+		int y0 = free.get(o + 1);
+		int x1 = free.get(i);
+		int y1 = free.get(i + 1);
+		return x1 >= x0 && y1 >= y0 && x1 + free.get(i + 2) <= x0 + free.get(o + 2)
+				&& y1 + free.get(i + 3) <= y0 + free.get(o + 3);
+	}
+
+	/**
+	 * Compares two rectangles by their position in the area sorted list.
+	 *
+	 * @return true if rectangle a comes after rectangle b.
+	 */
+	private boolean after(int a, int b) {
+		IntRecords free = this.free;
+		IntRecords seq = this.seq;
+		long areaA = (long) free.get(a * RECT + 2) * free.get(a * RECT + 3);
+		long areaB = (long) free.get(b * RECT + 2) * free.get(b * RECT + 3);
+		return areaA > areaB || (areaA == areaB && seq.get(a) > seq.get(b));
+	}
+
+	/**
+	 * Sorts slots in the list order. Lists are small, so an insertion sort
+	 * is enough.
+	 */
+	private void sortByListOrder(SlotList list) {
+		int[] s = list.slots;
+		for (int i = 1; i < list.size; i++) {
+			int slot = s[i];
+			int j = i - 1;
+			while (j >= 0 && after(s[j], slot)) {
+				s[j + 1] = s[j];
+				j--;
+			}
+			s[j + 1] = slot;
+		}
+	}
+
+	@Override
+	public long getContainmentTests() {
+		return containmentTests;
+	}
+
+	@Override
+	public long getContainmentTestsSaved() {
+		return containmentTestsSaved;
+	}
+
+	/**
+	 * Adds a free rectangle.
+	 *
+	 * @return slot of the new rectangle.
+	 */
+	private int addFree(int x, int y, int w, int h) {
+		int slot;
+		if (releasedCount > 0) {
+			slot = released.get(--releasedCount);
+		} else {
+			slot = slots++;
+			seq = seq.ensure(slots);
+			free = free.ensure(slots * RECT);
+		}
+		int o = slot * RECT;
+		free.set(o, x);
+		free.set(o + 1, y);
+		free.set(o + 2, w);
+		free.set(o + 3, h);
+		seq.set(slot, nextSeq++);
+		freeCount++;
+		return slot;
+	}
+
+	private void removeFree(int slot) {
+		seq.set(slot, -1);
+		released = released.ensure(releasedCount + 1);
+		released.set(releasedCount++, slot);
+		freeCount--;
+	}
+
+	private void addCreated(int x, int y, int w, int h) {
+		if (created.length < (createdCount + 1) * RECT) {
+			created = grow(created, created.length * 2);
+		}
+		int o = createdCount * RECT;
+		created[o] = x;
+		created[o + 1] = y;
+		created[o + 2] = w;
+		created[o + 3] = h;
+		createdCount++;
+	}
+
+	private void addPlaced(int x, int y, int w, int h, int id, int rotated) {
+		placed = placed.ensure((placedCount + 1) * RECT);
+		placedInfo = placedInfo.ensure((placedCount + 1) * INFO);
+		int o = placedCount * RECT;
+		placed.set(o, x);
+		placed.set(o + 1, y);
+		placed.set(o + 2, w);
+		placed.set(o + 3, h);
+		placedInfo.set(placedCount * INFO, id);
+		placedInfo.set(placedCount * INFO + 1, rotated);
+		placedCount++;
+	}
+
+	private static int[] grow(int[] array, int capacity) {
+		int[] grown = new int[capacity];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	/**
+	 * @return the rectangle record at an offset, back in units of length.
+	 */
+	private Rectangle2D.Double toDouble(IntRecords records, int o) {
+		double s = scale;
+		return new Rectangle2D.Double(records.get(o) / s, records.get(o + 1) / s, records.get(o + 2) / s,
+				records.get(o + 3) / s);
+	}
+
+	@Override
+	public Rectangle2D.Double getPlacedBounds(int i) {
+		return toDouble(placed, i * RECT);
+	}
+
+	@Override
+	public int getPlacedID(int i) {
+		return placedInfo.get(i * INFO);
+	}
+
+	@Override
+	public boolean isPlacedRotated(int i) {
+		return placedInfo.get(i * INFO + 1) == 1;
+	}
+
+	@Override
+	public List<Rectangle2D.Double> toFreeRectangles() {
+		SlotList live = new SlotList();
+		for (int i = 0; i < slots; i++) {
+			if (seq.get(i) >= 0) {
+				live.add(i);
+			}
+		}
+		sortByListOrder(live);
+		List<Rectangle2D.Double> rectangles = new ArrayList<>(live.size);
+		for (int i = 0; i < live.size; i++) {
+			rectangles.add(toDouble(free, live.slots[i] * RECT));
+		}
+		return rectangles;
+	}
+}
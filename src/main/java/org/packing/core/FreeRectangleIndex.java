@@ -0,0 +1,50 @@
+package main.java.org.packing.core;
+
+/**
+ * Index over the free rectangles of a {@link FreeRectangles} store, answering
+ * the two queries of the maximal rectangles strategy. Implementations are
+ * created through {@link FreeSpaceIndex} and must give the same answers as a
+ * linear scan of the area sorted list.
+ */
+interface FreeRectangleIndex {
+
+	/**
+	 * Called after a rectangle has been added to the store.
+	 *
+	 * @param slot slot of the new rectangle.
+	 */
+	void added(int slot);
+
+	/**
+	 * Called before a rectangle is removed from the store.
+	 *
+	 * @param slot slot of the rectangle.
+	 */
+	void removed(int slot);
+
+	/**
+	 * Finds the free rectangle with the smallest short side leftover for a
+	 * piece, trying both orientations. Ties go to the rectangle that comes
+	 * last in the area sorted list and then to the unrotated orientation.
+	 *
+	 * @param width  width of the piece.
+	 * @param height height of the piece.
+	 * @return <ul>
+	 * <li><b>-1</b> if not valid position was found.</li>
+	 * <li><b>slot &lt;&lt; 1 | rotated</b> otherwise.</li>
+	 * </ul>
+	 */
+	int findWhereToPlace(double width, double height);
+
+	/**
+	 * Collects the free rectangles intersecting a box, in no particular
+	 * order.
+	 *
+	 * @param x   x of the box.
+	 * @param y   y of the box.
+	 * @param w   width of the box.
+	 * @param h   height of the box.
+	 * @param out list receiving the slots.
+	 */
+	void intersecting(double x, double y, double w, double h, SlotList out);
+}
@@ -0,0 +1,184 @@
+package main.java.org.packing.core;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Slot based store of the free rectangles of a bin, kept as separate x, y,
+ * width and height arrays. Slots of removed rectangles are reused.
+ * <p>
+ * Every rectangle gets a sequence number when it is added. The list
+ * implementation in {@link Bin} keeps its free rectangles stably sorted by
+ * area, so ordering rectangles by area and then by sequence number gives the
+ * same list order without keeping them physically sorted. Indexes use this
+ * order to break ties exactly as the list scan does.
+ */
+final class FreeRectangles {
+	double[] x = new double[16];
+	double[] y = new double[16];
+	double[] w = new double[16];
+	double[] h = new double[16];
+
+	/**
+	 * Sequence number of each slot, -1 if the slot is not in use.
+	 */
+	long[] seq = new long[16];
+
+	/**
+	 * Slots below this mark have been used at least once.
+	 */
+	private int slots;
+
+	/**
+	 * Released slots available for reuse.
+	 */
+	private int[] released = new int[16];
+
+	private int releasedCount;
+
+	/**
+	 * Number of free rectangles.
+	 */
+	private int size;
+
+	private long nextSeq;
+
+	/**
+	 * @return number of free rectangles.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return upper bound, exclusive, of the slots in use.
+	 */
+	int slots() {
+		return slots;
+	}
+
+	/**
+	 * @param slot slot to check.
+	 * @return true if the slot holds a free rectangle.
+	 */
+	boolean isLive(int slot) {
+		return seq[slot] >= 0;
+	}
+
+	/**
+	 * Adds a free rectangle.
+	 *
+	 * @return slot of the new rectangle.
+	 */
+	int add(double x, double y, double w, double h) {
+		int slot;
+		if (releasedCount > 0) {
+			slot = released[--releasedCount];
+		} else {
+			if (slots == seq.length) {
+				grow(slots * 2);
+			}
+			slot = slots++;
+		}
+		this.x[slot] = x;
+		this.y[slot] = y;
+		this.w[slot] = w;
+		this.h[slot] = h;
+		seq[slot] = nextSeq++;
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Removes a free rectangle. Its coordinates stay readable until the slot
+	 * is reused.
+	 *
+	 * @param slot slot of the rectangle.
+	 */
+	void remove(int slot) {
+		seq[slot] = -1;
+		if (releasedCount == released.length) {
+			int[] grown = new int[released.length * 2];
+			System.arraycopy(released, 0, grown, 0, releasedCount);
+			released = grown;
+		}
+		released[releasedCount++] = slot;
+		size--;
+	}
+
+	/**
+	 * @return area of the rectangle in the slot.
+	 */
+	double area(int slot) {
+		return w[slot] * h[slot];
+	}
+
+	/**
+	 * Compares two rectangles by their position in the area sorted list.
+	 *
+	 * @return true if rectangle a comes after rectangle b.
+	 */
+	boolean after(int a, int b) {
+		double areaA = w[a] * h[a];
+		double areaB = w[b] * h[b];
+		return areaA > areaB || (areaA == areaB && seq[a] > seq[b]);
+	}
+
+	/**
+	 * Same test as {@link Rectangle2D#contains(Rectangle2D)}.
+	 *
+	 * @return true if the outer rectangle contains the inner one.
+	 */
+	boolean contains(int outer, int inner) {
+		double w0 = w[outer];
+		double h0 = h[outer];
+		double w1 = w[inner];
+		double h1 = h[inner];
+		if (w0 <= 0 || h0 <= 0 || w1 <= 0 || h1 <= 0) {
+			return false;
+		}
+		double x0 = x[outer];
+		double y0 = y[outer];
+		double x1 = x[inner];
+		double y1 = y[inner];
+		return x1 >= x0 && y1 >= y0 && (x1 + w1) <= x0 + w0 && (y1 + h1) <= y0 + h0;
+	}
+
+	/**
+	 * Same test as {@link Rectangle2D#intersects(Rectangle2D)}.
+	 *
+	 * @return true if the rectangle in the slot intersects the specified one.
+	 */
+	boolean intersects(int slot, double rx, double ry, double rw, double rh) {
+		double w0 = w[slot];
+		double h0 = h[slot];
+		if (w0 <= 0 || h0 <= 0 || rw <= 0 || rh <= 0) {
+			return false;
+		}
+		double x0 = x[slot];
+		double y0 = y[slot];
+		return rx + rw > x0 && ry + rh > y0 && rx < x0 + w0 && ry < y0 + h0;
+	}
+
+	/**
+	 * @return the rectangle in the slot.
+	 */
+	Rectangle2D.Double get(int slot) {
+		return new Rectangle2D.Double(x[slot], y[slot], w[slot], h[slot]);
+	}
+
+	private void grow(int capacity) {
+		x = copy(x, capacity);
+		y = copy(y, capacity);
+		w = copy(w, capacity);
+		h = copy(h, capacity);
+		long[] grownSeq = new long[capacity];
+		System.arraycopy(seq, 0, grownSeq, 0, seq.length);
+		seq = grownSeq;
+	}
+
+	private static double[] copy(double[] array, int capacity) {
+		double[] grown = new double[capacity];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+}
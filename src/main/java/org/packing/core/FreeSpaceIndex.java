@@ -0,0 +1,42 @@
+package main.java.org.packing.core;
+
+import java.awt.*;
+
+/**
+ * Available indexes over the free rectangles of a {@link Bin}. All of them
+ * produce the same layouts, they only differ in how fast the free space is
+ * searched.
+ */
+public enum FreeSpaceIndex {
+	/**
+	 * Scans every free rectangle on each query. Cheapest to maintain, best
+	 * for bins holding few pieces.
+	 */
+	LINEAR {
+		@Override
+		FreeRectangleIndex create(FreeRectangles rectangles, Dimension dimension) {
+			return new LinearFreeRectangleIndex(rectangles);
+		}
+	},
+
+	/**
+	 * Keeps the free rectangles sorted by width and by height for the fit
+	 * query and registered in a uniform grid for the intersection query.
+	 * Best for bins holding many small pieces.
+	 */
+	GRID {
+		@Override
+		FreeRectangleIndex create(FreeRectangles rectangles, Dimension dimension) {
+			return new GridFreeRectangleIndex(rectangles, dimension);
+		}
+	};
+
+	/**
+	 * Creates the index over the free rectangles of a bin.
+	 *
+	 * @param rectangles free rectangles store of the bin.
+	 * @param dimension  dimensions of the bin.
+	 * @return new index.
+	 */
+	abstract FreeRectangleIndex create(FreeRectangles rectangles, Dimension dimension);
+}
@@ -0,0 +1,288 @@
+package main.java.org.packing.core;
+
+import java.awt.*;
+
+/**
+ * Index answering the fit query from the free rectangles sorted by width and
+ * by height, and the intersection query from a uniform grid laid over the
+ * bin.
+ * <p>
+ * The short side leftover of a fitting rectangle is either its width minus
+ * the piece width or its height minus the piece height, so the best fit is
+ * found by walking both sorted lists upwards from the piece size and
+ * stopping once the leftover on that side exceeds the best score found so
+ * far. Only rectangles close in size to the piece are visited.
+ */
+final class GridFreeRectangleIndex implements FreeRectangleIndex {
+	/**
+	 * Number of grid cells along each side of the bin.
+	 */
+	private static final int CELLS = 16;
+
+	private final FreeRectangles rectangles;
+
+	/**
+	 * Slots sorted by width, then by slot.
+	 */
+	private int[] byWidth = new int[16];
+
+	/**
+	 * Slots sorted by height, then by slot.
+	 */
+	private int[] byHeight = new int[16];
+
+	private int size;
+
+	private final double cellWidth;
+
+	private final double cellHeight;
+
+	/**
+	 * Slots of the rectangles overlapping each cell.
+	 */
+	private final int[][] cells = new int[CELLS * CELLS][];
+
+	private final int[] cellSizes = new int[CELLS * CELLS];
+
+	/**
+	 * Query stamp of each slot, to report every rectangle once.
+	 */
+	private int[] stamps = new int[16];
+
+	private int stamp;
+
+	GridFreeRectangleIndex(FreeRectangles rectangles, Dimension dimension) {
+		this.rectangles = rectangles;
+		this.cellWidth = Math.max(dimension.getWidth(), 1) / CELLS;
+		this.cellHeight = Math.max(dimension.getHeight(), 1) / CELLS;
+	}
+
+	@Override
+	public void added(int slot) {
+		if (size == byWidth.length) {
+			byWidth = grow(byWidth, size * 2);
+			byHeight = grow(byHeight, size * 2);
+		}
+		insert(byWidth, rectangles.w, slot);
+		insert(byHeight, rectangles.h, slot);
+		size++;
+		if (slot >= stamps.length) {
+			stamps = grow(stamps, Math.max(slot + 1, stamps.length * 2));
+		}
+
+		int cx1 = cellX(rectangles.x[slot] + rectangles.w[slot]);
+		int cy0 = cellY(rectangles.y[slot]);
+		int cy1 = cellY(rectangles.y[slot] + rectangles.h[slot]);
+		for (int cx = cellX(rectangles.x[slot]); cx <= cx1; cx++) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				int c = cy * CELLS + cx;
+				int[] cell = cells[c];
+				if (cell == null) {
+					cell = cells[c] = new int[8];
+				} else if (cellSizes[c] == cell.length) {
+					cell = cells[c] = grow(cell, cell.length * 2);
+				}
+				cell[cellSizes[c]++] = slot;
+			}
+		}
+	}
+
+	@Override
+	public void removed(int slot) {
+		delete(byWidth, rectangles.w, slot);
+		delete(byHeight, rectangles.h, slot);
+		size--;
+
+		int cx1 = cellX(rectangles.x[slot] + rectangles.w[slot]);
+		int cy0 = cellY(rectangles.y[slot]);
+		int cy1 = cellY(rectangles.y[slot] + rectangles.h[slot]);
+		for (int cx = cellX(rectangles.x[slot]); cx <= cx1; cx++) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				int c = cy * CELLS + cx;
+				int[] cell = cells[c];
+				int n = cellSizes[c];
+				for (int i = 0; i < n; i++) {
+					if (cell[i] == slot) {
+						cell[i] = cell[n - 1];
+						cellSizes[c] = n - 1;
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public int findWhereToPlace(double width, double height) {
+		int best = search(width, height, 0, -1, Double.MAX_VALUE);
+		if (width != height) {
+			best = search(height, width, 1, best, best == -1 ? Double.MAX_VALUE : score(best, width, height));
+		}
+		return best;
+	}
+
+	/**
+	 * Walks both sorted lists for one orientation of the piece.
+	 *
+	 * @param pw      width of the piece in this orientation.
+	 * @param ph      height of the piece in this orientation.
+	 * @param rotated 1 if this is the rotated orientation, 0 otherwise.
+	 * @param res     best fit so far, -1 if none.
+	 * @param min     score of the best fit so far.
+	 * @return best fit, as returned by {@link #findWhereToPlace}.
+	 */
+	private int search(double pw, double ph, int rotated, int res, double min) {
+		FreeRectangles r = rectangles;
+		double[] w = r.w;
+		double[] h = r.h;
+		int i = lowerBound(byWidth, w, pw);
+		int j = lowerBound(byHeight, h, ph);
+		boolean byW = i < size;
+		boolean byH = j < size;
+		while (byW || byH) {
+			if (byW) {
+				int s = byWidth[i];
+				if (w[s] - pw > min) {
+					byW = false;
+				} else {
+					if (ph <= h[s]) {
+						double m = Math.min(w[s] - pw, h[s] - ph);
+						if (better(m, s, rotated, min, res)) {
+							min = m;
+							res = (s << 1) | rotated;
+						}
+					}
+					byW = ++i < size;
+				}
+			}
+			if (byH) {
+				int s = byHeight[j];
+				if (h[s] - ph > min) {
+					byH = false;
+				} else {
+					if (pw <= w[s]) {
+						double m = Math.min(w[s] - pw, h[s] - ph);
+						if (better(m, s, rotated, min, res)) {
+							min = m;
+							res = (s << 1) | rotated;
+						}
+					}
+					byH = ++j < size;
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Tie breaking of the list scan: lower score, then later in the list,
+	 * then unrotated.
+	 */
+	private boolean better(double m, int slot, int rotated, double min, int res) {
+		if (m != min) {
+			return m < min;
+		}
+		if (res == -1) {
+			return true;
+		}
+		int bestSlot = res >> 1;
+		if (bestSlot == slot) {
+			return rotated < (res & 1);
+		}
+		return rectangles.after(slot, bestSlot);
+	}
+
+	/**
+	 * Score of the best fit found for the first orientation.
+	 */
+	private double score(int res, double width, double height) {
+		int slot = res >> 1;
+		return Math.min(rectangles.w[slot] - width, rectangles.h[slot] - height);
+	}
+
+	@Override
+	public void intersecting(double x, double y, double w, double h, SlotList out) {
+		FreeRectangles r = rectangles;
+		int mark = ++stamp;
+		int cx1 = cellX(x + w);
+		int cy0 = cellY(y);
+		int cy1 = cellY(y + h);
+		for (int cx = cellX(x); cx <= cx1; cx++) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				int c = cy * CELLS + cx;
+				int[] cell = cells[c];
+				for (int k = 0, n = cellSizes[c]; k < n; k++) {
+					int slot = cell[k];
+					if (stamps[slot] != mark) {
+						stamps[slot] = mark;
+						if (r.intersects(slot, x, y, w, h)) {
+							out.add(slot);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private int cellX(double x) {
+		return Math.max(0, Math.min(CELLS - 1, (int) (x / cellWidth)));
+	}
+
+	private int cellY(double y) {
+		return Math.max(0, Math.min(CELLS - 1, (int) (y / cellHeight)));
+	}
+
+	/**
+	 * @return first position whose rectangle side is at least the value.
+	 */
+	private int lowerBound(int[] sorted, double[] side, double value) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (side[sorted[mid]] < value) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * @return position of the slot in a list sorted by side, then slot, or
+	 * the position where it would be inserted.
+	 */
+	private int position(int[] sorted, double[] side, int slot) {
+		double value = side[slot];
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			int s = sorted[mid];
+			if (side[s] < value || (side[s] == value && s < slot)) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private void insert(int[] sorted, double[] side, int slot) {
+		int p = position(sorted, side, slot);
+		System.arraycopy(sorted, p, sorted, p + 1, size - p);
+		sorted[p] = slot;
+	}
+
+	private void delete(int[] sorted, double[] side, int slot) {
+		int p = position(sorted, side, slot);
+		System.arraycopy(sorted, p + 1, sorted, p, size - p - 1);
+	}
+
+	private static int[] grow(int[] array, int capacity) {
+		int[] grown = new int[capacity];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+}
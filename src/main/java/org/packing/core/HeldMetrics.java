@@ -0,0 +1,59 @@
+package main.java.org.packing.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Holds back the measurements of the bins packed by one thread, so that
+ * only the bins kept in a result reach the metrics of the caller. Every
+ * measurement taken since the previous bin belongs to the next bin packed.
+ * Not thread safe: the bins must all be packed by one thread, and released
+ * once that thread is done.
+ */
+final class HeldMetrics implements PackingMetrics {
+
+	private final PackingMetrics target;
+
+	private List<Consumer<PackingMetrics>> pending = new ArrayList<>();
+
+	/**
+	 * Measurements of each bin, in the order the bins were packed.
+	 */
+	private final List<List<Consumer<PackingMetrics>>> bins = new ArrayList<>();
+
+	/**
+	 * @param target metrics the released bins report to.
+	 */
+	HeldMetrics(PackingMetrics target) {
+		this.target = target;
+	}
+
+	@Override
+	public void count(Metric metric, long delta) {
+		pending.add(metrics -> metrics.count(metric, delta));
+	}
+
+	@Override
+	public void record(Metric metric, long value) {
+		pending.add(metrics -> metrics.record(metric, value));
+	}
+
+	@Override
+	public void binPacked(Bin bin, long nanos) {
+		pending.add(metrics -> metrics.binPacked(bin, nanos));
+		bins.add(pending);
+		pending = new ArrayList<>();
+	}
+
+	/**
+	 * Reports the measurements of a bin to the target.
+	 *
+	 * @param bin position of the bin among the bins packed.
+	 */
+	void release(int bin) {
+		for (Consumer<PackingMetrics> measurement : bins.get(bin)) {
+			measurement.accept(target);
+		}
+	}
+}
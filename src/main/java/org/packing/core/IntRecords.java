@@ -0,0 +1,101 @@
+package main.java.org.packing.core;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Fixed capacity array of ints holding the records of a
+ * {@link FixedPointRectanglePacker}, either on the heap or in a block of
+ * direct memory from a {@link SlabAllocator}. Growing gives new records
+ * holding the same values, so the storage of a given instance never
+ * changes and loops over it are compiled for the one storage in use.
+ */
+final class IntRecords {
+	/**
+	 * Values on the heap, null off heap.
+	 */
+	private final int[] array;
+
+	/**
+	 * Values off heap, null on the heap.
+	 */
+	private final IntBuffer buffer;
+
+	private final ByteBuffer block;
+
+	private final SlabAllocator allocator;
+
+	private IntRecords(int[] array, ByteBuffer block, SlabAllocator allocator) {
+		this.array = array;
+		this.block = block;
+		this.buffer = block == null ? null : block.asIntBuffer();
+		this.allocator = allocator;
+	}
+
+	/**
+	 * @param capacity capacity in ints.
+	 * @return records backed by an int array.
+	 */
+	static IntRecords onHeap(int capacity) {
+		return new IntRecords(new int[capacity], null, null);
+	}
+
+	/**
+	 * @param allocator allocator of the block.
+	 * @param capacity  minimum capacity in ints.
+	 * @return records backed by direct memory, to be released.
+	 */
+	static IntRecords offHeap(SlabAllocator allocator, int capacity) {
+		return new IntRecords(null, allocator.acquire((long) capacity * Integer.BYTES), allocator);
+	}
+
+	int get(int i) {
+		return array != null ? array[i] : buffer.get(i);
+	}
+
+	void set(int i, int value) {
+		if (array != null) {
+			array[i] = value;
+		} else {
+			buffer.put(i, value);
+		}
+	}
+
+	int capacity() {
+		return array != null ? array.length : buffer.capacity();
+	}
+
+	/**
+	 * Returns records holding at least the specified number of ints: these
+	 * records if large enough, larger ones holding the same values
+	 * otherwise, in which case these records are released.
+	 *
+	 * @param capacity required capacity in ints.
+	 * @return records to use from now on.
+	 */
+	IntRecords ensure(int capacity) {
+		if (capacity <= capacity()) {
+			return this;
+		}
+		capacity = Math.max(capacity, 2 * capacity());
+		if (array != null) {
+			int[] grown = new int[capacity];
+			System.arraycopy(array, 0, grown, 0, array.length);
+			return new IntRecords(grown, null, null);
+		}
+		IntRecords grown = offHeap(allocator, capacity);
+		grown.buffer.put(buffer.duplicate().clear());
+		release();
+		return grown;
+	}
+
+	/**
+	 * Gives the block back to the allocator, off heap. The records must not
+	 * be used afterwards.
+	 */
+	void release() {
+		if (block != null) {
+			allocator.release(block);
+		}
+	}
+}
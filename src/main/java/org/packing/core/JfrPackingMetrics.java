@@ -0,0 +1,136 @@
+package main.java.org.packing.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits the measurements as Java Flight Recorder events, so production runs
+ * can be profiled with a recording. Orders and bins are recorded as
+ * {@code org.packing.Order} and {@code org.packing.Bin} events; the timed
+ * phases of every placement as {@code org.packing.Phase} events, disabled
+ * unless enabled in the recording settings as there are several per piece.
+ * <p>
+ * Every measurement is also passed to a delegate, to keep counters and
+ * histograms alongside the recording.
+ */
+public class JfrPackingMetrics implements PackingMetrics {
+
+	private final PackingMetrics delegate;
+
+	public JfrPackingMetrics() {
+		this(DISABLED);
+	}
+
+	/**
+	 * @param delegate metrics also receiving every measurement.
+	 */
+	public JfrPackingMetrics(PackingMetrics delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void count(Metric metric, long delta) {
+		delegate.count(metric, delta);
+	}
+
+	@Override
+	public void record(Metric metric, long value) {
+		delegate.record(metric, value);
+		if (metric != Metric.FREE_RECTANGLES && metric != Metric.BIN_TIME && metric != Metric.ORDER_TIME) {
+			PhaseEvent event = new PhaseEvent();
+			if (event.shouldCommit()) {
+				event.phase = metric.name();
+				event.time = value;
+				event.commit();
+			}
+		}
+	}
+
+	@Override
+	public void binPacked(Bin bin, long nanos) {
+		delegate.binPacked(bin, nanos);
+		BinEvent event = new BinEvent();
+		if (event.shouldCommit()) {
+			event.pieces = bin.getPlacedCount();
+			event.utilization = bin.getUtilization();
+			event.freeRectanglesPeak = bin.getFreeRectanglesPeak();
+			event.time = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void orderPacked(int pieces, Bin[] bins, long nanos) {
+		delegate.orderPacked(pieces, bins, nanos);
+		OrderEvent event = new OrderEvent();
+		if (event.shouldCommit()) {
+			double used = 0;
+			for (Bin bin : bins) {
+				used += bin.getUtilization();
+			}
+			event.pieces = pieces;
+			event.bins = bins.length;
+			event.utilization = bins.length == 0 ? 0 : used / bins.length;
+			event.time = nanos;
+			event.commit();
+		}
+	}
+
+	@Name("org.packing.Order")
+	@Label("Packed Order")
+	@Category("Packing")
+	static final class OrderEvent extends Event {
+		@Label("Pieces")
+		int pieces;
+
+		@Label("Bins")
+		int bins;
+
+		@Label("Mean Utilization")
+		@Percentage
+		double utilization;
+
+		@Label("Packing Time")
+		@Timespan
+		long time;
+	}
+
+	@Name("org.packing.Bin")
+	@Label("Filled Bin")
+	@Category("Packing")
+	static final class BinEvent extends Event {
+		@Label("Pieces")
+		int pieces;
+
+		@Label("Utilization")
+		@Percentage
+		double utilization;
+
+		@Label("Free Rectangles Peak")
+		int freeRectanglesPeak;
+
+		@Label("Filling Time")
+		@Timespan
+		long time;
+	}
+
+	@Name("org.packing.Phase")
+	@Label("Placement Phase")
+	@Category("Packing")
+	@Description("One timed step of a placement, several per piece")
+	@Enabled(false)
+	static final class PhaseEvent extends Event {
+		@Label("Phase")
+		String phase;
+
+		@Label("Time")
+		@Timespan
+		long time;
+	}
+}
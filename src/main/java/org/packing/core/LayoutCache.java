@@ -0,0 +1,440 @@
+package main.java.org.packing.core;
+
+import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.utils.LayoutFile;
+import main.java.org.packing.utils.PieceList;
+import main.java.org.packing.utils.PlacementList;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Cache of packing results in front of
+ * {@link BinPacking#BinPackingStrategy(MArea[], Dimension, PackingOptions)}.
+ * <p>
+ * Orders are keyed by the bin dimension, the multiset of piece widths and
+ * heights and the options affecting the layout, so the same pieces in any
+ * order and with any IDs share one entry. Pieces are packed in a canonical
+ * order, sorted by width then height, and the cached placements refer to
+ * positions in that order; they are mapped back onto the pieces of each
+ * caller, identical pieces being interchangeable.
+ * <p>
+ * Entries are kept in memory in least recently used order, within a budget
+ * counted in placements. With a directory, entries are also written there
+ * as {@link LayoutFile}s and read back when missing from memory. Orders with
+ * non rectangular pieces are not cached.
+ * <p>
+ * The bins returned from the cache hold their pieces but not their free
+ * space, so nothing more can be placed in them, and carry the options of
+ * their caller: the metrics of the options are not part of the key, and
+ * only the caller that packs an entry reports to its metrics. Thread safe.
+ */
+public class LayoutCache {
+	/**
+	 * Maximum number of placements kept in memory.
+	 */
+	private final long maxPlacements;
+
+	/**
+	 * Directory of the disk tier, null if none or once it failed.
+	 */
+	private volatile Path directory;
+
+	private final LinkedHashMap<Key, Layout> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long placements;
+
+	private long hits;
+
+	private long diskHits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * Initializes a memory only cache.
+	 *
+	 * @param maxPlacements maximum number of placements kept in memory.
+	 */
+	public LayoutCache(long maxPlacements) {
+		this(maxPlacements, null);
+	}
+
+	/**
+	 * Initializes a cache backed by a directory.
+	 *
+	 * @param maxPlacements maximum number of placements kept in memory.
+	 * @param directory     existing directory holding the disk tier, null for
+	 *                      none.
+	 */
+	public LayoutCache(long maxPlacements, Path directory) {
+		this.maxPlacements = maxPlacements;
+		this.directory = directory;
+	}
+
+	/**
+	 * Packs the pieces, or reuses the layout of an identical order.
+	 *
+	 * @param pieces       pieces to be nested inside the bins.
+	 * @param binDimension dimensions for the generated bins.
+	 * @param options      options controlling how pieces are packed.
+	 * @return list of generated bins.
+	 */
+	public Bin[] BinPackingStrategy(MArea[] pieces, Dimension binDimension, PackingOptions options) {
+		for (MArea piece : pieces) {
+			if (!piece.isRectangular()) {
+				return BinPacking.BinPackingStrategy(pieces, binDimension, options);
+			}
+		}
+
+		Integer[] order = canonicalOrder(pieces);
+		double[] widths = new double[pieces.length];
+		double[] heights = new double[pieces.length];
+		for (int k = 0; k < order.length; k++) {
+			Rectangle2D bounds = pieces[order[k]].getBounds2D();
+			widths[k] = bounds.getWidth();
+			heights[k] = bounds.getHeight();
+		}
+		// every index produces the same layout, and the metrics belong to
+		// the caller, not to the entry
+		Key key = new Key(binDimension,
+				options.withFreeSpaceIndex(FreeSpaceIndex.LINEAR).withMetrics(PackingMetrics.DISABLED), widths, heights);
+
+		Layout layout = lookup(key);
+		if (layout == null) {
+			layout = pack(key, options);
+			store(key, layout);
+		}
+		return layout.restore(key, pieces, order, options);
+	}
+
+	/**
+	 * @return lookups answered from memory.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return lookups answered from the disk tier.
+	 */
+	public synchronized long getDiskHits() {
+		return diskHits;
+	}
+
+	/**
+	 * @return lookups that required packing.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return entries evicted from memory.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return placements currently held in memory.
+	 */
+	public synchronized long getPlacements() {
+		return placements;
+	}
+
+	private Layout lookup(Key key) {
+		synchronized (this) {
+			Layout layout = entries.get(key);
+			if (layout != null) {
+				hits++;
+				return layout;
+			}
+		}
+		Path directory = this.directory;
+		Layout layout = directory == null ? null : load(directory, key);
+		synchronized (this) {
+			if (layout != null) {
+				diskHits++;
+				put(key, layout);
+			} else {
+				misses++;
+			}
+		}
+		return layout;
+	}
+
+	private void store(Key key, Layout layout) {
+		synchronized (this) {
+			put(key, layout);
+		}
+		Path directory = this.directory;
+		if (directory != null) {
+			save(directory, key, layout);
+		}
+	}
+
+	/**
+	 * Adds an entry to memory, evicting the least recently used ones beyond
+	 * the budget. Entries larger than the whole budget are not kept.
+	 */
+	private void put(Key key, Layout layout) {
+		if (layout.size() > maxPlacements) {
+			return;
+		}
+		Layout previous = entries.put(key, layout);
+		if (previous != null) {
+			placements -= previous.size();
+		}
+		placements += layout.size();
+		Iterator<Layout> it = entries.values().iterator();
+		while (placements > maxPlacements) {
+			placements -= it.next().size();
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Packs the canonical pieces of an order, reporting to the metrics of
+	 * the caller; their IDs are their canonical positions.
+	 */
+	private static Layout pack(Key key, PackingOptions options) {
+		MArea[] canonical = new MArea[key.widths.length];
+		for (int k = 0; k < canonical.length; k++) {
+			canonical[k] = new MArea(new Rectangle2D.Double(0, 0, key.widths[k], key.heights[k]), k);
+		}
+		Bin[] bins = BinPacking.BinPackingStrategy(canonical, key.binDimension, options);
+		return new Layout(PlacementList.of(bins), bins.length);
+	}
+
+	/**
+	 * Sorts piece positions by width, then height, then position.
+	 */
+	private static Integer[] canonicalOrder(MArea[] pieces) {
+		Integer[] order = new Integer[pieces.length];
+		Rectangle2D[] bounds = new Rectangle2D[pieces.length];
+		for (int i = 0; i < pieces.length; i++) {
+			order[i] = i;
+			bounds[i] = pieces[i].getBounds2D();
+		}
+		Arrays.sort(order, (a, b) -> {
+			int c = Double.compare(bounds[a].getWidth(), bounds[b].getWidth());
+			if (c == 0) {
+				c = Double.compare(bounds[a].getHeight(), bounds[b].getHeight());
+			}
+			return c != 0 ? c : Integer.compare(a, b);
+		});
+		return order;
+	}
+
+	private static Path file(Path directory, Key key, String suffix) {
+		return directory.resolve(String.format("%016x%016x-%s.%s", key.hash, key.hash2,
+				key.options.toString().replace('/', '_'), suffix));
+	}
+
+	/**
+	 * Reads an entry of the disk tier. The canonical pieces are stored next
+	 * to the placements and compared with the key, so that a fingerprint
+	 * collision is a miss and not a wrong layout, and the placements must
+	 * place every canonical piece once in bins numbered densely from 0.
+	 *
+	 * @return the layout, null if missing, unreadable, for other pieces or
+	 * not a valid layout.
+	 */
+	private static Layout load(Path directory, Key key) {
+		Path piecesFile = file(directory, key, "pieces");
+		Path placementsFile = file(directory, key, "placements");
+		if (!Files.exists(piecesFile) || !Files.exists(placementsFile)) {
+			return null;
+		}
+		try {
+			PieceList stored = LayoutFile.readPieces(piecesFile);
+			if (!stored.getBinDimension().equals(key.binDimension) || stored.size() != key.widths.length) {
+				return null;
+			}
+			for (int k = 0; k < stored.size(); k++) {
+				if (stored.getWidth(k) != key.widths[k] || stored.getHeight(k) != key.heights[k]) {
+					return null;
+				}
+			}
+			PlacementList placements = LayoutFile.readPlacements(placementsFile);
+			int n = key.widths.length;
+			if (placements.size() != n) {
+				return null;
+			}
+			boolean[] placed = new boolean[n];
+			int bins = 0;
+			for (int i = 0; i < n; i++) {
+				int id = placements.getID(i);
+				if (id < 0 || id >= n || placed[id] || placements.getBin(i) < 0) {
+					return null;
+				}
+				placed[id] = true;
+				bins = Math.max(bins, placements.getBin(i) + 1);
+			}
+			// every bin below the last one holds a piece
+			boolean[] used = new boolean[bins];
+			int usedBins = 0;
+			for (int i = 0; i < n; i++) {
+				if (!used[placements.getBin(i)]) {
+					used[placements.getBin(i)] = true;
+					usedBins++;
+				}
+			}
+			return usedBins == bins ? new Layout(placements, bins) : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes an entry to the disk tier, or turns the disk tier off if it
+	 * cannot be written.
+	 */
+	private void save(Path directory, Key key, Layout layout) {
+		try {
+			LayoutFile.writePieces(file(directory, key, "pieces"),
+					new PieceList(key.binDimension, 0, key.widths, key.heights, key.widths.length));
+			LayoutFile.writePlacements(file(directory, key, "placements"), layout.placements);
+		} catch (IOException e) {
+			System.err.println("Layout cache: cannot write to " + directory + ", keeping layouts in memory only: " + e);
+			this.directory = null;
+		}
+	}
+
+	/**
+	 * Canonical fingerprint of an order.
+	 */
+	private static final class Key {
+		final Dimension binDimension;
+
+		final PackingOptions options;
+
+		/**
+		 * Piece sizes in canonical order.
+		 */
+		final double[] widths;
+
+		final double[] heights;
+
+		/**
+		 * Two independent hashes of the whole key; the first is also the hash
+		 * code, both name the files of the disk tier.
+		 */
+		final long hash;
+
+		final long hash2;
+
+		Key(Dimension binDimension, PackingOptions options, double[] widths, double[] heights) {
+			this.binDimension = binDimension;
+			this.options = options;
+			this.widths = widths;
+			this.heights = heights;
+			long h = 0x9E3779B97F4A7C15L;
+			long h2 = 0xC2B2AE3D27D4EB4FL;
+			long[] header = {binDimension.width, binDimension.height, options.toString().hashCode(), widths.length};
+			for (long v : header) {
+				h = mix(h, v);
+				h2 = mix2(h2, v);
+			}
+			for (int k = 0; k < widths.length; k++) {
+				long w = Double.doubleToLongBits(widths[k]);
+				long hh = Double.doubleToLongBits(heights[k]);
+				h = mix(mix(h, w), hh);
+				h2 = mix2(mix2(h2, w), hh);
+			}
+			this.hash = h;
+			this.hash2 = h2;
+		}
+
+		private static long mix(long h, long v) {
+			h ^= v;
+			h *= 0xFF51AFD7ED558CCDL;
+			return h ^ (h >>> 33);
+		}
+
+		private static long mix2(long h, long v) {
+			h = (h ^ v) * 0xC4CEB9FE1A85EC53L;
+			return Long.rotateLeft(h, 31) + 0x165667B19E3779F9L;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && hash2 == other.hash2 && binDimension.equals(other.binDimension)
+					&& options.equals(other.options) && Arrays.equals(widths, other.widths)
+					&& Arrays.equals(heights, other.heights);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (hash ^ (hash >>> 32));
+		}
+	}
+
+	/**
+	 * Cached placements, IDs being canonical positions.
+	 */
+	private static final class Layout {
+		final PlacementList placements;
+
+		final int bins;
+
+		Layout(PlacementList placements, int bins) {
+			this.placements = placements;
+			this.bins = bins;
+		}
+
+		int size() {
+			return placements.size();
+		}
+
+		/**
+		 * Builds the bins of a caller.
+		 *
+		 * @param key     key of the order.
+		 * @param pieces  pieces of the caller.
+		 * @param order   position among the pieces of each canonical
+		 *                position.
+		 * @param options options of the caller.
+		 * @return bins holding new pieces with the IDs of the caller.
+		 */
+		Bin[] restore(Key key, MArea[] pieces, Integer[] order, PackingOptions options) {
+			List<List<MArea>> placed = new ArrayList<>(bins);
+			for (int b = 0; b < bins; b++) {
+				placed.add(new ArrayList<>());
+			}
+			for (int i = 0; i < placements.size(); i++) {
+				int k = placements.getID(i);
+				MArea piece = pieces[order[k]];
+				boolean rotated = placements.isRotated(i);
+				double w = rotated ? key.heights[k] : key.widths[k];
+				double h = rotated ? key.widths[k] : key.heights[k];
+				double rotation = (piece.getRotation() + placements.getQuarterTurns(i) * 90) % 360;
+				placed.get(placements.getBin(i)).add(new MArea(
+						new Rectangle2D.Double(placements.getX(i), placements.getY(i), w, h), piece.getID(), rotation));
+			}
+			Bin[] result = new Bin[bins];
+			for (int b = 0; b < bins; b++) {
+				result[b] = new Bin(key.binDimension, options, placed.get(b));
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package main.java.org.packing.core;
+
+/**
+ * Reference index: every query scans all the free rectangles, skipping the
+ * blocks of slots where {@link FitScan#minLeftover} shows that the best fit
+ * cannot be.
+ */
+final class LinearFreeRectangleIndex implements FreeRectangleIndex {
+	private final FreeRectangles rectangles;
+
+	LinearFreeRectangleIndex(FreeRectangles rectangles) {
+		this.rectangles = rectangles;
+	}
+
+	@Override
+	public void added(int slot) {
+	}
+
+	@Override
+	public void removed(int slot) {
+	}
+
+	@Override
+	public int findWhereToPlace(double width, double height) {
+		FreeRectangles r = rectangles;
+		double[] w = r.w;
+		double[] h = r.h;
+		long[] seq = r.seq;
+		int res = -1;
+		double min = Double.MAX_VALUE;
+		for (int start = 0, n = r.slots(); start < n; start += FitScan.BLOCK) {
+			int end = Math.min(n, start + FitScan.BLOCK);
+			// ties count, and released slots only lower the block leftover
+			if (FitScan.minLeftover(w, h, start, end, width, height) > min) {
+				continue;
+			}
+			for (int i = start; i < end; i++) {
+				if (seq[i] < 0) {
+					continue;
+				}
+				double fw = w[i];
+				double fh = h[i];
+				if (height <= fh && width <= fw) {
+					double m = Math.min(fw - width, fh - height);
+					if (m < min || (m == min && r.after(i, res >> 1))) {
+						min = m;
+						res = i << 1;
+					}
+				}
+				if (height <= fw && width <= fh) {
+					double m = Math.min(fw - height, fh - width);
+					if (m < min || (m == min && r.after(i, res >> 1))) {
+						min = m;
+						res = (i << 1) | 1;
+					}
+				}
+			}
+		}
+		return res;
+	}
+
+	@Override
+	public void intersecting(double x, double y, double w, double h, SlotList out) {
+		FreeRectangles r = rectangles;
+		long[] seq = r.seq;
+		for (int i = 0, n = r.slots(); i < n; i++) {
+			if (seq[i] >= 0 && r.intersects(i, x, y, w, h)) {
+				out.add(i);
+			}
+		}
+	}
+}
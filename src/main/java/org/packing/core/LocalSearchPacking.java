@@ -0,0 +1,262 @@
+package main.java.org.packing.core;
+
+
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Anytime improvement of a packing by ruin and recreate.
+ * <p>
+ * Every worker repeats the same move on its own copy of the solution: the
+ * pieces of a weak bin and of a few other bins are taken out and packed
+ * again together, with a placement rule and a piece order drawn at random,
+ * by the same bins as {@link BinPacking#BinPackingStrategy}. The move is
+ * kept if it uses fewer bins, or as many bins with a higher sum of squared
+ * utilizations, which pushes the pieces out of the weakest bins until one
+ * of them can be emptied. A worker that has not improved its solution for
+ * a while restarts from the best solution found by any worker. The search
+ * stops as soon as the best solution reaches the
+ * {@link LowerBounds#lowerBound lower bound} of the pieces.
+ * <p>
+ * Results are compared as in {@link PortfolioPacking}.
+ */
+public class LocalSearchPacking {
+	/**
+	 * Largest number of bins packed again together with the weak bin.
+	 */
+	private static final int MAX_RUINED = 3;
+
+	/**
+	 * Moves without improvement, per bin of the solution, after which a
+	 * worker restarts from the best solution.
+	 */
+	private static final int RESTART_MOVES = 20;
+
+	/**
+	 * Improves the bins on a pool with one thread per processor until the
+	 * budget expires. See
+	 * {@link #LocalSearchStrategy(Bin[], long, TimeUnit, int, long, ExecutorService)}.
+	 *
+	 * @param bins   bins to improve, all of the same dimensions.
+	 * @param budget wall-clock time allowed.
+	 * @param unit   unit of the budget.
+	 * @return best list of bins found.
+	 */
+	public static Bin[] LocalSearchStrategy(Bin[] bins, long budget, TimeUnit unit) {
+		int workers = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			return LocalSearchStrategy(bins, budget, unit, workers, System.nanoTime(), executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Improves the bins by ruin and recreate on several workers until the
+	 * budget expires or the lower bound is reached, and returns the best
+	 * solution found so far: the provided bins if none is better. The
+	 * workers stop by themselves at the deadline, between two bins of a
+	 * move, and are cancelled if they have not; the result is returned at the
+	 * deadline, or once every worker has stopped at the lower bound, unless
+	 * the calling thread is interrupted, in which case it is returned at
+	 * once.
+	 * <p>
+	 * The provided bins and their pieces are never modified: the moves pack
+	 * copies of the pieces. The returned solution reuses, as the same
+	 * objects, the provided bins that the search left untouched, and holds new
+	 * closed bins otherwise; a bin found in both solutions must not be
+	 * modified while either is in use.
+	 *
+	 * @param bins     bins to improve, all of the same dimensions.
+	 * @param budget   wall-clock time allowed.
+	 * @param unit     unit of the budget.
+	 * @param workers  number of workers searching concurrently.
+	 * @param seed     seed of the random moves, worker i using seed + i.
+	 * @param executor executor running the workers.
+	 * @return best list of bins found.
+	 */
+	public static Bin[] LocalSearchStrategy(Bin[] bins, long budget, TimeUnit unit, int workers, long seed,
+	                                        ExecutorService executor) {
+		long deadline = System.nanoTime() + unit.toNanos(budget);
+		if (bins.length < 2 || workers < 1) {
+			return bins;
+		}
+		List<MArea> pieces = new ArrayList<>();
+		for (Bin bin : bins) {
+			pieces.addAll(Arrays.asList(bin.getPlacedPieces()));
+		}
+		int bound = LowerBounds.lowerBound(pieces.toArray(new MArea[0]), bins[0].getDimension());
+		if (bins.length <= bound) {
+			return bins;
+		}
+		Best best = new Best(bins, bound);
+		List<Future<?>> runs = new ArrayList<>();
+		for (int i = 0; i < workers; i++) {
+			Random random = new Random(seed + i);
+			runs.add(executor.submit(() -> search(best, random, deadline)));
+		}
+		for (Future<?> run : runs) {
+			await(run, deadline - System.nanoTime());
+		}
+		for (Future<?> run : runs) {
+			run.cancel(true);
+		}
+		return best.get();
+	}
+
+	/**
+	 * Moves of one worker until the deadline.
+	 *
+	 * @param best     best solution shared by the workers.
+	 * @param random   random source of the worker.
+	 * @param deadline deadline, from {@link System#nanoTime}.
+	 */
+	private static void search(Best best, Random random, long deadline) {
+		BooleanSupplier expired = () -> System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()
+				|| best.isOptimal();
+		Bin[] current = best.get();
+		int stale = 0;
+		// a single bin cannot be improved
+		while (current.length > 1 && !expired.getAsBoolean()) {
+			Bin[] next = move(current, random, expired);
+			if (next == null) {
+				if (++stale > RESTART_MOVES * current.length) {
+					current = best.get();
+					stale = 0;
+				}
+				continue;
+			}
+			current = next;
+			stale = 0;
+			best.offer(current);
+		}
+	}
+
+	/**
+	 * Empties a weak bin and a few other bins and packs their pieces again.
+	 *
+	 * @param bins    current solution, at least two bins.
+	 * @param random  random source of the worker.
+	 * @param expired checked before packing each bin.
+	 * @return the improved solution, null if the move does not improve it
+	 * or the deadline passed.
+	 */
+	private static Bin[] move(Bin[] bins, Random random, BooleanSupplier expired) {
+		int n = bins.length;
+		int weak = random.nextBoolean() ? weakest(bins) : random.nextInt(n);
+		int ruined = 1 + random.nextInt(Math.min(MAX_RUINED, n - 1));
+
+		// the weak bin and distinct others, drawn by a partial shuffle
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		order[weak] = 0;
+		order[0] = weak;
+		for (int i = 1; i <= ruined; i++) {
+			int r = i + random.nextInt(n - i);
+			int t = order[i];
+			order[i] = order[r];
+			order[r] = t;
+		}
+
+		Bin[] before = new Bin[ruined + 1];
+		List<MArea> pieces = new ArrayList<>();
+		for (int i = 0; i <= ruined; i++) {
+			before[i] = bins[order[i]];
+			pieces.addAll(Arrays.asList(before[i].getPlacedPieces()));
+		}
+
+		PackingOptions options = before[0].getOptions().withMetrics(PackingMetrics.DISABLED)
+				.withPlacementRule(PlacementRule.values()[random.nextInt(PlacementRule.values().length)])
+				.withPieceOrder(PieceOrder.values()[random.nextInt(PieceOrder.values().length)]);
+		// the pieces belong to bins of the solutions, and the bins move the
+		// pieces they place
+		Bin[] after = BinPacking.BinPackingStrategy(PortfolioPacking.copyPieces(pieces.toArray(new MArea[0])),
+				before[0].getDimension(), options, expired);
+		if (after == null || !PortfolioPacking.better(after, before)) {
+			return null;
+		}
+
+		List<Bin> next = new ArrayList<>();
+		for (int i = ruined + 1; i < n; i++) {
+			next.add(bins[order[i]]);
+		}
+		next.addAll(Arrays.asList(after));
+		return next.toArray(new Bin[0]);
+	}
+
+	/**
+	 * @return position of the bin with the lowest utilization.
+	 */
+	private static int weakest(Bin[] bins) {
+		int weakest = 0;
+		for (int i = 1; i < bins.length; i++) {
+			if (bins[i].getUtilization() < bins[weakest].getUtilization()) {
+				weakest = i;
+			}
+		}
+		return weakest;
+	}
+
+	/**
+	 * Waits for a worker until the deadline.
+	 */
+	private static void await(Future<?> run, long nanos) {
+		try {
+			run.get(Math.max(nanos, 0), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException | CancellationException e) {
+			// still running, cancelled by the caller
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Best solution found by the workers.
+	 */
+	private static final class Best {
+		private final int bound;
+
+		private Bin[] bins;
+
+		Best(Bin[] bins, int bound) {
+			this.bins = bins;
+			this.bound = bound;
+		}
+
+		synchronized Bin[] get() {
+			return bins;
+		}
+
+		/**
+		 * @return true if the best solution uses as few bins as the lower
+		 * bound.
+		 */
+		synchronized boolean isOptimal() {
+			return bins.length <= bound;
+		}
+
+		synchronized void offer(Bin[] candidate) {
+			if (PortfolioPacking.better(candidate, bins)) {
+				bins = candidate;
+			}
+		}
+	}
+}
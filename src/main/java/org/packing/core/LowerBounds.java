@@ -0,0 +1,219 @@
+package main.java.org.packing.core;
+
+
+import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.primitives.PieceType;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * Lower bounds on the number of bins needed by an order, to tell how far a
+ * result is from the optimum and to stop searching once it is reached.
+ * Pieces may be turned by 90 degrees.
+ * <p>
+ * The continuous bound divides the area of the pieces by the area of a bin.
+ * The L2 bound, after Martello and Vigo, counts the pieces too large to
+ * share a bin with each other, and adds the bins needed by the area of the
+ * medium pieces that cannot fit next to the largest ones. Non rectangular
+ * pieces only count in the continuous bound, their bounding boxes being
+ * able to overlap.
+ */
+public final class LowerBounds {
+	/**
+	 * Largest number of thresholds tried by the L2 bound.
+	 */
+	private static final int THRESHOLDS = 256;
+
+	/**
+	 * Tolerance on the number of bins, so that rounding errors on whole areas
+	 * do not add a bin.
+	 */
+	private static final double EPSILON = 1e-9;
+
+	private LowerBounds() {
+	}
+
+	/**
+	 * @param pieces       pieces of the order.
+	 * @param binDimension dimensions of the bins.
+	 * @return the best of the continuous and L2 bounds.
+	 */
+	public static int lowerBound(MArea[] pieces, Dimension binDimension) {
+		return Math.max(continuous(pieces, binDimension), l2(pieces, binDimension));
+	}
+
+	/**
+	 * Same as {@link #lowerBound(MArea[], Dimension)}, counting the copies of
+	 * each type without creating them.
+	 *
+	 * @param types        piece types of the order.
+	 * @param binDimension dimensions of the bins.
+	 * @return the best of the continuous and L2 bounds.
+	 */
+	public static int lowerBound(PieceType[] types, Dimension binDimension) {
+		MArea[] pieces = new MArea[types.length];
+		int[] counts = new int[types.length];
+		double area = 0;
+		for (int i = 0; i < types.length; i++) {
+			pieces[i] = types[i].getPiece();
+			counts[i] = types[i].getQuantity();
+			area += pieces[i].getArea() * counts[i];
+		}
+		int continuous = bins(area / (binDimension.getWidth() * binDimension.getHeight()));
+		return Math.max(continuous, l2(pieces, counts, binDimension));
+	}
+
+	/**
+	 * @param pieces       pieces of the order.
+	 * @param binDimension dimensions of the bins.
+	 * @return total area of the pieces over the area of a bin, rounded up.
+	 */
+	public static int continuous(MArea[] pieces, Dimension binDimension) {
+		double area = 0;
+		for (MArea piece : pieces) {
+			area += piece.getArea();
+		}
+		return bins(area / (binDimension.getWidth() * binDimension.getHeight()));
+	}
+
+	/**
+	 * L2 bound of Martello and Vigo over the rectangular pieces, for
+	 * thresholds p on the heights and q on the widths taken equal up to half
+	 * of the bin:
+	 * <ul>
+	 * <li>I1: pieces higher than H - p and wider than W - q.</li>
+	 * <li>I2: other pieces higher than H / 2 and wider than W / 2.</li>
+	 * <li>I3: other pieces at least p high and q wide.</li>
+	 * </ul>
+	 * The pieces of I1 and I2 need a bin each, and the pieces of I3 do not
+	 * fit in the bins of I1, so the bound is |I1| + |I2| plus the bins needed
+	 * by the area of I3 which the bins of I2 cannot take. A piece belongs to
+	 * a set only if it does in every orientation fitting in the bin.
+	 *
+	 * @param pieces       pieces of the order.
+	 * @param binDimension dimensions of the bins.
+	 * @return best bound over the thresholds tried.
+	 */
+	public static int l2(MArea[] pieces, Dimension binDimension) {
+		return l2(pieces, null, binDimension);
+	}
+
+	/**
+	 * @param counts copies of each piece, null for one each.
+	 */
+	private static int l2(MArea[] pieces, int[] counts, Dimension binDimension) {
+		double binWidth = binDimension.getWidth();
+		double binHeight = binDimension.getHeight();
+		double binArea = binWidth * binHeight;
+
+		// smallest width and height over the orientations fitting in the bin
+		double[] widths = new double[pieces.length];
+		double[] heights = new double[pieces.length];
+		long[] copies = new long[pieces.length];
+		int n = 0;
+		for (int k = 0; k < pieces.length; k++) {
+			MArea piece = pieces[k];
+			if (!piece.isRectangular()) {
+				continue;
+			}
+			Rectangle2D.Double bb = piece.getBoundingBox2D();
+			boolean upright = bb.width <= binWidth && bb.height <= binHeight;
+			boolean turned = bb.height <= binWidth && bb.width <= binHeight;
+			if (upright && turned) {
+				widths[n] = Math.min(bb.width, bb.height);
+				heights[n] = widths[n];
+			} else if (upright) {
+				widths[n] = bb.width;
+				heights[n] = bb.height;
+			} else if (turned) {
+				widths[n] = bb.height;
+				heights[n] = bb.width;
+			} else {
+				continue;
+			}
+			copies[n++] = counts == null ? 1 : counts[k];
+		}
+
+		long large = 0;
+		for (int i = 0; i < n; i++) {
+			if (widths[i] > binWidth / 2 && heights[i] > binHeight / 2) {
+				large += copies[i];
+			}
+		}
+		long best = large;
+		for (double t : thresholds(widths, heights, n, Math.max(binWidth, binHeight) / 2)) {
+			double p = Math.min(t, binHeight / 2);
+			double q = Math.min(t, binWidth / 2);
+			long i2 = 0;
+			double area = 0;
+			for (int i = 0; i < n; i++) {
+				double w = widths[i];
+				double h = heights[i];
+				if (w > binWidth / 2 && h > binHeight / 2) {
+					if (h <= binHeight - p || w <= binWidth - q) {
+						i2 += copies[i];
+						area += w * h * copies[i];
+					}
+				} else if (h >= p && w >= q) {
+					area += w * h * copies[i];
+				}
+			}
+			best = Math.max(best, large + Math.max(0, bins((area - i2 * binArea) / binArea)));
+		}
+		return (int) Math.min(best, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gap of a result to a lower bound.
+	 *
+	 * @param bins  number of bins of the result.
+	 * @param bound lower bound of the order.
+	 * @return extra bins over the bound, relative to the bound; 0 if the
+	 * result is optimal.
+	 */
+	public static double gap(long bins, long bound) {
+		return bound == 0 ? 0 : (double) (bins - bound) / bound;
+	}
+
+	/**
+	 * Thresholds tried by the L2 bound: 0 and the distinct sides up to the
+	 * limit, evenly sampled when there are too many.
+	 */
+	private static double[] thresholds(double[] widths, double[] heights, int n, double limit) {
+		double[] sides = new double[2 * n + 1];
+		int count = 0;
+		sides[count++] = 0;
+		for (int i = 0; i < n; i++) {
+			if (widths[i] <= limit) {
+				sides[count++] = widths[i];
+			}
+			if (heights[i] <= limit) {
+				sides[count++] = heights[i];
+			}
+		}
+		Arrays.sort(sides, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinct == 0 || sides[i] != sides[distinct - 1]) {
+				sides[distinct++] = sides[i];
+			}
+		}
+		if (distinct <= THRESHOLDS) {
+			return Arrays.copyOf(sides, distinct);
+		}
+		double[] sampled = new double[THRESHOLDS];
+		for (int i = 0; i < THRESHOLDS; i++) {
+			sampled[i] = sides[(int) ((long) i * (distinct - 1) / (THRESHOLDS - 1))];
+		}
+		return sampled;
+	}
+
+	/**
+	 * @return number of bins rounded up, forgiving rounding errors.
+	 */
+	private static int bins(double bins) {
+		return (int) Math.ceil(bins - EPSILON);
+	}
+}
@@ -0,0 +1,83 @@
+package main.java.org.packing.core;
+
+/**
+ * Measurements reported to {@link PackingMetrics} while packing. Counters are
+ * summed; histograms keep the distribution of the recorded values. Times are
+ * in nanoseconds.
+ */
+public enum Metric {
+	/**
+	 * Pieces placed in a bin.
+	 */
+	PIECES_PLACED(false),
+
+	/**
+	 * Pieces a bin could not take, offered again to the next bin.
+	 */
+	PIECES_REJECTED(false),
+
+	/**
+	 * Area intersection tests of a candidate position against the pieces
+	 * already placed, made for non rectangular pieces.
+	 */
+	INTERSECTIONS(false),
+
+	/**
+	 * Containment tests made while eliminating non-maximal free rectangles.
+	 */
+	CONTAINMENT_TESTS(false),
+
+	/**
+	 * Number of free rectangles of a bin after each placement.
+	 */
+	FREE_RECTANGLES(true),
+
+	/**
+	 * Time spent choosing the free rectangle of a piece.
+	 */
+	FIND_TIME(true),
+
+	/**
+	 * Time spent splitting the free rectangle used by a piece.
+	 */
+	SPLIT_TIME(true),
+
+	/**
+	 * Time spent splitting the other free rectangles hit by a piece.
+	 */
+	COMPUTE_FREE_TIME(true),
+
+	/**
+	 * Time spent eliminating the non-maximal free rectangles.
+	 */
+	ELIMINATE_TIME(true),
+
+	/**
+	 * Time of a bounding box packing call, placing non rectangular pieces.
+	 */
+	BOUNDING_BOX_TIME(true),
+
+	/**
+	 * Time spent filling a bin.
+	 */
+	BIN_TIME(true),
+
+	/**
+	 * Time spent packing a whole order.
+	 */
+	ORDER_TIME(true);
+
+	private final boolean histogram;
+
+	Metric(boolean histogram) {
+		this.histogram = histogram;
+	}
+
+	/**
+	 * @return true if the values are recorded in a histogram, false if they
+	 * are summed.
+	 */
+	public boolean isHistogram() {
+		return histogram;
+	}
+}
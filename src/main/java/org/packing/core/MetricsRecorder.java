@@ -0,0 +1,239 @@
+package main.java.org.packing.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the measurements in memory: sums for the counters and log-linear
+ * histograms, within 1/8 of the value, for the others. Recording only takes
+ * a few atomic additions, from any number of threads.
+ * <p>
+ * Besides the metrics it keeps per order and per bin figures: pieces packed
+ * per second of packing, mean bin utilization and peak number of free
+ * rectangles in a bin.
+ */
+public class MetricsRecorder implements PackingMetrics {
+
+	private final LongAdder[] counters = new LongAdder[Metric.values().length];
+
+	private final Histogram[] histograms = new Histogram[Metric.values().length];
+
+	private final LongAdder orders = new LongAdder();
+
+	private final LongAdder orderPieces = new LongAdder();
+
+	private final LongAdder bins = new LongAdder();
+
+	private final DoubleAdder utilization = new DoubleAdder();
+
+	private final LongAccumulator freeRectanglesPeak = new LongAccumulator(Math::max, 0);
+
+	public MetricsRecorder() {
+		for (Metric metric : Metric.values()) {
+			if (metric.isHistogram()) {
+				histograms[metric.ordinal()] = new Histogram();
+			} else {
+				counters[metric.ordinal()] = new LongAdder();
+			}
+		}
+	}
+
+	@Override
+	public void count(Metric metric, long delta) {
+		counters[metric.ordinal()].add(delta);
+	}
+
+	@Override
+	public void record(Metric metric, long value) {
+		histograms[metric.ordinal()].record(value);
+	}
+
+	@Override
+	public void binPacked(Bin bin, long nanos) {
+		record(Metric.BIN_TIME, nanos);
+		bins.increment();
+		utilization.add(bin.getUtilization());
+		freeRectanglesPeak.accumulate(bin.getFreeRectanglesPeak());
+	}
+
+	@Override
+	public void orderPacked(int pieces, Bin[] bins, long nanos) {
+		record(Metric.ORDER_TIME, nanos);
+		orders.increment();
+		orderPieces.add(pieces);
+	}
+
+	/**
+	 * @param metric counter.
+	 * @return sum of the counter.
+	 */
+	public long getCount(Metric metric) {
+		if (metric.isHistogram()) {
+			throw new IllegalArgumentException(metric + " is a histogram");
+		}
+		return counters[metric.ordinal()].sum();
+	}
+
+	/**
+	 * @param metric histogram.
+	 * @return the histogram, still recording.
+	 */
+	public Histogram getHistogram(Metric metric) {
+		if (!metric.isHistogram()) {
+			throw new IllegalArgumentException(metric + " is a counter");
+		}
+		return histograms[metric.ordinal()];
+	}
+
+	/**
+	 * @return number of packed orders.
+	 */
+	public long getOrders() {
+		return orders.sum();
+	}
+
+	/**
+	 * @return number of filled bins.
+	 */
+	public long getBins() {
+		return bins.sum();
+	}
+
+	/**
+	 * @return pieces of the packed orders per second spent packing them,
+	 * summed over the threads.
+	 */
+	public double getPiecesPerSecond() {
+		long nanos = getHistogram(Metric.ORDER_TIME).getSum();
+		return nanos == 0 ? 0 : orderPieces.sum() * 1e9 / nanos;
+	}
+
+	/**
+	 * @return mean utilization of the filled bins, between 0 and 1.
+	 */
+	public double getMeanUtilization() {
+		long n = bins.sum();
+		return n == 0 ? 0 : utilization.sum() / n;
+	}
+
+	/**
+	 * @return largest number of free rectangles held by a filled bin.
+	 */
+	public long getFreeRectanglesPeak() {
+		return freeRectanglesPeak.get();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d orders, %d bins, %.0f pieces/s, utilization %.1f%%, free rectangles peak %d",
+				getOrders(), getBins(), getPiecesPerSecond(), 100 * getMeanUtilization(), getFreeRectanglesPeak()));
+		for (Metric metric : Metric.values()) {
+			if (metric.isHistogram()) {
+				Histogram histogram = histograms[metric.ordinal()];
+				if (histogram.getCount() > 0) {
+					sb.append(String.format("%n%-18s %s", metric, histogram));
+				}
+			} else {
+				sb.append(String.format("%n%-18s %d", metric, getCount(metric)));
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Distribution of non negative values. Values below 8 have their own
+	 * bucket; above, every power of two is divided in 8 buckets.
+	 */
+	public static final class Histogram {
+		/**
+		 * Buckets per power of two, as a number of bits.
+		 */
+		private static final int SUB_BITS = 3;
+
+		private static final int SUB = 1 << SUB_BITS;
+
+		private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS + 1) * SUB);
+
+		private final LongAdder count = new LongAdder();
+
+		private final LongAdder sum = new LongAdder();
+
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		void record(long value) {
+			value = Math.max(value, 0);
+			buckets.incrementAndGet(bucket(value));
+			count.increment();
+			sum.add(value);
+			max.accumulate(value);
+		}
+
+		private static int bucket(long value) {
+			if (value < SUB) {
+				return (int) value;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB - 1);
+			return (exponent - SUB_BITS + 1) * SUB + sub;
+		}
+
+		/**
+		 * Largest value falling in a bucket.
+		 */
+		private static long highest(int bucket) {
+			if (bucket < SUB) {
+				return bucket;
+			}
+			int exponent = bucket / SUB + SUB_BITS - 1;
+			long sub = bucket % SUB;
+			return ((SUB + sub + 1) << (exponent - SUB_BITS)) - 1;
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getSum() {
+			return sum.sum();
+		}
+
+		public long getMax() {
+			return max.get();
+		}
+
+		public double getMean() {
+			long n = count.sum();
+			return n == 0 ? 0 : (double) sum.sum() / n;
+		}
+
+		/**
+		 * @param p percentile, between 0 and 100.
+		 * @return value at that percentile, nearest rank, rounded up to the
+		 * top of its bucket but never above the maximum; 0 if empty.
+		 */
+		public long getPercentile(double p) {
+			long n = 0;
+			for (int i = 0; i < buckets.length(); i++) {
+				n += buckets.get(i);
+			}
+			long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+			long seen = 0;
+			for (int i = 0; i < buckets.length(); i++) {
+				seen += buckets.get(i);
+				if (seen >= rank) {
+					return Math.min(highest(i), getMax());
+				}
+			}
+			return 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count %d, mean %.0f, p50 %d, p90 %d, p99 %d, max %d", getCount(), getMean(),
+					getPercentile(50), getPercentile(90), getPercentile(99), getMax());
+		}
+	}
+}
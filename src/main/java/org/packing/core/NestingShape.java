@@ -0,0 +1,319 @@
+package main.java.org.packing.core;
+
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A piece turned by one of the allowed rotations and moved so that its
+ * bounding box starts at the origin, together with the decomposition of its
+ * outline into convex polygons used to build no-fit polygons.
+ * <p>
+ * Curves are flattened and holes are ignored: other pieces are never nested
+ * inside a hole.
+ */
+final class NestingShape {
+	/**
+	 * Tolerance of the geometric predicates.
+	 */
+	static final double EPS = 1e-9;
+
+	/**
+	 * Flattening tolerance, relative to the longest side of the shape.
+	 */
+	private static final double FLATNESS = 1.0 / 200;
+
+	/**
+	 * Turned and moved piece.
+	 */
+	final MArea area;
+
+	final double width;
+
+	final double height;
+
+	/**
+	 * Convex polygons covering the outline, counter-clockwise, as x, y
+	 * pairs.
+	 */
+	final List<double[]> convexParts;
+
+	NestingShape(MArea piece, double degrees) {
+		MArea area = new MArea(piece, piece.getID());
+		if (degrees % 90 == 0) {
+			area.transform(AffineTransform.getQuadrantRotateInstance((int) (degrees / 90)));
+		} else {
+			area.transform(AffineTransform.getRotateInstance(Math.toRadians(degrees)));
+		}
+		Rectangle2D bounds = area.getBounds2D();
+		area.transform(AffineTransform.getTranslateInstance(-bounds.getX(), -bounds.getY()));
+		area.materialize();
+		this.area = area;
+		this.width = bounds.getWidth();
+		this.height = bounds.getHeight();
+
+		double flatness = Math.max(width, height) * FLATNESS;
+		convexParts = new ArrayList<>();
+		for (double[] loop : outerLoops(area, flatness)) {
+			convexParts.addAll(convexDecomposition(loop));
+		}
+	}
+
+	/**
+	 * Extracts the outer loops of a shape, counter-clockwise, without
+	 * repeated or collinear points. The outer loops are the ones oriented
+	 * like the largest loop; the others are holes.
+	 */
+	static List<double[]> outerLoops(MArea area, double flatness) {
+		List<double[]> loops = new ArrayList<>();
+		double[] c = new double[6];
+		double[] loop = new double[16];
+		int n = 0;
+		for (PathIterator it = area.getPathIterator(null, flatness); !it.isDone(); it.next()) {
+			int type = it.currentSegment(c);
+			if (type == PathIterator.SEG_MOVETO) {
+				if (n > 0) {
+					loops.add(Arrays.copyOf(loop, n));
+				}
+				n = 0;
+			}
+			if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+				if (n + 2 > loop.length) {
+					loop = Arrays.copyOf(loop, loop.length * 2);
+				}
+				loop[n++] = c[0];
+				loop[n++] = c[1];
+			}
+		}
+		if (n > 0) {
+			loops.add(Arrays.copyOf(loop, n));
+		}
+
+		double largest = 0;
+		double[] areas = new double[loops.size()];
+		for (int i = 0; i < loops.size(); i++) {
+			loops.set(i, simplify(loops.get(i)));
+			areas[i] = signedArea(loops.get(i));
+			if (Math.abs(areas[i]) > Math.abs(largest)) {
+				largest = areas[i];
+			}
+		}
+		List<double[]> outer = new ArrayList<>();
+		for (int i = 0; i < loops.size(); i++) {
+			double[] l = loops.get(i);
+			if (l.length >= 6 && areas[i] * largest > 0) {
+				outer.add(areas[i] > 0 ? l : reverse(l));
+			}
+		}
+		return outer;
+	}
+
+	/**
+	 * Removes repeated points, the closing point and collinear points.
+	 */
+	private static double[] simplify(double[] loop) {
+		int n = loop.length / 2;
+		double[] out = new double[loop.length];
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			double x = loop[2 * i];
+			double y = loop[2 * i + 1];
+			if (m > 0 && Math.abs(out[m - 2] - x) <= EPS && Math.abs(out[m - 1] - y) <= EPS) {
+				continue;
+			}
+			out[m++] = x;
+			out[m++] = y;
+		}
+		while (m >= 4 && Math.abs(out[m - 2] - out[0]) <= EPS && Math.abs(out[m - 1] - out[1]) <= EPS) {
+			m -= 2;
+		}
+		boolean removed = true;
+		while (removed && m >= 6) {
+			removed = false;
+			int k = m / 2;
+			for (int i = 0; i < k; i++) {
+				int p = (i + k - 1) % k;
+				int q = (i + 1) % k;
+				if (Math.abs(cross(out, p, i, q)) <= EPS) {
+					System.arraycopy(out, 2 * i + 2, out, 2 * i, m - 2 * i - 2);
+					m -= 2;
+					removed = true;
+					break;
+				}
+			}
+		}
+		return Arrays.copyOf(out, m);
+	}
+
+	static double signedArea(double[] loop) {
+		double sum = 0;
+		int n = loop.length / 2;
+		for (int i = 0; i < n; i++) {
+			int j = (i + 1) % n;
+			sum += loop[2 * i] * loop[2 * j + 1] - loop[2 * j] * loop[2 * i + 1];
+		}
+		return sum / 2;
+	}
+
+	private static double[] reverse(double[] loop) {
+		int n = loop.length / 2;
+		double[] r = new double[loop.length];
+		for (int i = 0; i < n; i++) {
+			r[2 * i] = loop[2 * (n - 1 - i)];
+			r[2 * i + 1] = loop[2 * (n - 1 - i) + 1];
+		}
+		return r;
+	}
+
+	/**
+	 * Cross product of the turn a, b, c, positive when counter-clockwise.
+	 */
+	private static double cross(double[] p, int a, int b, int c) {
+		return (p[2 * b] - p[2 * a]) * (p[2 * c + 1] - p[2 * a + 1])
+				- (p[2 * b + 1] - p[2 * a + 1]) * (p[2 * c] - p[2 * a]);
+	}
+
+	/**
+	 * Splits a counter-clockwise simple polygon into convex polygons: ear
+	 * clipping triangulation, then merging of adjacent polygons while the
+	 * result stays convex (Hertel-Mehlhorn).
+	 */
+	static List<double[]> convexDecomposition(double[] loop) {
+		int n = loop.length / 2;
+		List<int[]> polygons = new ArrayList<>();
+		if (isConvex(loop, identity(n))) {
+			polygons.add(identity(n));
+		} else {
+			polygons.addAll(triangulate(loop));
+			merge(loop, polygons);
+		}
+		List<double[]> parts = new ArrayList<>(polygons.size());
+		for (int[] polygon : polygons) {
+			double[] part = new double[polygon.length * 2];
+			for (int i = 0; i < polygon.length; i++) {
+				part[2 * i] = loop[2 * polygon[i]];
+				part[2 * i + 1] = loop[2 * polygon[i] + 1];
+			}
+			parts.add(part);
+		}
+		return parts;
+	}
+
+	private static int[] identity(int n) {
+		int[] v = new int[n];
+		for (int i = 0; i < n; i++) {
+			v[i] = i;
+		}
+		return v;
+	}
+
+	private static boolean isConvex(double[] p, int[] polygon) {
+		int n = polygon.length;
+		for (int i = 0; i < n; i++) {
+			if (cross(p, polygon[i], polygon[(i + 1) % n], polygon[(i + 2) % n]) < -EPS) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static List<int[]> triangulate(double[] p) {
+		int n = p.length / 2;
+		int[] v = identity(n);
+		int m = n;
+		List<int[]> triangles = new ArrayList<>(n - 2);
+		while (m > 3) {
+			int ear = -1;
+			for (int i = 0; i < m && ear == -1; i++) {
+				int a = v[(i + m - 1) % m];
+				int b = v[i];
+				int c = v[(i + 1) % m];
+				if (cross(p, a, b, c) <= EPS) {
+					continue;
+				}
+				boolean empty = true;
+				for (int k = 0; k < m && empty; k++) {
+					int d = v[k];
+					if (d != a && d != b && d != c && inTriangle(p, d, a, b, c)) {
+						empty = false;
+					}
+				}
+				if (empty) {
+					ear = i;
+				}
+			}
+			if (ear == -1) {
+				// degenerate outline: clip the most convex corner
+				double best = -Double.MAX_VALUE;
+				for (int i = 0; i < m; i++) {
+					double turn = cross(p, v[(i + m - 1) % m], v[i], v[(i + 1) % m]);
+					if (turn > best) {
+						best = turn;
+						ear = i;
+					}
+				}
+			}
+			triangles.add(new int[]{v[(ear + m - 1) % m], v[ear], v[(ear + 1) % m]});
+			System.arraycopy(v, ear + 1, v, ear, m - ear - 1);
+			m--;
+		}
+		triangles.add(new int[]{v[0], v[1], v[2]});
+		return triangles;
+	}
+
+	private static boolean inTriangle(double[] p, int d, int a, int b, int c) {
+		return cross(p, a, b, d) >= -EPS && cross(p, b, c, d) >= -EPS && cross(p, c, a, d) >= -EPS;
+	}
+
+	/**
+	 * Merges polygons sharing an edge while the union is convex.
+	 */
+	private static void merge(double[] p, List<int[]> polygons) {
+		boolean merged = true;
+		while (merged) {
+			merged = false;
+			for (int i = 0; i < polygons.size() && !merged; i++) {
+				for (int j = i + 1; j < polygons.size() && !merged; j++) {
+					int[] union = union(polygons.get(i), polygons.get(j));
+					if (union != null && isConvex(p, union)) {
+						polygons.set(i, union);
+						polygons.remove(j);
+						merged = true;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the polygon bounded by both polygons, null if they do not share
+	 * an edge.
+	 */
+	private static int[] union(int[] a, int[] b) {
+		for (int i = 0; i < a.length; i++) {
+			int from = a[i];
+			int to = a[(i + 1) % a.length];
+			for (int j = 0; j < b.length; j++) {
+				if (b[j] == to && b[(j + 1) % b.length] == from) {
+					int[] union = new int[a.length + b.length - 2];
+					int k = 0;
+					// a from its edge end around to its edge start
+					for (int s = 0; s < a.length; s++) {
+						union[k++] = a[(i + 1 + s) % a.length];
+					}
+					// b between the shared vertices
+					for (int s = 2; s < b.length; s++) {
+						union[k++] = b[(j + s) % b.length];
+					}
+					return union;
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,496 @@
+package main.java.org.packing.core;
+
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Nesting of irregular pieces by their real outline, using no-fit polygons,
+ * instead of by their bounding boxes.
+ * <p>
+ * Pieces are taken by decreasing area and each is placed bottom-left fill:
+ * at the feasible position with the lowest y, then the lowest x, over all
+ * the allowed rotations. The feasible positions are the ones outside the
+ * no-fit polygons of the pieces already in the bin and inside the bin; the
+ * candidates are the corners of the bin, the vertices of the no-fit
+ * polygons and the intersections of their edges with each other and with
+ * the sides of the bin. Candidates are checked in parallel, in chunks
+ * taken in bottom-left order, and the chosen position is confirmed by an
+ * overlap test on the real shapes, since curves are flattened.
+ * <p>
+ * No-fit polygons depend only on the two shapes and their rotations, so
+ * they are cached by (shape id, rotation) pairs and reused across bins and
+ * orders. Pieces with the same shape id must have the same outline; by
+ * default every piece ID is its own shape. Holes are ignored: pieces are
+ * never nested inside other pieces.
+ */
+public class NfpNesting {
+	/**
+	 * Candidates below which they are checked on the calling thread; no-fit
+	 * polygons are looked up in parallel from an eighth of it.
+	 */
+	private static final int PARALLEL_THRESHOLD = 64;
+
+	/**
+	 * Candidates checked at once, in bottom-left order.
+	 */
+	private static final int CHUNK = 1024;
+
+	/**
+	 * Overlap allowed by the final check, relative to the piece area.
+	 */
+	private static final double OVERLAP_TOLERANCE = 1e-9;
+
+	private final Dimension binDimension;
+
+	/**
+	 * Allowed rotations, in degrees.
+	 */
+	private final double[] rotations;
+
+	private final ToIntFunction<MArea> shapeOf;
+
+	private final ForkJoinPool pool;
+
+	private final ConcurrentHashMap<ShapeKey, NestingShape> shapes = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<PairKey, NoFitPolygon> noFitPolygons = new ConcurrentHashMap<>();
+
+	/**
+	 * Nests with quarter turns, every piece being its own shape, on the
+	 * common pool.
+	 *
+	 * @param binDimension dimensions for the generated bins.
+	 */
+	public NfpNesting(Dimension binDimension) {
+		this(binDimension, new double[]{0, 90, 180, 270}, MArea::getID, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initializes the nesting engine.
+	 *
+	 * @param binDimension dimensions for the generated bins.
+	 * @param rotations    allowed rotations, in degrees, at least one.
+	 * @param shapeOf      shape id of a piece; pieces with the same id must
+	 *                     have the same outline.
+	 * @param pool         pool checking candidate positions.
+	 */
+	public NfpNesting(Dimension binDimension, double[] rotations, ToIntFunction<MArea> shapeOf, ForkJoinPool pool) {
+		if (rotations.length == 0) {
+			throw new IllegalArgumentException("At least one rotation is required");
+		}
+		this.binDimension = new Dimension(binDimension);
+		this.rotations = rotations.clone();
+		this.shapeOf = shapeOf;
+		this.pool = pool;
+	}
+
+	/**
+	 * Nests the pieces with the default engine.
+	 *
+	 * @param pieces       pieces to be nested inside the bins.
+	 * @param binDimension dimensions for the generated bins.
+	 * @return list of generated bins.
+	 */
+	public static Bin[] NestingStrategy(MArea[] pieces, Dimension binDimension) {
+		return new NfpNesting(binDimension).NestingStrategy(pieces);
+	}
+
+	/**
+	 * Nests the pieces, filling one bin after the other.
+	 *
+	 * @param pieces pieces to be nested inside the bins.
+	 * @return list of generated bins; their pieces are placed, but nothing
+	 * more can be placed in them.
+	 * @throws IllegalArgumentException if a piece does not fit in an empty bin
+	 *                                  with any of the rotations.
+	 */
+	public Bin[] NestingStrategy(MArea[] pieces) {
+		List<MArea> remaining = new ArrayList<>(Arrays.asList(pieces));
+		remaining.sort(Collections.reverseOrder(MArea.BY_AREA));
+
+		List<Bin> bins = new ArrayList<>();
+		while (!remaining.isEmpty()) {
+			List<Placed> placed = new ArrayList<>();
+			List<MArea> notPlaced = new ArrayList<>();
+			for (MArea piece : remaining) {
+				Placed best = null;
+				for (int r = 0; r < rotations.length; r++) {
+					Placed candidate = place(piece, r, placed);
+					if (candidate != null && (best == null || candidate.y < best.y
+							|| (candidate.y == best.y && candidate.x < best.x))) {
+						best = candidate;
+					}
+				}
+				if (best != null) {
+					placed.add(best);
+				} else {
+					notPlaced.add(piece);
+				}
+			}
+			if (placed.isEmpty()) {
+				throw new IllegalArgumentException("Piece " + remaining.get(0).getID() + " does not fit in an empty bin");
+			}
+			List<MArea> areas = new ArrayList<>(placed.size());
+			for (Placed p : placed) {
+				areas.add(p.area);
+			}
+			bins.add(new Bin(binDimension, PackingOptions.DEFAULT, areas));
+			remaining = notPlaced;
+		}
+		return bins.toArray(new Bin[0]);
+	}
+
+	/**
+	 * @return number of no-fit polygons cached.
+	 */
+	public int getCachedNoFitPolygons() {
+		return noFitPolygons.size();
+	}
+
+	/**
+	 * Finds the bottom-left position of a piece with one rotation.
+	 *
+	 * @return the placed piece, null if it does not fit.
+	 */
+	private Placed place(MArea piece, int rotation, List<Placed> placed) {
+		NestingShape shape = shape(piece, rotation);
+		double maxX = binDimension.getWidth() - shape.width;
+		double maxY = binDimension.getHeight() - shape.height;
+		if (maxX < -NestingShape.EPS || maxY < -NestingShape.EPS) {
+			return null;
+		}
+		maxX = Math.max(maxX, 0);
+		maxY = Math.max(maxY, 0);
+
+		int n = placed.size();
+		int shapeId = shapeOf.applyAsInt(piece);
+		NoFitPolygon[] nfps = new NoFitPolygon[n];
+		double[] offsets = new double[2 * n];
+		for (int i = 0; i < n; i++) {
+			offsets[2 * i] = placed.get(i).x;
+			offsets[2 * i + 1] = placed.get(i).y;
+		}
+		if (n < PARALLEL_THRESHOLD / 8) {
+			for (int i = 0; i < n; i++) {
+				nfps[i] = noFitPolygon(placed.get(i), shape, shapeId, rotation);
+			}
+		} else {
+			pool.submit(() -> IntStream.range(0, n).parallel()
+					.forEach(i -> nfps[i] = noFitPolygon(placed.get(i), shape, shapeId, rotation))).join();
+		}
+
+		Candidates candidates = candidates(nfps, offsets, maxX, maxY);
+		int[] order = candidates.bottomLeftOrder();
+		double tolerance = OVERLAP_TOLERANCE * Math.max(piece.getArea(), NestingShape.EPS);
+		for (int from = 0; from < order.length; from += CHUNK) {
+			int to = Math.min(order.length, from + CHUNK);
+			boolean[] feasible = new boolean[to - from];
+			int start = from;
+			if (to - from < PARALLEL_THRESHOLD) {
+				for (int k = from; k < to; k++) {
+					feasible[k - start] = outside(nfps, offsets, candidates, order[k]);
+				}
+			} else {
+				pool.submit(() -> IntStream.range(start, to).parallel()
+						.forEach(k -> feasible[k - start] = outside(nfps, offsets, candidates, order[k]))).join();
+			}
+			for (int k = from; k < to; k++) {
+				if (feasible[k - from]) {
+					double x = candidates.x[order[k]];
+					double y = candidates.y[order[k]];
+					MArea moved = new MArea(shape.area, piece.getID());
+					moved.transform(AffineTransform.getTranslateInstance(x, y));
+					moved.materialize();
+					if (!overlaps(moved, placed, tolerance)) {
+						return new Placed(piece, shapeId, rotation, x, y, moved,
+								(piece.getRotation() + rotations[rotation]) % 360);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean outside(NoFitPolygon[] nfps, double[] offsets, Candidates candidates, int c) {
+		double x = candidates.x[c];
+		double y = candidates.y[c];
+		for (int i = 0; i < nfps.length; i++) {
+			if (nfps[i].containsStrictly(x, y, offsets[2 * i], offsets[2 * i + 1])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Overlap test of the real shapes, tolerating slivers from rounding.
+	 */
+	private static boolean overlaps(MArea moved, List<Placed> placed, double tolerance) {
+		Rectangle2D bounds = moved.getBounds2D();
+		for (Placed p : placed) {
+			if (p.bounds.intersects(bounds)) {
+				MArea intersection = new MArea(moved, moved.getID());
+				intersection.intersect(p.area);
+				if (intersection.getArea() > tolerance) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Collects the candidate positions inside the bin.
+	 */
+	private static Candidates candidates(NoFitPolygon[] nfps, double[] offsets, double maxX, double maxY) {
+		Candidates c = new Candidates(maxX, maxY);
+		c.add(0, 0);
+		c.add(maxX, 0);
+		c.add(0, maxY);
+		c.add(maxX, maxY);
+		double[] sides = {0, 0, maxX, 0, maxX, 0, maxX, maxY, maxX, maxY, 0, maxY, 0, maxY, 0, 0};
+		for (int i = 0; i < nfps.length; i++) {
+			double[] e = nfps[i].edges;
+			double ox = offsets[2 * i];
+			double oy = offsets[2 * i + 1];
+			for (int k = 0; k < e.length; k += 4) {
+				c.add(e[k] + ox, e[k + 1] + oy);
+				for (int s = 0; s < sides.length; s += 4) {
+					c.intersect(e[k] + ox, e[k + 1] + oy, e[k + 2] + ox, e[k + 3] + oy,
+							sides[s], sides[s + 1], sides[s + 2], sides[s + 3]);
+				}
+			}
+		}
+		for (int i = 0; i < nfps.length; i++) {
+			for (int j = i + 1; j < nfps.length; j++) {
+				NoFitPolygon a = nfps[i];
+				NoFitPolygon b = nfps[j];
+				double ax = offsets[2 * i];
+				double ay = offsets[2 * i + 1];
+				double bx = offsets[2 * j];
+				double by = offsets[2 * j + 1];
+				if (a.maxX + ax < b.minX + bx || b.maxX + bx < a.minX + ax
+						|| a.maxY + ay < b.minY + by || b.maxY + by < a.minY + ay) {
+					continue;
+				}
+				double[] ea = a.edges;
+				double[] eb = b.edges;
+				for (int k = 0; k < ea.length; k += 4) {
+					for (int l = 0; l < eb.length; l += 4) {
+						c.intersect(ea[k] + ax, ea[k + 1] + ay, ea[k + 2] + ax, ea[k + 3] + ay,
+								eb[l] + bx, eb[l + 1] + by, eb[l + 2] + bx, eb[l + 3] + by);
+					}
+				}
+			}
+		}
+		return c;
+	}
+
+	private NestingShape shape(MArea piece, int rotation) {
+		ShapeKey key = new ShapeKey(shapeOf.applyAsInt(piece), rotation);
+		NestingShape shape = shapes.get(key);
+		if (shape == null) {
+			shape = new NestingShape(piece, rotations[rotation]);
+			NestingShape previous = shapes.putIfAbsent(key, shape);
+			if (previous != null) {
+				shape = previous;
+			}
+		}
+		return shape;
+	}
+
+	private NoFitPolygon noFitPolygon(Placed fixed, NestingShape moving, int movingShape, int movingRotation) {
+		PairKey key = new PairKey(fixed.shape, fixed.rotation, movingShape, movingRotation);
+		NoFitPolygon nfp = noFitPolygons.get(key);
+		if (nfp == null) {
+			nfp = new NoFitPolygon(shape(fixed.piece, fixed.rotation), moving);
+			NoFitPolygon previous = noFitPolygons.putIfAbsent(key, nfp);
+			if (previous != null) {
+				nfp = previous;
+			}
+		}
+		return nfp;
+	}
+
+	/**
+	 * A piece placed in the bin being filled.
+	 */
+	private static final class Placed {
+		final MArea piece;
+
+		final int shape;
+
+		final int rotation;
+
+		/**
+		 * Position of the origin of the rotated shape.
+		 */
+		final double x;
+
+		final double y;
+
+		/**
+		 * Piece in its final position.
+		 */
+		final MArea area;
+
+		final Rectangle2D bounds;
+
+		Placed(MArea piece, int shape, int rotation, double x, double y, MArea moved, double degrees) {
+			this.piece = piece;
+			this.shape = shape;
+			this.rotation = rotation;
+			this.x = x;
+			this.y = y;
+			this.area = new MArea(moved, piece.getID(), degrees);
+			this.bounds = moved.getBounds2D();
+		}
+	}
+
+	/**
+	 * Candidate positions inside the bin, as primitive arrays.
+	 */
+	private static final class Candidates {
+		private final double maxX;
+
+		private final double maxY;
+
+		double[] x = new double[64];
+
+		double[] y = new double[64];
+
+		int size;
+
+		Candidates(double maxX, double maxY) {
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+
+		/**
+		 * Adds a position if it is inside the bin, snapping it to the sides
+		 * within the tolerance.
+		 */
+		void add(double px, double py) {
+			if (px < -NestingShape.EPS || py < -NestingShape.EPS || px > maxX + NestingShape.EPS
+					|| py > maxY + NestingShape.EPS) {
+				return;
+			}
+			if (size == x.length) {
+				x = Arrays.copyOf(x, size * 2);
+				y = Arrays.copyOf(y, size * 2);
+			}
+			x[size] = Math.min(Math.max(px, 0), maxX);
+			y[size] = Math.min(Math.max(py, 0), maxY);
+			size++;
+		}
+
+		/**
+		 * Adds the intersection of two segments, if any.
+		 */
+		void intersect(double x1, double y1, double x2, double y2, double x3, double y3, double x4, double y4) {
+			double dx1 = x2 - x1;
+			double dy1 = y2 - y1;
+			double dx2 = x4 - x3;
+			double dy2 = y4 - y3;
+			double den = dx1 * dy2 - dy1 * dx2;
+			if (Math.abs(den) <= NestingShape.EPS) {
+				return;
+			}
+			double t = ((x3 - x1) * dy2 - (y3 - y1) * dx2) / den;
+			double u = ((x3 - x1) * dy1 - (y3 - y1) * dx1) / den;
+			if (t < 0 || t > 1 || u < 0 || u > 1) {
+				return;
+			}
+			add(x1 + t * dx1, y1 + t * dy1);
+		}
+
+		/**
+		 * @return candidate indexes sorted by y, then x, without duplicates.
+		 */
+		int[] bottomLeftOrder() {
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> y[a] != y[b] ? Double.compare(y[a], y[b]) : Double.compare(x[a], x[b]));
+			int[] unique = new int[size];
+			int n = 0;
+			for (int i = 0; i < size; i++) {
+				int c = order[i];
+				if (n == 0 || x[unique[n - 1]] != x[c] || y[unique[n - 1]] != y[c]) {
+					unique[n++] = c;
+				}
+			}
+			return Arrays.copyOf(unique, n);
+		}
+	}
+
+	private static final class ShapeKey {
+		private final int shape;
+
+		private final int rotation;
+
+		ShapeKey(int shape, int rotation) {
+			this.shape = shape;
+			this.rotation = rotation;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ShapeKey)) {
+				return false;
+			}
+			ShapeKey other = (ShapeKey) obj;
+			return shape == other.shape && rotation == other.rotation;
+		}
+
+		@Override
+		public int hashCode() {
+			return shape * 31 + rotation;
+		}
+	}
+
+	private static final class PairKey {
+		private final int fixedShape;
+
+		private final int fixedRotation;
+
+		private final int movingShape;
+
+		private final int movingRotation;
+
+		PairKey(int fixedShape, int fixedRotation, int movingShape, int movingRotation) {
+			this.fixedShape = fixedShape;
+			this.fixedRotation = fixedRotation;
+			this.movingShape = movingShape;
+			this.movingRotation = movingRotation;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PairKey)) {
+				return false;
+			}
+			PairKey other = (PairKey) obj;
+			return fixedShape == other.fixedShape && fixedRotation == other.fixedRotation
+					&& movingShape == other.movingShape && movingRotation == other.movingRotation;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(fixedShape, fixedRotation, movingShape, movingRotation);
+		}
+	}
+}
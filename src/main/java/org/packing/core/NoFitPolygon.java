@@ -0,0 +1,158 @@
+package main.java.org.packing.core;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * No-fit polygon of a moving shape around a fixed one: the positions of the
+ * origin of the moving shape where it overlaps the fixed shape at the
+ * origin. Positions on its boundary are touching ones.
+ * <p>
+ * It is the Minkowski sum of the fixed shape and the reflected moving
+ * shape, computed as the union of the convex hulls of the pairwise
+ * differences of their convex parts. Immutable once built, so it can be
+ * queried from several threads.
+ */
+final class NoFitPolygon {
+	/**
+	 * Distance from the boundary under which a position is a touching one.
+	 */
+	private static final double TOUCH = 1e-6;
+
+	private final Area area;
+
+	/**
+	 * Boundary segments, as x1, y1, x2, y2.
+	 */
+	final double[] edges;
+
+	final double minX;
+
+	final double minY;
+
+	final double maxX;
+
+	final double maxY;
+
+	NoFitPolygon(NestingShape fixed, NestingShape moving) {
+		List<Area> hulls = new ArrayList<>();
+		for (double[] a : fixed.convexParts) {
+			for (double[] b : moving.convexParts) {
+				hulls.add(hull(a, b));
+			}
+		}
+		area = hulls.isEmpty() ? new Area() : union(hulls, 0, hulls.size());
+
+		double[] edges = new double[64];
+		int n = 0;
+		double[] c = new double[6];
+		double startX = 0;
+		double startY = 0;
+		double x = 0;
+		double y = 0;
+		for (PathIterator it = area.getPathIterator(null); !it.isDone(); it.next()) {
+			int type = it.currentSegment(c);
+			if (type == PathIterator.SEG_MOVETO) {
+				startX = x = c[0];
+				startY = y = c[1];
+				continue;
+			}
+			double toX = type == PathIterator.SEG_CLOSE ? startX : c[0];
+			double toY = type == PathIterator.SEG_CLOSE ? startY : c[1];
+			if (toX != x || toY != y) {
+				if (n + 4 > edges.length) {
+					edges = Arrays.copyOf(edges, edges.length * 2);
+				}
+				edges[n++] = x;
+				edges[n++] = y;
+				edges[n++] = toX;
+				edges[n++] = toY;
+			}
+			x = toX;
+			y = toY;
+		}
+		this.edges = Arrays.copyOf(edges, n);
+
+		// computes the bounds Area caches lazily, before sharing it
+		Rectangle2D bounds = area.getBounds2D();
+		minX = bounds.getMinX();
+		minY = bounds.getMinY();
+		maxX = bounds.getMaxX();
+		maxY = bounds.getMaxY();
+	}
+
+	/**
+	 * Checks whether a position of the moving shape overlaps the fixed one,
+	 * the no-fit polygon being moved by an offset. Positions within the
+	 * tolerance of the boundary are touching ones.
+	 */
+	boolean containsStrictly(double x, double y, double offsetX, double offsetY) {
+		double px = x - offsetX;
+		double py = y - offsetY;
+		if (px <= minX || px >= maxX || py <= minY || py >= maxY) {
+			return false;
+		}
+		return area.contains(px - TOUCH, py - TOUCH, 2 * TOUCH, 2 * TOUCH);
+	}
+
+	/**
+	 * Convex hull of the differences between the vertices of two convex
+	 * polygons (monotone chain).
+	 */
+	private static Area hull(double[] a, double[] b) {
+		int na = a.length / 2;
+		int nb = b.length / 2;
+		double[][] points = new double[na * nb][];
+		for (int i = 0; i < na; i++) {
+			for (int j = 0; j < nb; j++) {
+				points[i * nb + j] = new double[]{a[2 * i] - b[2 * j], a[2 * i + 1] - b[2 * j + 1]};
+			}
+		}
+		Arrays.sort(points, (p, q) -> p[0] != q[0] ? Double.compare(p[0], q[0]) : Double.compare(p[1], q[1]));
+		double[][] hull = new double[2 * points.length][];
+		int k = 0;
+		for (double[] p : points) {
+			while (k >= 2 && turn(hull[k - 2], hull[k - 1], p) <= 0) {
+				k--;
+			}
+			hull[k++] = p;
+		}
+		for (int i = points.length - 2, lower = k + 1; i >= 0; i--) {
+			double[] p = points[i];
+			while (k >= lower && turn(hull[k - 2], hull[k - 1], p) <= 0) {
+				k--;
+			}
+			hull[k++] = p;
+		}
+		Path2D.Double path = new Path2D.Double();
+		path.moveTo(hull[0][0], hull[0][1]);
+		for (int i = 1; i < k - 1; i++) {
+			path.lineTo(hull[i][0], hull[i][1]);
+		}
+		path.closePath();
+		return new Area(path);
+	}
+
+	private static double turn(double[] o, double[] a, double[] b) {
+		return (a[0] - o[0]) * (b[1] - o[1]) - (a[1] - o[1]) * (b[0] - o[0]);
+	}
+
+	/**
+	 * Union of a range of areas, merged pairwise so every step works on
+	 * areas of similar size.
+	 */
+	private static Area union(List<Area> areas, int from, int to) {
+		if (to - from == 1) {
+			return areas.get(from);
+		}
+		int mid = (from + to) >>> 1;
+		Area left = union(areas, from, mid);
+		left.add(union(areas, mid, to));
+		return left;
+	}
+}
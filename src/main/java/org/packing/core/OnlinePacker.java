@@ -0,0 +1,157 @@
+package main.java.org.packing.core;
+
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Packs pieces arriving one at a time, without knowing the pieces still to
+ * come. A few bins are kept open with their free rectangles; each offered
+ * piece goes to the first open bin where it fits, or to a new bin.
+ * <p>
+ * A bin is closed, releasing its free space, and handed to the consumer,
+ * once its utilization reaches the threshold, when a new bin is needed
+ * while the limit of open bins has been reached (the fullest open bin is
+ * closed), or on {@link #flush()}.
+ * Since only open bins are searched, the cost of an offer depends on the
+ * limit of open bins and not on how many pieces have been packed so far.
+ * <p>
+ * Not thread safe.
+ */
+public class OnlinePacker {
+	private final Dimension binDimension;
+
+	private final PackingOptions options;
+
+	/**
+	 * Maximum number of bins open at the same time.
+	 */
+	private final int maxOpenBins;
+
+	/**
+	 * Utilization from which a bin is closed.
+	 */
+	private final double closeUtilization;
+
+	/**
+	 * Receives every closed bin.
+	 */
+	private final Consumer<Bin> onClose;
+
+	/**
+	 * Open bins, in opening order.
+	 */
+	private final List<Bin> openBins = new ArrayList<>();
+
+	private long closedBins;
+
+	/**
+	 * Initializes the packer.
+	 *
+	 * @param binDimension     dimensions for the generated bins.
+	 * @param options          options controlling how pieces are packed.
+	 * @param maxOpenBins      maximum number of bins open at the same time, at
+	 *                         least one.
+	 * @param closeUtilization utilization from which a bin is closed, above 1
+	 *                         to only close bins when the limit is reached.
+	 * @param onClose          receives every closed bin.
+	 */
+	public OnlinePacker(Dimension binDimension, PackingOptions options, int maxOpenBins, double closeUtilization,
+	                    Consumer<Bin> onClose) {
+		if (maxOpenBins < 1) {
+			throw new IllegalArgumentException("maxOpenBins must be at least 1: " + maxOpenBins);
+		}
+		this.binDimension = binDimension;
+		this.options = options;
+		this.maxOpenBins = maxOpenBins;
+		this.closeUtilization = closeUtilization;
+		this.onClose = onClose;
+	}
+
+	/**
+	 * Packs a piece into one of the open bins, opening a new bin if it does
+	 * not fit in any of them.
+	 *
+	 * @param piece piece to be packed.
+	 * @return the bin the piece was placed in, which may already be closed.
+	 * @throws IllegalArgumentException if the piece does not fit in an empty
+	 *                                  bin.
+	 */
+	public Bin offer(MArea piece) {
+		for (int i = 0; i < openBins.size(); i++) {
+			Bin bin = openBins.get(i);
+			if (bin.place(piece)) {
+				closeIfFull(i);
+				return bin;
+			}
+		}
+
+		if (openBins.size() == maxOpenBins) {
+			close(fullest());
+		}
+		Bin bin = new Bin(binDimension, options);
+		if (!bin.place(piece)) {
+			throw new IllegalArgumentException("Piece " + piece.getID() + " does not fit in an empty bin");
+		}
+		openBins.add(bin);
+		closeIfFull(openBins.size() - 1);
+		return bin;
+	}
+
+	/**
+	 * Closes every open bin.
+	 */
+	public void flush() {
+		while (!openBins.isEmpty()) {
+			close(0);
+		}
+	}
+
+	/**
+	 * Get the open bins.
+	 *
+	 * @return open bins, in opening order.
+	 */
+	public List<Bin> getOpenBins() {
+		return Collections.unmodifiableList(openBins);
+	}
+
+	/**
+	 * Get the number of bins closed so far.
+	 *
+	 * @return number of closed bins.
+	 */
+	public long getClosedBins() {
+		return closedBins;
+	}
+
+	private void closeIfFull(int i) {
+		if (openBins.get(i).getUtilization() >= closeUtilization) {
+			close(i);
+		}
+	}
+
+	/**
+	 * @return position of the open bin with the highest utilization.
+	 */
+	private int fullest() {
+		int best = 0;
+		for (int i = 1; i < openBins.size(); i++) {
+			if (openBins.get(i).getUtilization() > openBins.get(best).getUtilization()) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	private void close(int i) {
+		Bin bin = openBins.remove(i);
+		bin.close();
+		closedBins++;
+		onClose.accept(bin);
+	}
+}
@@ -0,0 +1,371 @@
+package main.java.org.packing.core;
+
+import main.java.org.packing.primitives.MArea;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index over the free rectangles of every open bin, so that a piece goes to
+ * the free rectangle with the smallest short side leftover whatever its bin.
+ * <p>
+ * As in {@link GridFreeRectangleIndex}, the entries are kept sorted by width
+ * and by height: the fit query starts with a binary search for the piece
+ * size and only walks upwards while the leftover on that side does not
+ * exceed the best score found so far. Ties go to the bin opened first, then
+ * to the most recent rectangle and then to the unrotated orientation.
+ * <p>
+ * Bins are only read through their primitive packer. After a placement the
+ * slots of the bin are compared with the entries, a rectangle being the
+ * same as long as its slot keeps its sequence number, so only the
+ * rectangles changed by the placement are reindexed. Rectangles whose short
+ * side is below the smallest side of the pieces still to come can never be
+ * used again and are dropped; a bin left without any rectangle is closed.
+ * <p>
+ * With fixed point coordinates the sizes are compared in grid units.
+ */
+final class OpenBinIndex {
+	/**
+	 * Grid units per unit of length, 0 for double coordinates.
+	 */
+	private final int scale;
+
+	/**
+	 * Every bin, in opening order.
+	 */
+	private final List<Bin> bins = new ArrayList<>();
+
+	/**
+	 * Entry of each packer slot of each bin, -1 if none; null once the bin is
+	 * closed.
+	 */
+	private final List<int[]> entryOfSlot = new ArrayList<>();
+
+	/**
+	 * Number of entries of each bin.
+	 */
+	private int[] binEntries = new int[16];
+
+	private int[] entryBin = new int[64];
+
+	private int[] entrySlot = new int[64];
+
+	private long[] entrySeq = new long[64];
+
+	private double[] entryWidth = new double[64];
+
+	private double[] entryHeight = new double[64];
+
+	/**
+	 * Entries below this mark have been used at least once.
+	 */
+	private int entries;
+
+	/**
+	 * Released entries available for reuse.
+	 */
+	private int[] released = new int[64];
+
+	private int releasedCount;
+
+	/**
+	 * Entries sorted by width, then by entry.
+	 */
+	private int[] byWidth = new int[64];
+
+	/**
+	 * Entries sorted by height, then by entry.
+	 */
+	private int[] byHeight = new int[64];
+
+	private int size;
+
+	/**
+	 * Smallest short side, in index units, of a rectangle worth indexing.
+	 */
+	private double minSide;
+
+	private int best;
+
+	private double bestScore;
+
+	/**
+	 * @param scale grid units per unit of length, 0 for double coordinates.
+	 */
+	OpenBinIndex(int scale) {
+		this.scale = scale;
+	}
+
+	/**
+	 * @return every bin, in opening order, closed ones included.
+	 */
+	List<Bin> getBins() {
+		return Collections.unmodifiableList(bins);
+	}
+
+	/**
+	 * Adds a bin packing with its primitive packer and indexes its free
+	 * rectangles.
+	 *
+	 * @param bin bin to add.
+	 * @return number of the bin.
+	 */
+	int addBin(Bin bin) {
+		int b = bins.size();
+		bins.add(bin);
+		int[] slots = new int[16];
+		Arrays.fill(slots, -1);
+		entryOfSlot.add(slots);
+		if (b == binEntries.length) {
+			binEntries = Arrays.copyOf(binEntries, b * 2);
+		}
+		refresh(b);
+		return b;
+	}
+
+	/**
+	 * Drops the free rectangles too small for any piece still to come,
+	 * closing the bins left without any.
+	 *
+	 * @param side smallest side of the pieces still to be placed.
+	 */
+	void dropSmallerThan(double side) {
+		double k = key(side);
+		if (k <= minSide) {
+			return;
+		}
+		minSide = k;
+		while (size > 0 && entryWidth[byWidth[0]] < k) {
+			drop(byWidth[0]);
+		}
+		while (size > 0 && entryHeight[byHeight[0]] < k) {
+			drop(byHeight[0]);
+		}
+	}
+
+	/**
+	 * Finds the free rectangle of all the open bins with the smallest short
+	 * side leftover for a piece, trying both orientations.
+	 *
+	 * @param width  width of the piece.
+	 * @param height height of the piece.
+	 * @return <ul>
+	 * <li><b>-1</b> if the piece fits in no open bin.</li>
+	 * <li><b>entry &lt;&lt; 1 | rotated</b> otherwise, to be passed to
+	 * {@link #place}.</li>
+	 * </ul>
+	 */
+	int findWhereToPlace(double width, double height) {
+		double w = key(width);
+		double h = key(height);
+		best = -1;
+		bestScore = Double.MAX_VALUE;
+		search(byWidth, entryWidth, entryHeight, w, h, 0);
+		search(byHeight, entryHeight, entryWidth, h, w, 0);
+		if (w != h) {
+			search(byWidth, entryWidth, entryHeight, h, w, 1);
+			search(byHeight, entryHeight, entryWidth, w, h, 1);
+		}
+		return best;
+	}
+
+	/**
+	 * Places a piece where {@link #findWhereToPlace} found room for it and
+	 * reindexes the free rectangles of its bin.
+	 *
+	 * @param found value returned by {@link #findWhereToPlace}.
+	 * @param piece piece to be placed.
+	 * @return number of the bin receiving the piece, -1 if it would overlap
+	 * an already placed piece.
+	 */
+	int place(int found, MArea piece) {
+		int entry = found >> 1;
+		int b = entryBin[entry];
+		if (!bins.get(b).place(piece, (entrySlot[entry] << 1) | (found & 1))) {
+			return -1;
+		}
+		refresh(b);
+		return b;
+	}
+
+	/**
+	 * Walks the entries sorted on one side upwards from the piece size on
+	 * that side, keeping the best fit in {@link #best}.
+	 *
+	 * @param sorted  entries sorted by the keys of the walked side.
+	 * @param keys    sizes on the walked side.
+	 * @param others  sizes on the other side.
+	 * @param size    piece size on the walked side.
+	 * @param other   piece size on the other side.
+	 * @param rotated orientation of the piece, 0 or 1.
+	 */
+	private void search(int[] sorted, double[] keys, double[] others, double size, double other, int rotated) {
+		for (int i = lowerBound(sorted, keys, size, -1); i < this.size; i++) {
+			int e = sorted[i];
+			double leftover = keys[e] - size;
+			if (leftover > bestScore) {
+				return;
+			}
+			if (others[e] < other) {
+				continue;
+			}
+			double score = Math.min(leftover, others[e] - other);
+			if (score < bestScore || (score == bestScore && before(e, rotated))) {
+				bestScore = score;
+				best = (e << 1) | rotated;
+			}
+		}
+	}
+
+	/**
+	 * Breaks a tie with the best fit found so far.
+	 *
+	 * @return true if the entry in that orientation is preferred.
+	 */
+	private boolean before(int e, int rotated) {
+		int b = best >> 1;
+		if (entryBin[e] != entryBin[b]) {
+			return entryBin[e] < entryBin[b];
+		}
+		if (entrySeq[e] != entrySeq[b]) {
+			return entrySeq[e] > entrySeq[b];
+		}
+		return rotated < (best & 1);
+	}
+
+	/**
+	 * Brings the entries of a bin in line with the free rectangles of its
+	 * packer, closing the bin if none is left.
+	 *
+	 * @param b number of the bin.
+	 */
+	private void refresh(int b) {
+		PrimitivePacker packer = bins.get(b).getRectanglePacker();
+		int[] slots = entryOfSlot.get(b);
+		int n = packer.getFreeSlots();
+		if (slots.length < n) {
+			int length = slots.length;
+			slots = Arrays.copyOf(slots, Math.max(n, length * 2));
+			Arrays.fill(slots, length, slots.length, -1);
+			entryOfSlot.set(b, slots);
+		}
+		for (int s = 0; s < n; s++) {
+			long seq = packer.getFreeSequence(s);
+			int e = slots[s];
+			if (e != -1) {
+				if (entrySeq[e] == seq) {
+					continue;
+				}
+				remove(e);
+			}
+			if (seq >= 0) {
+				double w = key(packer.getFreeWidth(s));
+				double h = key(packer.getFreeHeight(s));
+				if (Math.min(w, h) >= minSide) {
+					add(b, s, seq, w, h);
+				}
+			}
+		}
+		if (binEntries[b] == 0) {
+			close(b);
+		}
+	}
+
+	private void add(int b, int slot, long seq, double w, double h) {
+		int e;
+		if (releasedCount > 0) {
+			e = released[--releasedCount];
+		} else {
+			if (entries == entryBin.length) {
+				int capacity = entries * 2;
+				entryBin = Arrays.copyOf(entryBin, capacity);
+				entrySlot = Arrays.copyOf(entrySlot, capacity);
+				entrySeq = Arrays.copyOf(entrySeq, capacity);
+				entryWidth = Arrays.copyOf(entryWidth, capacity);
+				entryHeight = Arrays.copyOf(entryHeight, capacity);
+				byWidth = Arrays.copyOf(byWidth, capacity);
+				byHeight = Arrays.copyOf(byHeight, capacity);
+			}
+			e = entries++;
+		}
+		entryBin[e] = b;
+		entrySlot[e] = slot;
+		entrySeq[e] = seq;
+		entryWidth[e] = w;
+		entryHeight[e] = h;
+		insert(byWidth, entryWidth, e);
+		insert(byHeight, entryHeight, e);
+		size++;
+		entryOfSlot.get(b)[slot] = e;
+		binEntries[b]++;
+	}
+
+	private void remove(int e) {
+		delete(byWidth, entryWidth, e);
+		delete(byHeight, entryHeight, e);
+		size--;
+		int b = entryBin[e];
+		entryOfSlot.get(b)[entrySlot[e]] = -1;
+		binEntries[b]--;
+		if (releasedCount == released.length) {
+			released = Arrays.copyOf(released, releasedCount * 2);
+		}
+		released[releasedCount++] = e;
+	}
+
+	/**
+	 * Removes an entry too small to be used again, closing its bin if it was
+	 * the last one.
+	 */
+	private void drop(int e) {
+		int b = entryBin[e];
+		remove(e);
+		if (binEntries[b] == 0) {
+			close(b);
+		}
+	}
+
+	private void close(int b) {
+		bins.get(b).close();
+		entryOfSlot.set(b, null);
+	}
+
+	private void insert(int[] sorted, double[] keys, int e) {
+		int i = lowerBound(sorted, keys, keys[e], e);
+		System.arraycopy(sorted, i, sorted, i + 1, size - i);
+		sorted[i] = e;
+	}
+
+	private void delete(int[] sorted, double[] keys, int e) {
+		int i = lowerBound(sorted, keys, keys[e], e);
+		System.arraycopy(sorted, i + 1, sorted, i, size - i - 1);
+	}
+
+	/**
+	 * @return position of the first entry not below the key, ties broken by
+	 * entry.
+	 */
+	private int lowerBound(int[] sorted, double[] keys, double key, int e) {
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			int m = sorted[mid];
+			if (keys[m] < key || (keys[m] == key && m < e)) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * @return length in index units: grid units with fixed point coordinates.
+	 */
+	private double key(double length) {
+		return scale > 0 ? Math.rint(length * scale) : length;
+	}
+}
@@ -0,0 +1,27 @@
+package main.java.org.packing.core;
+
+/**
+ * Engines packing the rectangular pieces of a {@link Bin}. Non rectangular
+ * pieces are always packed by the maximal rectangles strategy of the bin,
+ * which takes over the free space left by the engine.
+ */
+public enum PackingEngine {
+	/**
+	 * Keeps every maximal free rectangle of the bin. Densest layouts, but the
+	 * free space grows faster than the number of placed pieces.
+	 */
+	MAXIMAL_RECTANGLES,
+
+	/**
+	 * Keeps the skyline of the placed pieces, one segment per distinct
+	 * height, so the state stays linear in the width of the layout. Space
+	 * left below the skyline is lost. Fastest, slightly less dense.
+	 */
+	SKYLINE,
+
+	/**
+	 * Skyline which also keeps the space left below it in a waste map of
+	 * free rectangles, tried before the skyline for every piece.
+	 */
+	SKYLINE_WASTE_MAP
+}
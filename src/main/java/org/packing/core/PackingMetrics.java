@@ -0,0 +1,68 @@
+package main.java.org.packing.core;
+
+/**
+ * Receives the measurements taken while packing. Set through
+ * {@link PackingOptions#withMetrics}; with {@link #DISABLED}, the default,
+ * the packer does not even read the clock in its inner loops.
+ * <p>
+ * Implementations are called from every thread packing with the options
+ * they are set on, so they must be thread safe.
+ */
+public interface PackingMetrics {
+	/**
+	 * Ignores every measurement.
+	 */
+	PackingMetrics DISABLED = new PackingMetrics() {
+		@Override
+		public void count(Metric metric, long delta) {
+		}
+
+		@Override
+		public void record(Metric metric, long value) {
+		}
+
+		@Override
+		public String toString() {
+			return "DISABLED";
+		}
+	};
+
+	/**
+	 * Adds to a counter.
+	 *
+	 * @param metric counter.
+	 * @param delta  amount to add.
+	 */
+	void count(Metric metric, long delta);
+
+	/**
+	 * Records a value in a histogram.
+	 *
+	 * @param metric histogram.
+	 * @param value  recorded value.
+	 */
+	void record(Metric metric, long value);
+
+	/**
+	 * Called once a bin has been filled. Records {@link Metric#BIN_TIME} by
+	 * default.
+	 *
+	 * @param bin   filled bin.
+	 * @param nanos time spent filling it.
+	 */
+	default void binPacked(Bin bin, long nanos) {
+		record(Metric.BIN_TIME, nanos);
+	}
+
+	/**
+	 * Called once an order has been packed. Records {@link Metric#ORDER_TIME}
+	 * by default.
+	 *
+	 * @param pieces number of pieces of the order.
+	 * @param bins   generated bins.
+	 * @param nanos  time spent packing the order.
+	 */
+	default void orderPacked(int pieces, Bin[] bins, long nanos) {
+		record(Metric.ORDER_TIME, nanos);
+	}
+}
@@ -0,0 +1,175 @@
+package main.java.org.packing.core;
+
+import java.util.Objects;
+
+/**
+ * Immutable set of options controlling how a {@link Bin} packs its pieces.
+ * Options are changed through the {@code with} methods, which return a new
+ * instance.
+ * <p>
+ * The metrics receiving the measurements and the storage of the free space
+ * do not change the layouts, so they are not part of the equality of two
+ * options.
+ */
+public final class PackingOptions {
+	/**
+	 * Options used by default: maximal rectangles with a linear free space
+	 * index, best short side fit pieces sorted by area, double coordinates
+	 * and no metrics.
+	 */
+	public static final PackingOptions DEFAULT = new PackingOptions(PackingEngine.MAXIMAL_RECTANGLES,
+			FreeSpaceIndex.LINEAR, PlacementRule.BEST_SHORT_SIDE_FIT, PieceOrder.AREA, 0, false, PackingMetrics.DISABLED);
+
+	private final PackingEngine engine;
+
+	private final FreeSpaceIndex freeSpaceIndex;
+
+	private final PlacementRule placementRule;
+
+	private final PieceOrder pieceOrder;
+
+	private final int fixedPointScale;
+
+	private final boolean offHeap;
+
+	private final PackingMetrics metrics;
+
+	private PackingOptions(PackingEngine engine, FreeSpaceIndex freeSpaceIndex, PlacementRule placementRule,
+	                       PieceOrder pieceOrder, int fixedPointScale, boolean offHeap, PackingMetrics metrics) {
+		if (fixedPointScale < 0) {
+			throw new IllegalArgumentException("Negative fixed point scale: " + fixedPointScale);
+		}
+		this.engine = Objects.requireNonNull(engine);
+		this.freeSpaceIndex = Objects.requireNonNull(freeSpaceIndex);
+		this.placementRule = Objects.requireNonNull(placementRule);
+		this.pieceOrder = Objects.requireNonNull(pieceOrder);
+		this.fixedPointScale = fixedPointScale;
+		this.offHeap = offHeap;
+		this.metrics = Objects.requireNonNull(metrics);
+	}
+
+	/**
+	 * Engine packing the rectangular pieces. The skyline engines use double
+	 * coordinates and no free space index, whatever the other options; they
+	 * place each piece as low as possible and then as far left as possible
+	 * with the bottom left rule, and where it leaves the least space below
+	 * it with any other rule.
+	 *
+	 * @return engine packing the rectangular pieces.
+	 */
+	public PackingEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @return index over the free rectangles of the bins.
+	 */
+	public FreeSpaceIndex getFreeSpaceIndex() {
+		return freeSpaceIndex;
+	}
+
+	/**
+	 * @return rule choosing where each piece is placed.
+	 */
+	public PlacementRule getPlacementRule() {
+		return placementRule;
+	}
+
+	/**
+	 * @return order in which the pieces are placed.
+	 */
+	public PieceOrder getPieceOrder() {
+		return pieceOrder;
+	}
+
+	/**
+	 * Scale of the fixed point coordinates: rectangles are packed on a grid
+	 * of {@code 1 / scale} with integer coordinates, and pieces whose sizes
+	 * are not on the grid are packed as non rectangular ones. 0 for double
+	 * coordinates. The free space index is not used with fixed point
+	 * coordinates.
+	 *
+	 * @return grid units per unit of length, 0 if not enabled.
+	 */
+	public int getFixedPointScale() {
+		return fixedPointScale;
+	}
+
+	/**
+	 * Whether the free rectangles and placements of the bins are kept off the
+	 * heap, in slabs of direct memory from {@link SlabAllocator#SHARED}
+	 * given back when each bin is closed. Needs fixed point coordinates.
+	 *
+	 * @return true for off heap storage.
+	 */
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * @return metrics receiving the measurements taken while packing.
+	 */
+	public PackingMetrics getMetrics() {
+		return metrics;
+	}
+
+	public PackingOptions withEngine(PackingEngine engine) {
+		return new PackingOptions(engine, freeSpaceIndex, placementRule, pieceOrder, fixedPointScale, offHeap, metrics);
+	}
+
+	public PackingOptions withFreeSpaceIndex(FreeSpaceIndex freeSpaceIndex) {
+		return new PackingOptions(engine, freeSpaceIndex, placementRule, pieceOrder, fixedPointScale, offHeap, metrics);
+	}
+
+	public PackingOptions withPlacementRule(PlacementRule placementRule) {
+		return new PackingOptions(engine, freeSpaceIndex, placementRule, pieceOrder, fixedPointScale, offHeap, metrics);
+	}
+
+	public PackingOptions withPieceOrder(PieceOrder pieceOrder) {
+		return new PackingOptions(engine, freeSpaceIndex, placementRule, pieceOrder, fixedPointScale, offHeap, metrics);
+	}
+
+	/**
+	 * @param fixedPointScale grid units per unit of length, 0 for double
+	 *                        coordinates.
+	 * @return options packing on that grid.
+	 */
+	public PackingOptions withFixedPointScale(int fixedPointScale) {
+		return new PackingOptions(engine, freeSpaceIndex, placementRule, pieceOrder, fixedPointScale, offHeap, metrics);
+	}
+
+	/**
+	 * @param offHeap true to keep the free space of the bins off the heap.
+	 * @return options with that storage.
+	 */
+	public PackingOptions withOffHeap(boolean offHeap) {
+		return new PackingOptions(engine, freeSpaceIndex, placementRule, pieceOrder, fixedPointScale, offHeap, metrics);
+	}
+
+	public PackingOptions withMetrics(PackingMetrics metrics) {
+		return new PackingOptions(engine, freeSpaceIndex, placementRule, pieceOrder, fixedPointScale, offHeap, metrics);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof PackingOptions)) {
+			return false;
+		}
+		PackingOptions other = (PackingOptions) obj;
+		return engine == other.engine && freeSpaceIndex == other.freeSpaceIndex && placementRule == other.placementRule
+				&& pieceOrder == other.pieceOrder && fixedPointScale == other.fixedPointScale;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(engine, freeSpaceIndex, placementRule, pieceOrder, fixedPointScale);
+	}
+
+	@Override
+	public String toString() {
+		// the skylines have no free space index
+		String s = (engine == PackingEngine.MAXIMAL_RECTANGLES ? freeSpaceIndex : engine) + "/" + placementRule + "/"
+				+ pieceOrder;
+		return fixedPointScale > 0 ? s + "/1:" + fixedPointScale : s;
+	}
+}
@@ -0,0 +1,44 @@
+package main.java.org.packing.core;
+
+import main.java.org.packing.primitives.MArea;
+
+import java.util.Comparator;
+
+/**
+ * Orders in which a bin tries to place the pieces, from the largest to the
+ * smallest according to the measure.
+ */
+public enum PieceOrder {
+	/**
+	 * By area.
+	 */
+	AREA(MArea.BY_AREA),
+
+	/**
+	 * By longest side of the bounding box.
+	 */
+	MAX_SIDE(MArea.BY_MAX_SIDE),
+
+	/**
+	 * By perimeter of the bounding box.
+	 */
+	PERIMETER(MArea.BY_PERIMETER),
+
+	/**
+	 * By height of the bounding box.
+	 */
+	HEIGHT(MArea.BY_HEIGHT);
+
+	private final Comparator<MArea> comparator;
+
+	PieceOrder(Comparator<MArea> comparator) {
+		this.comparator = comparator;
+	}
+
+	/**
+	 * @return comparator sorting the pieces from the smallest to the largest.
+	 */
+	public Comparator<MArea> getComparator() {
+		return comparator;
+	}
+}
@@ -0,0 +1,40 @@
+package main.java.org.packing.core;
+
+/**
+ * Rules for choosing the free rectangle where a piece is placed. Pieces are
+ * always placed in the bottom left corner of the chosen rectangle, bottom
+ * being the side with the highest y. Ties go to the rectangle that comes last
+ * in the area sorted free list and then to the unrotated orientation.
+ * <p>
+ * The rules apply to rectangle packing; bins packing non rectangular pieces
+ * always use {@link #BEST_SHORT_SIDE_FIT}. The skyline engines only tell
+ * {@link #BOTTOM_LEFT} from the others, see {@link PackingOptions#getEngine()}.
+ */
+public enum PlacementRule {
+	/**
+	 * Smallest leftover on the shorter side of the free rectangle.
+	 */
+	BEST_SHORT_SIDE_FIT,
+
+	/**
+	 * Smallest leftover on the longer side of the free rectangle, then on the
+	 * shorter side.
+	 */
+	BEST_LONG_SIDE_FIT,
+
+	/**
+	 * Smallest free rectangle, then smallest leftover on the shorter side.
+	 */
+	BEST_AREA_FIT,
+
+	/**
+	 * Position closest to the bottom of the bin, then to its left side.
+	 */
+	BOTTOM_LEFT,
+
+	/**
+	 * Position where the piece touches the bin sides and the placed pieces
+	 * along the longest length.
+	 */
+	CONTACT_POINT
+}
@@ -0,0 +1,190 @@
+package main.java.org.packing.core;
+
+
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class PortfolioPacking {
+	/**
+	 * Every combination of placement rule and piece order, with the default
+	 * options first.
+	 *
+	 * @return the built-in portfolio.
+	 */
+	public static List<PackingOptions> defaultPortfolio() {
+		List<PackingOptions> portfolio = new ArrayList<>();
+		portfolio.add(PackingOptions.DEFAULT);
+		for (PlacementRule rule : PlacementRule.values()) {
+			for (PieceOrder order : PieceOrder.values()) {
+				PackingOptions options = PackingOptions.DEFAULT.withPlacementRule(rule).withPieceOrder(order);
+				if (!options.equals(PackingOptions.DEFAULT)) {
+					portfolio.add(options);
+				}
+			}
+		}
+		return portfolio;
+	}
+
+	/**
+	 * Races the built-in portfolio on a pool with one thread per processor.
+	 * See {@link #PortfolioStrategy(MArea[], Dimension, List, long, TimeUnit, ExecutorService)}.
+	 *
+	 * @param pieces       pieces to be nested inside the bins.
+	 * @param binDimension dimensions for the generated bins.
+	 * @param budget       wall-clock time allowed.
+	 * @param unit         unit of the budget.
+	 * @return best list of generated bins, null if no run finished within
+	 * the budget.
+	 */
+	public static Bin[] PortfolioStrategy(MArea[] pieces, Dimension binDimension, long budget, TimeUnit unit) {
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			return PortfolioStrategy(pieces, binDimension, defaultPortfolio(), budget, unit, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Packs the pieces with every options of the portfolio concurrently and
+	 * keeps the best result: the fewest bins and, among those, the highest
+	 * sum of squared bin utilizations, which favours full bins over evenly
+	 * half filled ones. Results are taken as the runs finish, ties going to
+	 * the options coming first in the portfolio, and the race stops as soon
+	 * as a result reaches the {@link LowerBounds#lowerBound lower bound} of
+	 * the order, which no other run can beat. Every run packs its own copies
+	 * of the pieces, which are not modified.
+	 * <p>
+	 * Runs still going when the race stops or the budget expires are
+	 * cancelled and ignored, so the call returns by the end of the budget.
+	 * If no run has finished by then, or the calling thread is interrupted
+	 * first, null is returned: a budget too short for the order is reported
+	 * instead of being overrun.
+	 *
+	 * @param pieces       pieces to be nested inside the bins.
+	 * @param binDimension dimensions for the generated bins.
+	 * @param portfolio    options to try, at least one.
+	 * @param budget       wall-clock time allowed.
+	 * @param unit         unit of the budget.
+	 * @param executor     executor running the portfolio.
+	 * @return best list of generated bins, null if no run finished within
+	 * the budget or before an interruption.
+	 */
+	public static Bin[] PortfolioStrategy(MArea[] pieces, Dimension binDimension, List<PackingOptions> portfolio,
+	                                      long budget, TimeUnit unit, ExecutorService executor) {
+		long deadline = System.nanoTime() + unit.toNanos(budget);
+		int bound = LowerBounds.lowerBound(pieces, binDimension);
+		CompletionService<Bin[]> completion = new ExecutorCompletionService<>(executor);
+		List<Future<Bin[]>> runs = new ArrayList<>();
+		for (PackingOptions options : portfolio) {
+			MArea[] copy = copyPieces(pieces);
+			runs.add(completion.submit(() -> BinPacking.BinPackingStrategy(copy, binDimension, options,
+					() -> Thread.currentThread().isInterrupted())));
+		}
+
+		Bin[] best = null;
+		int bestIndex = -1;
+		for (int i = 0; i < runs.size() && (best == null || best.length > bound); i++) {
+			Future<Bin[]> run = next(completion, deadline - System.nanoTime());
+			if (run == null) {
+				break;
+			}
+			Bin[] bins = get(run, 0);
+			int index = runs.indexOf(run);
+			if (bins != null && (best == null || better(bins, best) || (!better(best, bins) && index < bestIndex))) {
+				best = bins;
+				bestIndex = index;
+			}
+		}
+		for (Future<Bin[]> run : runs) {
+			run.cancel(true);
+		}
+		return best;
+	}
+
+	/**
+	 * Compares two results of the same pieces.
+	 *
+	 * @param bins  candidate result.
+	 * @param other result to beat.
+	 * @return true if the candidate uses fewer bins, or as many bins with a
+	 * higher sum of squared utilizations.
+	 */
+	static boolean better(Bin[] bins, Bin[] other) {
+		if (bins.length != other.length) {
+			return bins.length < other.length;
+		}
+		return fitness(bins) > fitness(other);
+	}
+
+	/**
+	 * @param bins bins of a result.
+	 * @return sum of the squared utilizations of the bins.
+	 */
+	static double fitness(Bin[] bins) {
+		double fitness = 0;
+		for (Bin bin : bins) {
+			double utilization = bin.getUtilization();
+			fitness += utilization * utilization;
+		}
+		return fitness;
+	}
+
+	/**
+	 * Waits for the next run to finish until the deadline.
+	 *
+	 * @return the finished run, null if none finished in time.
+	 */
+	private static Future<Bin[]> next(CompletionService<Bin[]> completion, long nanos) {
+		try {
+			return completion.poll(Math.max(nanos, 0), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * Waits for a run until the deadline.
+	 *
+	 * @return the bins of the run, null if it did not finish in time.
+	 */
+	private static Bin[] get(Future<Bin[]> run, long nanos) {
+		try {
+			return run.get(Math.max(nanos, 0), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException | CancellationException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Copies the array and every piece, so that every run sorts its own
+	 * array and places its own pieces: the bins move and rotate the pieces
+	 * they place on the Area path, which rectangles take too in an order
+	 * with irregular pieces.
+	 */
+	static MArea[] copyPieces(MArea[] pieces) {
+		MArea[] copy = new MArea[pieces.length];
+		for (int i = 0; i < pieces.length; i++) {
+			copy[i] = new MArea(pieces[i], pieces[i].getID());
+		}
+		return copy;
+	}
+}
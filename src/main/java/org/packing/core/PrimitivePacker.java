@@ -0,0 +1,158 @@
+package main.java.org.packing.core;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+/**
+ * Strategy for rectangular pieces working on primitive arrays, used by
+ * {@link Bin} until a piece it cannot handle is packed. The maximal
+ * rectangles implementations produce the same layouts as the list based
+ * implementation in {@link Bin}.
+ */
+interface PrimitivePacker {
+
+	/**
+	 * Creates the packer selected by the options: a skyline if the engine is
+	 * one, maximal rectangles with fixed point coordinates if a scale is set,
+	 * with double coordinates otherwise.
+	 *
+	 * @param dimension dimensions of the bin.
+	 * @param options   packing options.
+	 * @return new empty packer.
+	 * @throws IllegalArgumentException if off heap storage is asked for
+	 *                                  without fixed point coordinates.
+	 */
+	static PrimitivePacker create(Dimension dimension, PackingOptions options) {
+		if (options.getEngine() != PackingEngine.MAXIMAL_RECTANGLES) {
+			return new SkylinePacker(dimension, options);
+		}
+		if (options.isOffHeap() && options.getFixedPointScale() == 0) {
+			throw new IllegalArgumentException("Off heap storage needs a fixed point scale");
+		}
+		if (options.getFixedPointScale() > 0) {
+			return new FixedPointRectanglePacker(dimension, options);
+		}
+		return new RectanglePacker(dimension, options);
+	}
+
+	/**
+	 * Checks whether the packer can place a piece of the specified size.
+	 *
+	 * @param width  width of the piece.
+	 * @param height height of the piece.
+	 * @return true if the piece can be handled.
+	 */
+	boolean accepts(double width, double height);
+
+	/**
+	 * Finds the best free rectangle for a piece according to the placement
+	 * rule, trying both orientations.
+	 *
+	 * @param width  width of the piece.
+	 * @param height height of the piece.
+	 * @return <ul>
+	 * <li><b>-1</b> if not valid position was found.</li>
+	 * <li><b>fit</b> encoding the free rectangle and the orientation, to be
+	 * passed to {@link #place}, otherwise.</li>
+	 * </ul>
+	 */
+	int findWhereToPlace(double width, double height);
+
+	/**
+	 * Places a piece in the bottom left corner of the free rectangle chosen by
+	 * {@link #findWhereToPlace} and updates the free rectangles.
+	 *
+	 * @param fit    value returned by {@link #findWhereToPlace}.
+	 * @param width  width of the piece, unrotated.
+	 * @param height height of the piece, unrotated.
+	 * @param id     ID of the piece.
+	 * @return true if the piece was placed, false if it would overlap an
+	 * already placed piece.
+	 */
+	boolean place(int fit, double width, double height, int id);
+
+	/**
+	 * @return number of placed pieces.
+	 */
+	int getPlacedCount();
+
+	/**
+	 * @return number of free rectangles.
+	 */
+	int getFreeCount();
+
+	/**
+	 * @return upper bound, exclusive, of the slots of the free rectangles.
+	 */
+	int getFreeSlots();
+
+	/**
+	 * Sequence number of the free rectangle in a slot. A slot holding a
+	 * rectangle with the same sequence number holds the same rectangle.
+	 * The fit placing a piece in it is {@code slot << 1 | rotated}.
+	 *
+	 * @param slot slot below {@link #getFreeSlots()}.
+	 * @return sequence number, -1 if the slot is not in use.
+	 */
+	long getFreeSequence(int slot);
+
+	/**
+	 * @param slot slot of a free rectangle.
+	 * @return width of the free rectangle.
+	 */
+	double getFreeWidth(int slot);
+
+	/**
+	 * @param slot slot of a free rectangle.
+	 * @return height of the free rectangle.
+	 */
+	double getFreeHeight(int slot);
+
+	/**
+	 * Bounding box of a placed piece.
+	 *
+	 * @param i index of the placed piece.
+	 * @return bounding box of the piece in double precision.
+	 */
+	Rectangle2D.Double getPlacedBounds(int i);
+
+	/**
+	 * @param i index of the placed piece.
+	 * @return ID of the placed piece.
+	 */
+	int getPlacedID(int i);
+
+	/**
+	 * @param i index of the placed piece.
+	 * @return true if the piece was rotated 90 degrees to be placed.
+	 */
+	boolean isPlacedRotated(int i);
+
+	/**
+	 * Copies the free rectangles into the list representation used by
+	 * {@link Bin}, in list order.
+	 *
+	 * @return list of free rectangles.
+	 */
+	List<Rectangle2D.Double> toFreeRectangles();
+
+	/**
+	 * @return containment tests made while eliminating non-maximal
+	 * rectangles.
+	 */
+	long getContainmentTests();
+
+	/**
+	 * @return containment tests avoided compared with testing every pair of
+	 * free rectangles.
+	 */
+	long getContainmentTestsSaved();
+
+	/**
+	 * Releases the storage held outside the heap, if any. The packer must
+	 * not be used afterwards.
+	 */
+	default void release() {
+	}
+}
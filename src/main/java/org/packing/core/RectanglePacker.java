@@ -0,0 +1,592 @@
+package main.java.org.packing.core;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rectangle-only implementation of the maximal rectangles strategy used by
+ * {@link Bin}. Placed pieces and free rectangles are stored in flat primitive
+ * arrays and overlaps are resolved with plain rectangle tests, so no
+ * {@link java.awt.geom.Area} work is done while packing. The order in which
+ * free rectangles are created, split and pruned mirrors the list based
+ * implementation in {@link Bin}, so both produce the same layouts.
+ */
+final class RectanglePacker implements PrimitivePacker {
+	/**
+	 * Number of values in a rectangle record: x, y, width, height.
+	 */
+	static final int RECT = 4;
+
+	/**
+	 * Number of values in a placement info record: ID, rotated flag.
+	 */
+	static final int INFO = 2;
+
+	/**
+	 * Free rectangles in the bin.
+	 */
+	private final FreeRectangles free = new FreeRectangles();
+
+	/**
+	 * Index answering the queries over the free rectangles.
+	 */
+	private final FreeRectangleIndex index;
+
+	/**
+	 * Rule choosing the free rectangle for each piece.
+	 */
+	private final PlacementRule placementRule;
+
+	/**
+	 * Metrics receiving the time of each step of a placement.
+	 */
+	private final PackingMetrics metrics;
+
+	/**
+	 * Whether measurements are taken.
+	 */
+	private final boolean metered;
+
+	private final double binWidth;
+
+	private final double binHeight;
+
+	/**
+	 * Free rectangles created by the last placement, as consecutive rectangle
+	 * records, before they are added to the free rectangles.
+	 */
+	private double[] created = new double[RECT * 16];
+
+	/**
+	 * Number of rectangles in {@link #created}.
+	 */
+	private int createdCount;
+
+	/**
+	 * Slots of the free rectangles hit by the last placement.
+	 */
+	private final SlotList hit = new SlotList();
+
+	/**
+	 * Slots of the rectangles added by the last placement.
+	 */
+	private final SlotList added = new SlotList();
+
+	/**
+	 * Slots returned by the queries of {@link #eliminateNonMaximal}.
+	 */
+	private final SlotList candidates = new SlotList();
+
+	/**
+	 * Containment tests made by {@link #eliminateNonMaximal}.
+	 */
+	private long containmentTests;
+
+	/**
+	 * Containment tests avoided by {@link #eliminateNonMaximal}, compared with
+	 * testing every pair of free rectangles.
+	 */
+	private long containmentTestsSaved;
+
+	/**
+	 * Placed pieces, as consecutive rectangle records.
+	 */
+	private double[] placed = new double[RECT * 16];
+
+	/**
+	 * ID and rotated flag (0 or 1) of the placed pieces.
+	 */
+	private int[] placedInfo = new int[INFO * 16];
+
+	/**
+	 * Number of placed pieces.
+	 */
+	private int placedCount;
+
+	/**
+	 * Initializes an empty packer for a bin with the specified dimensions.
+	 *
+	 * @param dimension dimensions of the bin.
+	 * @param options   options selecting the free space index and the
+	 *                  placement rule.
+	 */
+	RectanglePacker(Dimension dimension, PackingOptions options) {
+		index = options.getFreeSpaceIndex().create(free, dimension);
+		placementRule = options.getPlacementRule();
+		metrics = options.getMetrics();
+		metered = metrics != PackingMetrics.DISABLED;
+		binWidth = dimension.getWidth();
+		binHeight = dimension.getHeight();
+		index.added(free.add(0, 0, binWidth, binHeight));
+	}
+
+	/**
+	 * Any size is accepted.
+	 */
+	@Override
+	public boolean accepts(double width, double height) {
+		return true;
+	}
+
+	/**
+	 * @return number of placed pieces.
+	 */
+	@Override
+	public int getPlacedCount() {
+		return placedCount;
+	}
+
+	/**
+	 * @return number of free rectangles.
+	 */
+	@Override
+	public int getFreeCount() {
+		return free.size();
+	}
+
+	@Override
+	public int getFreeSlots() {
+		return free.slots();
+	}
+
+	@Override
+	public long getFreeSequence(int slot) {
+		return free.seq[slot];
+	}
+
+	@Override
+	public double getFreeWidth(int slot) {
+		return free.w[slot];
+	}
+
+	@Override
+	public double getFreeHeight(int slot) {
+		return free.h[slot];
+	}
+
+	/**
+	 * Finds the best free rectangle for a piece according to the placement
+	 * rule, trying both orientations. Ties are resolved as in {@link Bin}:
+	 * the last rectangle of the list wins and the unrotated orientation is
+	 * preferred. Best short side fit is answered by the free space index, the
+	 * other rules scan every free rectangle.
+	 *
+	 * @param width  width of the piece.
+	 * @param height height of the piece.
+	 * @return <ul>
+	 * <li><b>-1</b> if not valid position was found.</li>
+	 * <li><b>fit</b> encoding the free rectangle and the orientation, to be
+	 * passed to {@link #place}, otherwise.</li>
+	 * </ul>
+	 */
+	@Override
+	public int findWhereToPlace(double width, double height) {
+		if (placementRule == PlacementRule.BEST_SHORT_SIDE_FIT) {
+			return index.findWhereToPlace(width, height);
+		}
+		int res = -1;
+		double bestPrimary = Double.MAX_VALUE;
+		double bestSecondary = Double.MAX_VALUE;
+		for (int i = 0, n = free.slots(); i < n; i++) {
+			if (!free.isLive(i)) {
+				continue;
+			}
+			for (int rotated = 0; rotated < 2; rotated++) {
+				double pw = rotated == 0 ? width : height;
+				double ph = rotated == 0 ? height : width;
+				double fw = free.w[i];
+				double fh = free.h[i];
+				if (pw > fw || ph > fh) {
+					continue;
+				}
+				double primary;
+				double secondary;
+				switch (placementRule) {
+					case BEST_LONG_SIDE_FIT:
+						primary = Math.max(fw - pw, fh - ph);
+						secondary = Math.min(fw - pw, fh - ph);
+						break;
+					case BEST_AREA_FIT:
+						primary = fw * fh - pw * ph;
+						secondary = Math.min(fw - pw, fh - ph);
+						break;
+					case BOTTOM_LEFT:
+						primary = binHeight - (free.y[i] + fh - ph);
+						secondary = free.x[i];
+						break;
+					default:
+						primary = -contact(free.x[i], free.y[i] + fh - ph, pw, ph);
+						secondary = 0;
+						break;
+				}
+				if (primary < bestPrimary || (primary == bestPrimary && (secondary < bestSecondary
+						|| (secondary == bestSecondary && res != -1 && free.after(i, res >> 1))))) {
+					bestPrimary = primary;
+					bestSecondary = secondary;
+					res = (i << 1) | rotated;
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Length of the perimeter of a candidate position touching the bin sides
+	 * or the placed pieces.
+	 */
+	private double contact(double x, double y, double w, double h) {
+		double contact = 0;
+		if (x == 0 || x + w == binWidth) {
+			contact += h;
+		}
+		if (y == 0 || y + h == binHeight) {
+			contact += w;
+		}
+		double[] placed = this.placed;
+		for (int i = 0, n = placedCount * RECT; i < n; i += RECT) {
+			double px = placed[i];
+			double py = placed[i + 1];
+			double pw = placed[i + 2];
+			double ph = placed[i + 3];
+			if (px + pw == x || px == x + w) {
+				contact += Math.max(0, Math.min(y + h, py + ph) - Math.max(y, py));
+			}
+			if (py + ph == y || py == y + h) {
+				contact += Math.max(0, Math.min(x + w, px + pw) - Math.max(x, px));
+			}
+		}
+		return contact;
+	}
+
+	/**
+	 * Places a piece in the bottom left corner of the free rectangle chosen by
+	 * {@link #findWhereToPlace} and updates the free rectangles.
+	 *
+	 * @param fit    value returned by {@link #findWhereToPlace}.
+	 * @param width  width of the piece, unrotated.
+	 * @param height height of the piece, unrotated.
+	 * @param id     ID of the piece.
+	 * @return true if the piece was placed, false if it would overlap an
+	 * already placed piece.
+	 */
+	@Override
+	public boolean place(int fit, double width, double height, int id) {
+		int where = fit >> 1;
+		int rotated = fit & 1;
+		if (rotated == 1) {
+			double w = width;
+			width = height;
+			height = w;
+		}
+		double fx = free.x[where];
+		double fy = free.y[where];
+		double fw = free.w[where];
+		double fh = free.h[where];
+		double x = fx;
+		double y = fy + fh - height;
+		if (overlapsPlaced(x, y, width, height)) {
+			return false;
+		}
+		removeFree(where);
+		createdCount = 0;
+		if (!metered) {
+			splitScheme(fx, fy, fw, fh, x, y, width);
+			computeFreeRectangles(x, y, width, height);
+			eliminateNonMaximal();
+		} else {
+			long start = System.nanoTime();
+			splitScheme(fx, fy, fw, fh, x, y, width);
+			long split = System.nanoTime();
+			computeFreeRectangles(x, y, width, height);
+			long computed = System.nanoTime();
+			eliminateNonMaximal();
+			long eliminated = System.nanoTime();
+			metrics.record(Metric.SPLIT_TIME, split - start);
+			metrics.record(Metric.COMPUTE_FREE_TIME, computed - split);
+			metrics.record(Metric.ELIMINATE_TIME, eliminated - computed);
+			metrics.record(Metric.FREE_RECTANGLES, free.size());
+		}
+		addPlaced(x, y, width, height, id, rotated);
+		return true;
+	}
+
+	/**
+	 * Direct rectangle test of a candidate position against every placed
+	 * piece. Touching edges do not count as an overlap.
+	 */
+	private boolean overlapsPlaced(double x, double y, double w, double h) {
+		double maxX = x + w;
+		double maxY = y + h;
+		double[] placed = this.placed;
+		for (int i = 0, n = placedCount * RECT; i < n; i += RECT) {
+			double px = placed[i];
+			double py = placed[i + 1];
+			if (px < maxX && py < maxY && x < px + placed[i + 2] && y < py + placed[i + 3]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Divides the free rectangle where a piece was just placed following the
+	 * maximal rectangles splitting strategy. The used rectangle has already
+	 * been removed; the new rectangles are queued as created ones.
+	 */
+	private void splitScheme(double fx, double fy, double fw, double fh, double px, double py, double pw) {
+		// top
+		double height = py - fy;
+		if (height > 0) {
+			addCreated(fx, fy, fw, height);
+		}
+		// right
+		double width = fx + fw - (px + pw);
+		if (width > 0) {
+			addCreated(px + pw, fy, width, fh);
+		}
+	}
+
+	/**
+	 * Splits every free rectangle intersecting the just placed piece into the
+	 * parts left uncovered by it. Rectangles are processed in list order, and
+	 * the ones queued by {@link #splitScheme} last, as the list
+	 * implementation does.
+	 */
+	private void computeFreeRectangles(double px, double py, double pw, double ph) {
+		hit.clear();
+		index.intersecting(px, py, pw, ph, hit);
+		hit.sortByListOrder(free);
+		for (int i = 0; i < hit.size; i++) {
+			int slot = hit.slots[i];
+			split(free.x[slot], free.y[slot], free.w[slot], free.h[slot], px, py, pw, ph);
+			removeFree(slot);
+		}
+
+		int queued = createdCount;
+		boolean removed = false;
+		for (int i = 0; i < queued; i++) {
+			int o = i * RECT;
+			if (split(created[o], created[o + 1], created[o + 2], created[o + 3], px, py, pw, ph)) {
+				created[o + 2] = 0;
+				removed = true;
+			}
+		}
+		if (removed) {
+			int k = 0;
+			for (int i = 0; i < createdCount; i++) {
+				if (created[i * RECT + 2] > 0) {
+					System.arraycopy(created, i * RECT, created, k * RECT, RECT);
+					k++;
+				}
+			}
+			createdCount = k;
+		}
+	}
+
+	/**
+	 * Splits a rectangle if it intersects the just placed piece, queuing the
+	 * uncovered parts as created rectangles.
+	 *
+	 * @return true if the rectangle intersects the piece and must be removed.
+	 */
+	private boolean split(double x, double y, double w, double h, double px, double py, double pw, double ph) {
+		if (w <= 0 || h <= 0 || pw <= 0 || ph <= 0
+				|| !(px + pw > x && py + ph > y && px < x + w && py < y + h)) {
+			return false;
+		}
+		double ix = Math.max(x, px);
+		double iy = Math.max(y, py);
+		double iw = Math.min(x + w, px + pw) - ix;
+		double ih = Math.min(y + h, py + ph) - iy;
+		// top
+		double height = iy - y;
+		if (height > 0) {
+			addCreated(x, y, w, height);
+		}
+		// left
+		double width = ix - x;
+		if (width > 0) {
+			addCreated(x, y, width, h);
+		}
+		// bottom
+		height = y + h - (iy + ih);
+		if (height > 0) {
+			addCreated(x, iy + ih, w, height);
+		}
+		// right
+		width = x + w - (ix + iw);
+		if (width > 0) {
+			addCreated(ix + iw, y, width, h);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the created rectangles to the free rectangles and eliminates all
+	 * the non-maximal ones. A rectangle is removed when another one that
+	 * comes after it in the area sorted list contains it, as in
+	 * {@link Bin}. The rectangles that were already there are maximal among
+	 * themselves, so only the created ones are tested, against the
+	 * rectangles they intersect.
+	 */
+	private void eliminateNonMaximal() {
+		added.clear();
+		for (int i = 0; i < createdCount; i++) {
+			int o = i * RECT;
+			int slot = free.add(created[o], created[o + 1], created[o + 2], created[o + 3]);
+			index.added(slot);
+			added.add(slot);
+		}
+		createdCount = 0;
+
+		long tests = 0;
+		hit.clear();
+		for (int i = 0; i < added.size; i++) {
+			int slot = added.slots[i];
+			candidates.clear();
+			index.intersecting(free.x[slot], free.y[slot], free.w[slot], free.h[slot], candidates);
+			for (int k = 0; k < candidates.size; k++) {
+				int other = candidates.slots[k];
+				if (other == slot) {
+					continue;
+				}
+				tests++;
+				if (free.after(other, slot) && free.contains(other, slot)) {
+					hit.add(slot);
+				} else if (free.after(slot, other) && free.contains(slot, other)) {
+					hit.add(other);
+				}
+			}
+		}
+		long n = free.size();
+		containmentTests += tests;
+		containmentTestsSaved += n * (n - 1) / 2 - tests;
+		if (metered) {
+			metrics.count(Metric.CONTAINMENT_TESTS, tests);
+		}
+
+		for (int i = 0; i < hit.size; i++) {
+			int slot = hit.slots[i];
+			if (free.isLive(slot)) {
+				removeFree(slot);
+			}
+		}
+	}
+
+	/**
+	 * @return containment tests made while eliminating non-maximal
+	 * rectangles.
+	 */
+	@Override
+	public long getContainmentTests() {
+		return containmentTests;
+	}
+
+	/**
+	 * @return containment tests avoided compared with testing every pair of
+	 * free rectangles.
+	 */
+	@Override
+	public long getContainmentTestsSaved() {
+		return containmentTestsSaved;
+	}
+
+	private void removeFree(int slot) {
+		index.removed(slot);
+		free.remove(slot);
+	}
+
+	private void addCreated(double x, double y, double w, double h) {
+		created = ensure(created, (createdCount + 1) * RECT);
+		int o = createdCount * RECT;
+		created[o] = x;
+		created[o + 1] = y;
+		created[o + 2] = w;
+		created[o + 3] = h;
+		createdCount++;
+	}
+
+	private void addPlaced(double x, double y, double w, double h, int id, int rotated) {
+		placed = ensure(placed, (placedCount + 1) * RECT);
+		if (placedInfo.length < (placedCount + 1) * INFO) {
+			int[] grown = new int[placedInfo.length * 2];
+			System.arraycopy(placedInfo, 0, grown, 0, placedInfo.length);
+			placedInfo = grown;
+		}
+		int o = placedCount * RECT;
+		placed[o] = x;
+		placed[o + 1] = y;
+		placed[o + 2] = w;
+		placed[o + 3] = h;
+		placedInfo[placedCount * INFO] = id;
+		placedInfo[placedCount * INFO + 1] = rotated;
+		placedCount++;
+	}
+
+	/**
+	 * Returns the specified array if it holds at least the required number of
+	 * values, a larger copy of it otherwise.
+	 */
+	private static double[] ensure(double[] array, int required) {
+		if (array.length >= required) {
+			return array;
+		}
+		double[] grown = new double[Math.max(required, array.length * 2)];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	/**
+	 * Bounding box of a placed piece.
+	 *
+	 * @param i index of the placed piece.
+	 * @return bounding box of the piece in double precision.
+	 */
+	@Override
+	public Rectangle2D.Double getPlacedBounds(int i) {
+		int o = i * RECT;
+		return new Rectangle2D.Double(placed[o], placed[o + 1], placed[o + 2], placed[o + 3]);
+	}
+
+	/**
+	 * @param i index of the placed piece.
+	 * @return ID of the placed piece.
+	 */
+	@Override
+	public int getPlacedID(int i) {
+		return placedInfo[i * INFO];
+	}
+
+	/**
+	 * @param i index of the placed piece.
+	 * @return true if the piece was rotated 90 degrees to be placed.
+	 */
+	@Override
+	public boolean isPlacedRotated(int i) {
+		return placedInfo[i * INFO + 1] == 1;
+	}
+
+	/**
+	 * Copies the free rectangles into the list representation used by
+	 * {@link Bin}, in list order.
+	 *
+	 * @return list of free rectangles.
+	 */
+	@Override
+	public List<Rectangle2D.Double> toFreeRectangles() {
+		SlotList live = new SlotList();
+		for (int i = 0; i < free.slots(); i++) {
+			if (free.isLive(i)) {
+				live.add(i);
+			}
+		}
+		live.sortByListOrder(free);
+		List<Rectangle2D.Double> rectangles = new ArrayList<>(live.size);
+		for (int i = 0; i < live.size; i++) {
+			rectangles.add(free.get(live.slots[i]));
+		}
+		return rectangles;
+	}
+}
@@ -0,0 +1,551 @@
+package main.java.org.packing.core;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Skyline implementation of the rectangle packing of {@link Bin}. The
+ * placed pieces are only remembered through the skyline they form, a list
+ * of horizontal segments covering the width of the bin, so a placement
+ * costs a pass over the segments whatever the number of pieces below them.
+ * <p>
+ * Heights of the skyline are measured from the bottom of the bin, which is
+ * its side of largest y, where the maximal rectangles strategy places the
+ * pieces too. A piece is placed at the start of a segment and rests on the
+ * highest segment under it. With the bottom left rule the position with the
+ * lowest top wins, then the leftmost one; with any other rule the position
+ * leaving the least area below the piece wins, then the one with the lowest
+ * top.
+ * <p>
+ * With a waste map the space left below the piece is kept as free
+ * rectangles, tried first with the best short side fit and split in two
+ * along the shorter leftover side when a piece goes in one.
+ * <p>
+ * Free slots, for {@link OpenBinIndex}, are the segments followed by the
+ * rectangles of the waste map. The free rectangle of a segment starts at
+ * the segment and spans as far right as the skyline is not higher. Every
+ * placement renews all of them.
+ */
+final class SkylinePacker implements PrimitivePacker {
+	/**
+	 * Number of values in a rectangle record: x, y, width, height.
+	 */
+	static final int RECT = 4;
+
+	/**
+	 * Number of values in a placement info record: ID, rotated flag.
+	 */
+	static final int INFO = 2;
+
+	private final double binWidth;
+
+	private final double binHeight;
+
+	/**
+	 * Whether the lowest top wins, as opposed to the least waste.
+	 */
+	private final boolean bottomLeft;
+
+	/**
+	 * Whether the space below the skyline is kept.
+	 */
+	private final boolean wasteMap;
+
+	/**
+	 * Metrics receiving the number of free rectangles after each placement.
+	 */
+	private final PackingMetrics metrics;
+
+	/**
+	 * Whether measurements are taken.
+	 */
+	private final boolean metered;
+
+	/**
+	 * Start, length and height of the skyline segments, from left to right.
+	 */
+	private double[] segmentX = new double[16];
+
+	private double[] segmentWidth = new double[16];
+
+	private double[] segmentHeight = new double[16];
+
+	private int segments;
+
+	/**
+	 * Height of the lowest segment.
+	 */
+	private double lowest;
+
+	/**
+	 * Free rectangles below the skyline, as rectangle records with y measured
+	 * from the bottom of the bin.
+	 */
+	private double[] waste = new double[RECT * 16];
+
+	private int wasteCount;
+
+	/**
+	 * Number of placements, sequence number of every free slot.
+	 */
+	private long version;
+
+	/**
+	 * Shorter and longer side of the last piece found no place for, and the
+	 * placement count then. Larger pieces find no place either until the
+	 * next placement.
+	 */
+	private double rejectedShort = Double.MAX_VALUE;
+
+	private double rejectedLong = Double.MAX_VALUE;
+
+	private long rejectedVersion = -1;
+
+	/**
+	 * Largest number of free slots so far, slots above the current ones
+	 * being left unused.
+	 */
+	private int slots = 1;
+
+	/**
+	 * Placed pieces, as rectangle records in bin coordinates.
+	 */
+	private double[] placed = new double[RECT * 16];
+
+	/**
+	 * ID and rotated flag (0 or 1) of the placed pieces.
+	 */
+	private int[] placedInfo = new int[INFO * 16];
+
+	private int placedCount;
+
+	/**
+	 * Initializes an empty packer for a bin with the specified dimensions.
+	 *
+	 * @param dimension dimensions of the bin.
+	 * @param options   options selecting the skyline engine and the
+	 *                  placement rule.
+	 */
+	SkylinePacker(Dimension dimension, PackingOptions options) {
+		binWidth = dimension.getWidth();
+		binHeight = dimension.getHeight();
+		bottomLeft = options.getPlacementRule() == PlacementRule.BOTTOM_LEFT;
+		wasteMap = options.getEngine() == PackingEngine.SKYLINE_WASTE_MAP;
+		metrics = options.getMetrics();
+		metered = metrics != PackingMetrics.DISABLED;
+		segmentWidth[0] = binWidth;
+		segments = 1;
+	}
+
+	/**
+	 * Any size is accepted.
+	 */
+	@Override
+	public boolean accepts(double width, double height) {
+		return true;
+	}
+
+	@Override
+	public int getPlacedCount() {
+		return placedCount;
+	}
+
+	/**
+	 * @return number of skyline segments and waste map rectangles.
+	 */
+	@Override
+	public int getFreeCount() {
+		return segments + wasteCount;
+	}
+
+	@Override
+	public int getFreeSlots() {
+		return slots;
+	}
+
+	@Override
+	public long getFreeSequence(int slot) {
+		return slot < segments + wasteCount ? version : -1;
+	}
+
+	@Override
+	public double getFreeWidth(int slot) {
+		if (slot >= segments) {
+			return waste[(slot - segments) * RECT + 2];
+		}
+		int right = slot;
+		while (right + 1 < segments && segmentHeight[right + 1] <= segmentHeight[slot]) {
+			right++;
+		}
+		return segmentX[right] + segmentWidth[right] - segmentX[slot];
+	}
+
+	@Override
+	public double getFreeHeight(int slot) {
+		if (slot >= segments) {
+			return waste[(slot - segments) * RECT + 3];
+		}
+		return binHeight - segmentHeight[slot];
+	}
+
+	/**
+	 * Finds the position of a piece, trying both orientations: the best
+	 * rectangle of the waste map if there is one where the piece fits, the
+	 * best skyline segment otherwise. Ties go to the first candidate and to
+	 * the unrotated orientation.
+	 *
+	 * @param width  width of the piece.
+	 * @param height height of the piece.
+	 * @return <ul>
+	 * <li><b>-1</b> if not valid position was found.</li>
+	 * <li><b>slot &lt;&lt; 1 | rotated</b> otherwise.</li>
+	 * </ul>
+	 */
+	@Override
+	public int findWhereToPlace(double width, double height) {
+		double shortSide = Math.min(width, height);
+		double longSide = Math.max(width, height);
+		if (rejectedVersion == version && shortSide >= rejectedShort && longSide >= rejectedLong) {
+			return -1;
+		}
+		int fit = find(width, height);
+		if (fit == -1) {
+			rejectedShort = shortSide;
+			rejectedLong = longSide;
+			rejectedVersion = version;
+		}
+		return fit;
+	}
+
+	private int find(double width, double height) {
+		if (wasteMap) {
+			int fit = findInWasteMap(width, height);
+			if (fit != -1) {
+				return fit;
+			}
+		}
+		// pieces too high for the lowest segment are rejected at once
+		if (Math.min(width, height) > binHeight - lowest) {
+			return -1;
+		}
+		int res = -1;
+		double bestPrimary = Double.MAX_VALUE;
+		double bestSecondary = Double.MAX_VALUE;
+		int orientations = width == height ? 1 : 2;
+		// lowest top any position can have
+		double floor = lowest + Math.min(width, height);
+		for (int i = 0; i < segments; i++) {
+			// tops a position must stay under to beat the best one, the
+			// positions further right losing the ties
+			double ceiling = bottomLeft ? bestPrimary : bestPrimary == 0 ? bestSecondary : Double.MAX_VALUE;
+			if (ceiling == floor) {
+				break;
+			}
+			double x = segmentX[i];
+			for (int rotated = 0; rotated < orientations; rotated++) {
+				double pw = rotated == 0 ? width : height;
+				double ph = rotated == 0 ? height : width;
+				if (x + pw > binWidth) {
+					continue;
+				}
+				// height of the resting point and area of the skyline under
+				// the piece
+				double y = 0;
+				double under = 0;
+				for (int j = i; j < segments && segmentX[j] < x + pw && y + ph < ceiling && y + ph <= binHeight; j++) {
+					y = Math.max(y, segmentHeight[j]);
+					under += segmentHeight[j] * (Math.min(segmentX[j] + segmentWidth[j], x + pw) - segmentX[j]);
+				}
+				if (y + ph > binHeight || y + ph >= ceiling) {
+					continue;
+				}
+				double primary = bottomLeft ? y + ph : y * pw - under;
+				double secondary = bottomLeft ? x : y + ph;
+				if (primary < bestPrimary || (primary == bestPrimary && secondary < bestSecondary)) {
+					bestPrimary = primary;
+					bestSecondary = secondary;
+					res = (i << 1) | rotated;
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Best short side fit over the waste map.
+	 */
+	private int findInWasteMap(double width, double height) {
+		int res = -1;
+		double min = Double.MAX_VALUE;
+		for (int k = 0; k < wasteCount; k++) {
+			double fw = waste[k * RECT + 2];
+			double fh = waste[k * RECT + 3];
+			if (height <= fh && width <= fw) {
+				double m = Math.min(fw - width, fh - height);
+				if (m < min) {
+					min = m;
+					res = (segments + k) << 1;
+				}
+			}
+			if (height <= fw && width <= fh) {
+				double m = Math.min(fw - height, fh - width);
+				if (m < min) {
+					min = m;
+					res = ((segments + k) << 1) | 1;
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Places a piece where {@link #findWhereToPlace} found room for it and
+	 * updates the skyline or the waste map.
+	 *
+	 * @param fit    value returned by {@link #findWhereToPlace}.
+	 * @param width  width of the piece, unrotated.
+	 * @param height height of the piece, unrotated.
+	 * @param id     ID of the piece.
+	 * @return true if the piece was placed, false if it does not fit there.
+	 */
+	@Override
+	public boolean place(int fit, double width, double height, int id) {
+		int where = fit >> 1;
+		int rotated = fit & 1;
+		if (rotated == 1) {
+			double w = width;
+			width = height;
+			height = w;
+		}
+		double x;
+		double y;
+		if (where >= segments) {
+			int o = (where - segments) * RECT;
+			x = waste[o];
+			y = waste[o + 1];
+			if (width > waste[o + 2] || height > waste[o + 3]) {
+				return false;
+			}
+			splitWaste(where - segments, width, height);
+		} else {
+			x = segmentX[where];
+			y = 0;
+			for (int j = where; j < segments && segmentX[j] < x + width; j++) {
+				y = Math.max(y, segmentHeight[j]);
+			}
+			if (x + width > binWidth || y + height > binHeight) {
+				return false;
+			}
+			raise(where, x, y, width, height);
+		}
+		version++;
+		slots = Math.max(slots, segments + wasteCount);
+		addPlaced(x, binHeight - y - height, width, height, id, rotated);
+		if (metered) {
+			metrics.record(Metric.FREE_RECTANGLES, segments + wasteCount);
+		}
+		return true;
+	}
+
+	/**
+	 * Replaces the segments under a piece resting at height y by the top of
+	 * the piece, keeping the space between them and the piece in the waste
+	 * map.
+	 */
+	private void raise(int first, double x, double y, double width, double height) {
+		double end = x + width;
+		int last = first;
+		while (last + 1 < segments && segmentX[last + 1] < end) {
+			last++;
+		}
+		if (wasteMap) {
+			for (int j = first; j <= last; j++) {
+				double w = Math.min(segmentX[j] + segmentWidth[j], end) - segmentX[j];
+				if (segmentHeight[j] < y && w > 0) {
+					addWaste(segmentX[j], segmentHeight[j], w, y - segmentHeight[j]);
+				}
+			}
+		}
+
+		double lastEnd = segmentX[last] + segmentWidth[last];
+		double lastHeight = segmentHeight[last];
+		boolean remainder = lastEnd > end;
+		resize(first, last + 1, remainder ? 2 : 1);
+		segmentX[first] = x;
+		segmentWidth[first] = width;
+		segmentHeight[first] = y + height;
+		if (remainder) {
+			segmentX[first + 1] = end;
+			segmentWidth[first + 1] = lastEnd - end;
+			segmentHeight[first + 1] = lastHeight;
+		}
+
+		// merge with the neighbours at the same height
+		if (first + 1 < segments && segmentHeight[first + 1] == segmentHeight[first]) {
+			segmentWidth[first] += segmentWidth[first + 1];
+			resize(first + 1, first + 2, 0);
+		}
+		if (first > 0 && segmentHeight[first - 1] == segmentHeight[first]) {
+			segmentWidth[first - 1] += segmentWidth[first];
+			resize(first, first + 1, 0);
+		}
+
+		lowest = segmentHeight[0];
+		for (int i = 1; i < segments; i++) {
+			lowest = Math.min(lowest, segmentHeight[i]);
+		}
+	}
+
+	/**
+	 * Replaces the segments from {@code from} to {@code to}, exclusive, by
+	 * {@code count} segments left to be filled.
+	 */
+	private void resize(int from, int to, int count) {
+		int moved = segments - to;
+		int n = segments - (to - from) + count;
+		if (n > segmentX.length) {
+			int capacity = Math.max(n, 2 * segmentX.length);
+			segmentX = copy(segmentX, capacity);
+			segmentWidth = copy(segmentWidth, capacity);
+			segmentHeight = copy(segmentHeight, capacity);
+		}
+		System.arraycopy(segmentX, to, segmentX, from + count, moved);
+		System.arraycopy(segmentWidth, to, segmentWidth, from + count, moved);
+		System.arraycopy(segmentHeight, to, segmentHeight, from + count, moved);
+		segments = n;
+	}
+
+	/**
+	 * Places a piece in the bottom left corner of a waste map rectangle and
+	 * splits what is left of it along the shorter leftover side.
+	 */
+	private void splitWaste(int k, double width, double height) {
+		int o = k * RECT;
+		double x = waste[o];
+		double y = waste[o + 1];
+		double w = waste[o + 2];
+		double h = waste[o + 3];
+		wasteCount--;
+		System.arraycopy(waste, wasteCount * RECT, waste, o, RECT);
+		if (w - width < h - height) {
+			addWaste(x + width, y, w - width, height);
+			addWaste(x, y + height, w, h - height);
+		} else {
+			addWaste(x + width, y, w - width, h);
+			addWaste(x, y + height, width, h - height);
+		}
+	}
+
+	private void addWaste(double x, double y, double w, double h) {
+		if (w <= 0 || h <= 0) {
+			return;
+		}
+		if ((wasteCount + 1) * RECT > waste.length) {
+			waste = copy(waste, waste.length * 2);
+		}
+		int o = wasteCount * RECT;
+		waste[o] = x;
+		waste[o + 1] = y;
+		waste[o + 2] = w;
+		waste[o + 3] = h;
+		wasteCount++;
+	}
+
+	private void addPlaced(double x, double y, double w, double h, int id, int rotated) {
+		if ((placedCount + 1) * RECT > placed.length) {
+			placed = copy(placed, placed.length * 2);
+			int[] grown = new int[placedInfo.length * 2];
+			System.arraycopy(placedInfo, 0, grown, 0, placedInfo.length);
+			placedInfo = grown;
+		}
+		int o = placedCount * RECT;
+		placed[o] = x;
+		placed[o + 1] = y;
+		placed[o + 2] = w;
+		placed[o + 3] = h;
+		placedInfo[placedCount * INFO] = id;
+		placedInfo[placedCount * INFO + 1] = rotated;
+		placedCount++;
+	}
+
+	private static double[] copy(double[] array, int capacity) {
+		double[] grown = new double[capacity];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	@Override
+	public Rectangle2D.Double getPlacedBounds(int i) {
+		int o = i * RECT;
+		return new Rectangle2D.Double(placed[o], placed[o + 1], placed[o + 2], placed[o + 3]);
+	}
+
+	@Override
+	public int getPlacedID(int i) {
+		return placedInfo[i * INFO];
+	}
+
+	@Override
+	public boolean isPlacedRotated(int i) {
+		return placedInfo[i * INFO + 1] == 1;
+	}
+
+	/**
+	 * The free space above the skyline as the largest rectangle over each
+	 * segment, plus the waste map, without the rectangles contained in
+	 * another one, stably sorted by area as the list of {@link Bin}.
+	 *
+	 * @return list of free rectangles.
+	 */
+	@Override
+	public List<Rectangle2D.Double> toFreeRectangles() {
+		List<Rectangle2D.Double> all = new ArrayList<>();
+		for (int i = 0; i < segments; i++) {
+			int left = i;
+			while (left > 0 && segmentHeight[left - 1] <= segmentHeight[i]) {
+				left--;
+			}
+			int right = i;
+			while (right + 1 < segments && segmentHeight[right + 1] <= segmentHeight[i]) {
+				right++;
+			}
+			double h = binHeight - segmentHeight[i];
+			if (h > 0) {
+				all.add(new Rectangle2D.Double(segmentX[left], 0, segmentX[right] + segmentWidth[right] - segmentX[left], h));
+			}
+		}
+		for (int k = 0; k < wasteCount; k++) {
+			int o = k * RECT;
+			all.add(new Rectangle2D.Double(waste[o], binHeight - waste[o + 1] - waste[o + 3], waste[o + 2], waste[o + 3]));
+		}
+
+		List<Rectangle2D.Double> rectangles = new ArrayList<>();
+		for (int i = 0; i < all.size(); i++) {
+			boolean contained = false;
+			for (int j = 0; j < all.size() && !contained; j++) {
+				// of two equal rectangles the first is kept
+				contained = j != i && all.get(j).contains(all.get(i)) && (j < i || !all.get(i).contains(all.get(j)));
+			}
+			if (!contained) {
+				rectangles.add(all.get(i));
+			}
+		}
+		rectangles.sort((a, b) -> Double.compare(a.width * a.height, b.width * b.height));
+		return rectangles;
+	}
+
+	/**
+	 * No containment tests are made.
+	 */
+	@Override
+	public long getContainmentTests() {
+		return 0;
+	}
+
+	@Override
+	public long getContainmentTestsSaved() {
+		return 0;
+	}
+}
@@ -0,0 +1,125 @@
+package main.java.org.packing.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Hands out blocks of direct memory for the off heap storage of the bins,
+ * see {@link PackingOptions#withOffHeap}. Blocks are runs of a power of two
+ * number of fixed size slabs, so a growing store moves to the next size
+ * class. Released blocks are pooled by size class for reuse, up to a limit:
+ * a long running process packing bin after bin reuses the same memory
+ * instead of allocating it again. Blocks released beyond the limit are left
+ * to the garbage collector.
+ * <p>
+ * Thread safe.
+ */
+public final class SlabAllocator {
+	/**
+	 * Size of a slab in bytes, the smallest block.
+	 */
+	public static final int SLAB_BYTES = 1 << 16;
+
+	/**
+	 * Allocator used by the bins, pooling up to 64 MiB for reuse.
+	 */
+	public static final SlabAllocator SHARED = new SlabAllocator(64L << 20);
+
+	/**
+	 * Number of size classes, up to 1 GiB blocks.
+	 */
+	private static final int CLASSES = 15;
+
+	private final long maxPooledBytes;
+
+	/**
+	 * Released blocks of each size class.
+	 */
+	private final ArrayDeque<ByteBuffer>[] pools;
+
+	private long pooledBytes;
+
+	private long allocatedBytes;
+
+	private long bytesInUse;
+
+	/**
+	 * @param maxPooledBytes bytes of released blocks kept for reuse.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public SlabAllocator(long maxPooledBytes) {
+		if (maxPooledBytes < 0) {
+			throw new IllegalArgumentException("Negative pool size: " + maxPooledBytes);
+		}
+		this.maxPooledBytes = maxPooledBytes;
+		pools = new ArrayDeque[CLASSES];
+		for (int i = 0; i < CLASSES; i++) {
+			pools[i] = new ArrayDeque<>();
+		}
+	}
+
+	/**
+	 * Gets a block of at least the specified size, in native byte order,
+	 * reused if one of its size class is pooled. Its content is undefined.
+	 *
+	 * @param bytes required size.
+	 * @return block of a power of two number of slabs.
+	 */
+	synchronized ByteBuffer acquire(long bytes) {
+		int sizeClass = sizeClass(bytes);
+		long size = (long) SLAB_BYTES << sizeClass;
+		bytesInUse += size;
+		ByteBuffer block = pools[sizeClass].pollLast();
+		if (block != null) {
+			pooledBytes -= size;
+			return block;
+		}
+		allocatedBytes += size;
+		return ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Gives a block back. It must not be used afterwards.
+	 *
+	 * @param block block returned by {@link #acquire}.
+	 */
+	synchronized void release(ByteBuffer block) {
+		int size = block.capacity();
+		bytesInUse -= size;
+		if (pooledBytes + size <= maxPooledBytes) {
+			pools[Integer.numberOfTrailingZeros(size / SLAB_BYTES)].addLast(block);
+			pooledBytes += size;
+		}
+	}
+
+	private static int sizeClass(long bytes) {
+		long slabs = Math.max(1, (bytes + SLAB_BYTES - 1) / SLAB_BYTES);
+		int sizeClass = 64 - Long.numberOfLeadingZeros(slabs - 1);
+		if (sizeClass >= CLASSES) {
+			throw new IllegalArgumentException("Block too large: " + bytes + " bytes");
+		}
+		return sizeClass;
+	}
+
+	/**
+	 * @return bytes allocated since the allocator was created.
+	 */
+	public synchronized long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return bytes held by bins that have not been closed.
+	 */
+	public synchronized long getBytesInUse() {
+		return bytesInUse;
+	}
+
+	/**
+	 * @return bytes kept for reuse.
+	 */
+	public synchronized long getPooledBytes() {
+		return pooledBytes;
+	}
+}
@@ -0,0 +1,42 @@
+package main.java.org.packing.core;
+
+/**
+ * Growable list of free rectangle slots, reused between queries to avoid
+ * allocations.
+ */
+final class SlotList {
+	int[] slots = new int[16];
+
+	int size;
+
+	void add(int slot) {
+		if (size == slots.length) {
+			int[] grown = new int[size * 2];
+			System.arraycopy(slots, 0, grown, 0, size);
+			slots = grown;
+		}
+		slots[size++] = slot;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Sorts the slots in the area sorted list order of the free rectangles.
+	 * Query results are small, so an insertion sort is enough.
+	 *
+	 * @param rectangles store holding the slots.
+	 */
+	void sortByListOrder(FreeRectangles rectangles) {
+		for (int i = 1; i < size; i++) {
+			int slot = slots[i];
+			int j = i - 1;
+			while (j >= 0 && rectangles.after(slots[j], slot)) {
+				slots[j + 1] = slots[j];
+				j--;
+			}
+			slots[j + 1] = slot;
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package main.java.org.packing.main;
+
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.LowerBounds;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.primitives.PieceType;
+import main.java.org.packing.utils.LayoutFile;
+import main.java.org.packing.utils.PieceList;
+import main.java.org.packing.utils.PlacementList;
+import main.java.org.packing.utils.Utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Packs many independent order files in parallel.
+ * <p>
+ * Orders are read, packed and written by the worker threads, and the thread
+ * submitting them blocks while the maximum number of orders is in flight,
+ * so memory is bounded whatever the size of the batch. The layout of each
+ * order is written as a {@link LayoutFile} named after the order, plus one
+ * PNG per bin if asked for. An order that fails is reported and does not
+ * stop the batch. The latency of an order runs from the moment a worker
+ * picks it up until its layout is written.
+ * <p>
+ * Usage: {@code BatchRunner <directory|manifest> <outputDirectory> [threads]
+ * [maxInFlight] [png]}; a directory is searched for {@code *.txt} orders, a
+ * manifest lists one order file per line.
+ */
+public class BatchRunner {
+
+    private final int threads;
+
+    private final int maxInFlight;
+
+    private final PackingOptions options;
+
+    private final boolean png;
+
+    /**
+     * @param threads     worker threads.
+     * @param maxInFlight maximum number of orders read but not yet written,
+     *                    at least threads.
+     * @param options     options controlling how pieces are packed.
+     * @param png         whether to draw every bin to a PNG file.
+     */
+    public BatchRunner(int threads, int maxInFlight, PackingOptions options, boolean png) {
+        if (threads < 1 || maxInFlight < threads) {
+            throw new IllegalArgumentException("Need at least one thread and as many orders in flight: " + threads
+                    + " threads, " + maxInFlight + " in flight");
+        }
+        this.threads = threads;
+        this.maxInFlight = maxInFlight;
+        this.options = options;
+        this.png = png;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchRunner <directory|manifest> <outputDirectory> [threads] [maxInFlight] [png]");
+            System.exit(2);
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int maxInFlight = args.length > 3 ? Integer.parseInt(args[3]) : 2 * threads;
+        boolean png = args.length > 4 && Boolean.parseBoolean(args[4]);
+        Path output = Paths.get(args[1]);
+        Files.createDirectories(output);
+
+        Report report = new BatchRunner(threads, maxInFlight, PackingOptions.DEFAULT, png)
+                .run(orders(Paths.get(args[0])), output);
+        System.out.println(report);
+    }
+
+    /**
+     * Lists the order files of a directory or a manifest.
+     *
+     * @param source directory of {@code *.txt} orders, or manifest file with
+     *               one order per line, relative to the manifest.
+     * @return order files, sorted for a directory, in manifest order
+     * otherwise.
+     * @throws IOException if the source cannot be read.
+     */
+    public static List<Path> orders(Path source) throws IOException {
+        List<Path> orders = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(source, "*.txt")) {
+                for (Path order : stream) {
+                    orders.add(order);
+                }
+            }
+            Collections.sort(orders);
+        } else {
+            Path base = source.toAbsolutePath().getParent();
+            for (String line : Files.readAllLines(source)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    orders.add(base.resolve(line));
+                }
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Packs the orders and writes their layouts.
+     *
+     * @param orders order files.
+     * @param output existing directory receiving the layouts.
+     * @return latencies, throughput and failures of the batch.
+     * @throws InterruptedException if interrupted while waiting for the
+     *                              workers.
+     */
+    public Report run(List<Path> orders, Path output) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        // the semaphore bounds the queue, which never rejects
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxInFlight));
+        long[] latencies = new long[orders.size()];
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong pieces = new AtomicLong();
+        AtomicLong bins = new AtomicLong();
+        AtomicLong lowerBound = new AtomicLong();
+        AtomicLong optimal = new AtomicLong();
+
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < orders.size(); i++) {
+                int index = i;
+                Path order = orders.get(i);
+                inFlight.acquire();
+                executor.execute(() -> {
+                    long begin = System.nanoTime();
+                    try {
+                        PieceList list = Utils.loadPieces(order);
+                        PieceType[] toPack = list.toPieceTypes();
+                        int bound = LowerBounds.lowerBound(toPack, list.getBinDimension());
+                        Bin[] packed = BinPacking.BlockPackingStrategy(toPack, list.getBinDimension(), options);
+                        write(packed, output, name(order));
+                        pieces.addAndGet(list.getPieceCount());
+                        bins.addAndGet(packed.length);
+                        lowerBound.addAndGet(bound);
+                        if (packed.length <= bound) {
+                            optimal.incrementAndGet();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        failures.add(order + ": " + e);
+                    } finally {
+                        latencies[index] = System.nanoTime() - begin;
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        return new Report(latencies, System.nanoTime() - start, pieces.get(), bins.get(), lowerBound.get(),
+                optimal.get(), failures);
+    }
+
+    private void write(Bin[] packed, Path output, String name) throws IOException {
+        LayoutFile.writePlacements(output.resolve(name + ".bpak"), PlacementList.of(packed));
+        if (png) {
+            for (int i = 0; i < packed.length; i++) {
+                Utils.drawMAreasToFile(Arrays.asList(packed[i].getPlacedPieces()), packed[i].getDimension(),
+                        output.resolve(name + "-Bin-" + (i + 1)).toString());
+            }
+        }
+    }
+
+    private static String name(Path order) {
+        String name = order.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Outcome of a batch.
+     */
+    public static class Report {
+
+        private final long[] sortedLatencies;
+
+        private final long wallNanos;
+
+        private final long pieces;
+
+        private final long bins;
+
+        private final long lowerBound;
+
+        private final long optimal;
+
+        private final List<String> failures;
+
+        Report(long[] latencies, long wallNanos, long pieces, long bins, long lowerBound, long optimal,
+               List<String> failures) {
+            this.sortedLatencies = latencies.clone();
+            Arrays.sort(sortedLatencies);
+            this.wallNanos = wallNanos;
+            this.pieces = pieces;
+            this.bins = bins;
+            this.lowerBound = lowerBound;
+            this.optimal = optimal;
+            this.failures = new ArrayList<>(failures);
+        }
+
+        /**
+         * @param p percentile, between 0 and 100.
+         * @return latency of an order at that percentile, in nanoseconds,
+         * nearest rank; 0 for an empty batch.
+         */
+        public long getLatencyPercentile(double p) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p / 100 * sortedLatencies.length);
+            return sortedLatencies[Math.max(0, Math.min(sortedLatencies.length - 1, rank - 1))];
+        }
+
+        public int getOrders() {
+            return sortedLatencies.length;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getPieces() {
+            return pieces;
+        }
+
+        public long getBins() {
+            return bins;
+        }
+
+        /**
+         * @return sum of the lower bounds of the packed orders.
+         */
+        public long getLowerBound() {
+            return lowerBound;
+        }
+
+        /**
+         * @return packed orders using as few bins as their lower bound.
+         */
+        public long getOptimalOrders() {
+            return optimal;
+        }
+
+        /**
+         * @return extra bins over the lower bounds, relative to them.
+         */
+        public double getGap() {
+            return LowerBounds.gap(bins, lowerBound);
+        }
+
+        public List<String> getFailures() {
+            return Collections.unmodifiableList(failures);
+        }
+
+        /**
+         * @return orders per second over the whole batch.
+         */
+        public double getThroughput() {
+            return getOrders() * 1e9 / Math.max(wallNanos, 1);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d orders (%d failed), %d pieces, %d bins in %.2f s: %.1f orders/s, %.0f pieces/s%n",
+                    getOrders(), failures.size(), pieces, bins, wallNanos / 1e9, getThroughput(),
+                    pieces * 1e9 / Math.max(wallNanos, 1)));
+            sb.append(String.format("latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    getLatencyPercentile(50) / 1e6, getLatencyPercentile(90) / 1e6, getLatencyPercentile(99) / 1e6,
+                    getLatencyPercentile(100) / 1e6));
+            sb.append(String.format("%nlower bound %d bins, gap %.2f %%, %d orders at the bound", lowerBound,
+                    100 * getGap(), optimal));
+            for (String failure : failures) {
+                sb.append(String.format("%nfailed: %s", failure));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -5,10 +5,16 @@ package main.java.org.packing.main;
 import main.java.org.packing.core.Bin;
 import main.java.org.packing.core.BinPacking;
 import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.utils.LayoutFile;
+import main.java.org.packing.utils.PieceList;
+import main.java.org.packing.utils.PlacementList;
 import main.java.org.packing.utils.Utils;
 
 import java.awt.*;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -16,30 +22,42 @@ import java.util.List;
 
 public class Example {
 
+    /**
+     * Usage: {@code Example [orderFile] [outputDirectory]}. The bins are
+     * drawn as PNG files in the current directory, or in the output
+     * directory along with the layout file {@code Layout.bpak} when one is
+     * given.
+     */
     public static void main(String[] args) throws IOException {
         Example ex = new Example();
 
-        ex.launch("E://projects/2D-Bin-Packing/src/main/resources/Rectangles.txt");
+        String fileName = args.length > 0 ? args[0] : "E://projects/2D-Bin-Packing/src/main/resources/Rectangles.txt";
+        ex.launch(fileName, args.length > 1 ? Paths.get(args[1]) : null);
     }
 
-    private void launch(String fileName) throws IOException {
-        InputStream in = new BufferedInputStream(new FileInputStream(fileName));
-        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-        Object[] result = Utils.loadPieces(reader);
+    private void launch(String fileName, Path output) throws IOException {
+        PieceList result = Utils.loadPieces(Paths.get(fileName));
 
-        Dimension binDimension = (Dimension) result[0];
-        MArea[] pieces = (MArea[]) result[1];
+        Dimension binDimension = result.getBinDimension();
+        MArea[] pieces = result.toMAreas();
 
         Bin[] bins = BinPacking.BinPackingStrategy(pieces, binDimension);
-        drawbinToFile(bins);
+        if (output == null) {
+            drawbinToFile(bins, Paths.get(""));
+        } else {
+            Files.createDirectories(output);
+            drawbinToFile(bins, output);
+            LayoutFile.writePlacements(output.resolve("Layout.bpak"), PlacementList.of(bins));
+        }
     }
 
-    private void drawbinToFile(Bin[] bins) throws IOException {
+    private void drawbinToFile(Bin[] bins, Path directory) throws IOException {
         for (int i = 0; i < bins.length; i++) {
 
             MArea[] areasInThisbin = bins[i].getPlacedPieces();
             List<MArea> areas = new ArrayList<>(Arrays.asList(areasInThisbin));
-            Utils.drawMAreasToFile(areas, bins[i].getDimension(), ("Bin-" + String.valueOf(i + 1)));
+            Utils.drawMAreasToFile(areas, bins[i].getDimension(),
+                    directory.resolve("Bin-" + String.valueOf(i + 1)).toString());
         }
     }
 
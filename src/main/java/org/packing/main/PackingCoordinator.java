@@ -0,0 +1,606 @@
+package main.java.org.packing.main;
+
+
+
+import main.java.org.packing.core.LowerBounds;
+import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.primitives.PieceType;
+import main.java.org.packing.utils.LayoutFile;
+import main.java.org.packing.utils.PackingProtocol;
+import main.java.org.packing.utils.PieceList;
+import main.java.org.packing.utils.PlacementList;
+import main.java.org.packing.utils.Utils;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Packs a batch of orders on {@link PackingWorker} processes connected over
+ * TCP, for batches too large for a single JVM.
+ * <p>
+ * Orders are read one at a time as workers ask for work. An order with more
+ * pieces than the shard size is split into shards, each getting an even
+ * share of the copies of every piece, which are packed on their own and
+ * whose bins are put together; sharding trades a few bins for wall time. A
+ * worker receives one task, a shard or a whole order, at a time, and sends
+ * back each bin as soon as it is filled.
+ * <p>
+ * A worker is lost when its connection breaks or it stays silent longer
+ * than the timeout. Its task is then handed to another worker, keeping the
+ * bins already received and sending only the pieces they do not hold. A
+ * task lost {@link #MAX_ATTEMPTS} times fails its order, as does a task
+ * whose worker reports an error. The layout of each order is written as a
+ * {@link LayoutFile} named after the order, like {@link BatchRunner}.
+ * <p>
+ * The coordinator listens on the loopback interface only. It can start
+ * worker JVMs itself, with the same class path and JVM options.
+ * <p>
+ * Usage: {@code PackingCoordinator <directory|manifest> <outputDirectory>
+ * [port] [localWorkers] [shardPieces]}; port 0, the default, picks a free
+ * port, which is printed for workers started by hand.
+ */
+public class PackingCoordinator {
+
+    /**
+     * Times a task may be lost with its worker before its order fails.
+     */
+    public static final int MAX_ATTEMPTS = 3;
+
+    private final int port;
+
+    private final int shardPieces;
+
+    private final int timeoutMillis;
+
+    private List<Path> orders;
+
+    private Path output;
+
+    /**
+     * Tasks waiting for a worker, guarded by this.
+     */
+    private final Deque<Task> pending = new ArrayDeque<>();
+
+    /**
+     * Orders read or being read, guarded by this.
+     */
+    private int read;
+
+    /**
+     * Orders written or failed, guarded by this.
+     */
+    private int finished;
+
+    /**
+     * ID of the next task, guarded by this.
+     */
+    private long nextTask;
+
+    private long[] latencies;
+
+    private long pieces;
+
+    private long bins;
+
+    private long lowerBound;
+
+    private long optimal;
+
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * @param port          port to listen on, 0 for any free port.
+     * @param shardPieces   largest number of pieces sent to a worker at once.
+     * @param timeoutMillis longest silence of a worker packing a task before
+     *                      it is considered dead, at least a few
+     *                      {@link PackingWorker#HEARTBEAT_MILLIS}.
+     */
+    public PackingCoordinator(int port, int shardPieces, int timeoutMillis) {
+        if (shardPieces < 1 || timeoutMillis <= PackingWorker.HEARTBEAT_MILLIS) {
+            throw new IllegalArgumentException("Need at least one piece per shard and a timeout above the heartbeat: "
+                    + shardPieces + " pieces, " + timeoutMillis + " ms");
+        }
+        this.port = port;
+        this.shardPieces = shardPieces;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: PackingCoordinator <directory|manifest> <outputDirectory> [port] [localWorkers]"
+                    + " [shardPieces]");
+            System.exit(2);
+        }
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int localWorkers = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        int shardPieces = args.length > 4 ? Integer.parseInt(args[4]) : Integer.MAX_VALUE;
+        Path output = Paths.get(args[1]);
+        Files.createDirectories(output);
+
+        BatchRunner.Report report = new PackingCoordinator(port, shardPieces, 10_000)
+                .run(BatchRunner.orders(Paths.get(args[0])), output, localWorkers);
+        System.out.println(report);
+    }
+
+    /**
+     * Packs the orders on the workers connecting to this coordinator and
+     * writes their layouts. Returns once every order is written or failed,
+     * which needs at least one worker.
+     *
+     * @param orders       order files.
+     * @param output       existing directory receiving the layouts.
+     * @param localWorkers worker JVMs to start on this machine.
+     * @return latencies, throughput and failures of the batch.
+     * @throws IOException          if the port cannot be opened or the
+     *                              workers cannot be started.
+     * @throws InterruptedException if interrupted while waiting for the
+     *                              workers.
+     */
+    public BatchRunner.Report run(List<Path> orders, Path output, int localWorkers)
+            throws IOException, InterruptedException {
+        synchronized (this) {
+            this.orders = orders;
+            this.output = output;
+            latencies = new long[orders.size()];
+        }
+        List<Process> processes = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Coordinator listening on port " + server.getLocalPort());
+            Thread acceptor = new Thread(() -> accept(server), "coordinator");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            for (int i = 0; i < localWorkers; i++) {
+                processes.add(startWorker(server.getLocalPort()));
+            }
+            synchronized (this) {
+                while (finished < orders.size()) {
+                    wait();
+                }
+            }
+        } finally {
+            for (Process process : processes) {
+                if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    process.destroy();
+                }
+            }
+        }
+        synchronized (this) {
+            return new BatchRunner.Report(latencies, System.nanoTime() - start, pieces, bins, lowerBound, optimal,
+                    failures);
+        }
+    }
+
+    private Process startWorker(int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PackingWorker.class.getName());
+        command.add(InetAddress.getLoopbackAddress().getHostAddress());
+        command.add(Integer.toString(port));
+        return new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).redirectInput(new File(nullDevice())).start();
+    }
+
+    private static String nullDevice() {
+        return System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null";
+    }
+
+    private void accept(ServerSocket server) {
+        while (true) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                // closed once the batch is done
+                return;
+            }
+            Thread thread = new Thread(() -> serve(socket), "worker " + socket.getRemoteSocketAddress());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Hands tasks to one worker until there are no more, or the worker is
+     * lost.
+     */
+    private void serve(Socket socket) {
+        Task task = null;
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(timeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            PackingProtocol.Frame hello = PackingProtocol.read(in);
+            if (hello == null) {
+                return;
+            }
+            hello.checkHello();
+            while ((task = nextTask()) != null) {
+                PackingProtocol.writeTask(out, task.id, task.order.binDimension, task.types);
+                Order done = receive(in, task);
+                task = null;
+                if (done != null) {
+                    finish(done);
+                }
+            }
+            PackingProtocol.writeShutdown(out);
+        } catch (IOException e) {
+            if (task != null) {
+                lost(task, socket.getRemoteSocketAddress() + ": " + e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the messages of a worker until it ends a task.
+     *
+     * @return the order of the task if it is now complete, null otherwise.
+     */
+    private Order receive(DataInputStream in, Task task) throws IOException {
+        while (true) {
+            PackingProtocol.Frame frame = PackingProtocol.read(in);
+            if (frame == null) {
+                throw new IOException("Connection closed");
+            }
+            if (frame.getType() == PackingProtocol.HELLO || frame.getType() == PackingProtocol.TASK
+                    || frame.getType() == PackingProtocol.SHUTDOWN || frame.getTask() != task.id) {
+                throw new IOException("Unexpected message type " + frame.getType());
+            }
+            switch (frame.getType()) {
+                case PackingProtocol.PROGRESS:
+                    break;
+                case PackingProtocol.BIN:
+                    PlacementList bin = frame.getPlacements(task.order.binDimension);
+                    synchronized (this) {
+                        task.bins.add(bin);
+                    }
+                    break;
+                case PackingProtocol.DONE:
+                    return completed(task, null);
+                default:
+                    return completed(task, frame.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the next task to send, reading the next order if no task is
+     * waiting. Orders are read and sharded outside the monitor, so other
+     * workers keep receiving tasks and sending bins meanwhile.
+     *
+     * @return the next task to send, null once every order is finished.
+     */
+    private Task nextTask() throws InterruptedException {
+        while (true) {
+            int index;
+            synchronized (this) {
+                while (true) {
+                    if (!pending.isEmpty()) {
+                        return pending.poll();
+                    }
+                    if (read < orders.size()) {
+                        index = read++;
+                        break;
+                    }
+                    if (finished == orders.size()) {
+                        return null;
+                    }
+                    // a task still running, or an order being read, may come
+                    wait();
+                }
+            }
+            load(index);
+        }
+    }
+
+    /**
+     * Reads an order and queues its shards. Only the queueing holds the
+     * monitor.
+     */
+    private void load(int index) {
+        Path path = orders.get(index);
+        Order order = new Order(index, path);
+        try {
+            PieceList list = Utils.loadPieces(path);
+            PieceType[] types = list.toPieceTypes();
+            order.binDimension = list.getBinDimension();
+            order.pieces = list.getPieceCount();
+            order.lowerBound = LowerBounds.lowerBound(types, order.binDimension);
+            List<PieceType[]> shards = shard(types, list.getPieceCount());
+            if (!shards.isEmpty()) {
+                synchronized (this) {
+                    order.tasks = new Task[shards.size()];
+                    order.remaining = shards.size();
+                    for (int s = 0; s < shards.size(); s++) {
+                        order.tasks[s] = new Task(nextTask++, order, shards.get(s));
+                        pending.add(order.tasks[s]);
+                    }
+                    notifyAll();
+                }
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            order.failure = e.toString();
+        }
+        finish(order);
+    }
+
+    /**
+     * Splits an order into shards of at most the shard size, each with an
+     * even share of every piece type.
+     */
+    private List<PieceType[]> shard(PieceType[] types, int count) {
+        int k = (int) Math.max(1, ((long) count + shardPieces - 1) / shardPieces);
+        List<List<PieceType>> shards = new ArrayList<>();
+        for (int s = 0; s < k; s++) {
+            shards.add(new ArrayList<>());
+        }
+        // the shard receiving the larger shares turns from type to type
+        int first = 0;
+        for (PieceType type : types) {
+            int q = type.getQuantity();
+            int id = type.getID(0);
+            for (int j = 0; j < k; j++) {
+                int share = q / k + (j < q % k ? 1 : 0);
+                if (share > 0) {
+                    shards.get((first + j) % k).add(copies(type, id, share));
+                    id += share;
+                }
+            }
+            first = (first + q % k) % k;
+        }
+        List<PieceType[]> result = new ArrayList<>();
+        for (List<PieceType> shard : shards) {
+            if (!shard.isEmpty()) {
+                result.add(shard.toArray(new PieceType[0]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return copies of a piece type, from an ID.
+     */
+    private static PieceType copies(PieceType type, int id, int quantity) {
+        Rectangle2D bounds = type.getPiece().getBounds2D();
+        return new PieceType(new MArea(new Rectangle2D.Double(0, 0, bounds.getWidth(), bounds.getHeight()), id),
+                quantity);
+    }
+
+    /**
+     * Ends a task.
+     *
+     * @param failure error reported by the worker, null on success.
+     * @return the order of the task if it is now complete, null otherwise.
+     */
+    private synchronized Order completed(Task task, String failure) {
+        Order order = task.order;
+        if (failure != null && order.failure == null) {
+            order.failure = failure;
+        }
+        return --order.remaining == 0 ? order : null;
+    }
+
+    /**
+     * Hands the rest of the task of a lost worker to another worker.
+     */
+    private void lost(Task task, String reason) {
+        Order done;
+        synchronized (this) {
+            System.err.println("Lost worker " + reason + ", task " + task.id + " had " + task.bins.size() + " bins");
+            PieceType[] rest = remaining(task);
+            if (rest.length == 0) {
+                done = completed(task, null);
+            } else if (++task.attempts >= MAX_ATTEMPTS) {
+                done = completed(task, "task lost with " + MAX_ATTEMPTS + " workers, last " + reason);
+            } else {
+                task.types = rest;
+                pending.addFirst(task);
+                notifyAll();
+                return;
+            }
+        }
+        if (done != null) {
+            finish(done);
+        }
+    }
+
+    /**
+     * @return the pieces of a task which are in none of its bins yet.
+     */
+    private static PieceType[] remaining(Task task) {
+        int n = 0;
+        for (PlacementList bin : task.bins) {
+            n += bin.size();
+        }
+        int[] placed = new int[n];
+        n = 0;
+        for (PlacementList bin : task.bins) {
+            for (int i = 0; i < bin.size(); i++) {
+                placed[n++] = bin.getID(i);
+            }
+        }
+        Arrays.sort(placed);
+        List<PieceType> rest = new ArrayList<>();
+        for (PieceType type : task.types) {
+            // runs of IDs between the placed ones
+            int id = type.getID(0);
+            int end = type.getID(type.getQuantity());
+            for (int p = lowerIndex(placed, id); id < end; p++) {
+                int next = p < placed.length ? Math.min(placed[p], end) : end;
+                if (next > id) {
+                    rest.add(copies(type, id, next - id));
+                }
+                id = next + 1;
+            }
+        }
+        return rest.toArray(new PieceType[0]);
+    }
+
+    /**
+     * @return index of the first value at least key.
+     */
+    private static int lowerIndex(int[] sorted, int key) {
+        int i = Arrays.binarySearch(sorted, key);
+        if (i < 0) {
+            return -i - 1;
+        }
+        while (i > 0 && sorted[i - 1] == key) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Writes the layout of a complete order and records it in the report.
+     */
+    private void finish(Order order) {
+        long packed = 0;
+        if (order.failure == null) {
+            List<PlacementList> all = new ArrayList<>();
+            synchronized (this) {
+                for (Task task : order.tasks) {
+                    all.addAll(task.bins);
+                }
+            }
+            try {
+                PlacementList layout = merge(order.binDimension, all);
+                LayoutFile.writePlacements(output.resolve(name(order.path) + ".bpak"), layout);
+                packed = all.size();
+            } catch (IOException | RuntimeException e) {
+                order.failure = e.toString();
+            }
+        }
+        synchronized (this) {
+            if (order.failure != null) {
+                failures.add(order.path + ": " + order.failure);
+            } else {
+                pieces += order.pieces;
+                bins += packed;
+                lowerBound += order.lowerBound;
+                if (packed <= order.lowerBound) {
+                    optimal++;
+                }
+            }
+            latencies[order.index] = System.nanoTime() - order.start;
+            finished++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return the placements of the bins, numbered in list order.
+     */
+    private static PlacementList merge(Dimension binDimension, List<PlacementList> bins) {
+        int n = 0;
+        for (PlacementList bin : bins) {
+            n += bin.size();
+        }
+        int[] indices = new int[n];
+        int[] ids = new int[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        byte[] quarterTurns = new byte[n];
+        int k = 0;
+        for (int b = 0; b < bins.size(); b++) {
+            PlacementList bin = bins.get(b);
+            for (int i = 0; i < bin.size(); i++, k++) {
+                indices[k] = b;
+                ids[k] = bin.getID(i);
+                xs[k] = bin.getX(i);
+                ys[k] = bin.getY(i);
+                quarterTurns[k] = (byte) bin.getQuarterTurns(i);
+            }
+        }
+        return new PlacementList(binDimension, indices, ids, xs, ys, quarterTurns, n);
+    }
+
+    private static String name(Path order) {
+        String name = order.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * An order being packed.
+     */
+    private static class Order {
+        final int index;
+
+        final Path path;
+
+        final long start = System.nanoTime();
+
+        Dimension binDimension;
+
+        int pieces;
+
+        int lowerBound;
+
+        Task[] tasks = new Task[0];
+
+        /**
+         * Tasks not yet ended.
+         */
+        int remaining;
+
+        String failure;
+
+        Order(int index, Path path) {
+            this.index = index;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Pieces of an order sent to one worker at a time, and the bins received
+     * for them.
+     */
+    private static class Task {
+        final long id;
+
+        final Order order;
+
+        /**
+         * Pieces still to pack, less than the whole shard once a worker was
+         * lost.
+         */
+        PieceType[] types;
+
+        final List<PlacementList> bins = new ArrayList<>();
+
+        int attempts;
+
+        Task(long id, Order order, PieceType[] types) {
+            this.id = id;
+            this.order = order;
+            this.types = types;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package main.java.org.packing.main;
+
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.Metric;
+import main.java.org.packing.core.PackingEngine;
+import main.java.org.packing.core.PackingMetrics;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.primitives.PieceType;
+import main.java.org.packing.utils.PackingProtocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Packs the tasks sent by a {@link PackingCoordinator}, one at a time.
+ * <p>
+ * Each filled bin is sent back as soon as it is filled, so that the
+ * coordinator keeps it if the worker dies, and the progress of the task is
+ * sent every {@link #HEARTBEAT_MILLIS} to show that the worker is alive.
+ * The worker stops when told to, when the coordinator goes away, or as soon
+ * as a message cannot be sent.
+ * <p>
+ * Usage: {@code PackingWorker <host> <port> [engine]}.
+ */
+public class PackingWorker {
+
+    /**
+     * Interval between two progress messages while packing, in
+     * milliseconds.
+     */
+    public static final long HEARTBEAT_MILLIS = 1000;
+
+    private final PackingOptions options;
+
+    /**
+     * ID of the task being packed, -1 when idle.
+     */
+    private volatile long task = -1;
+
+    private volatile int bins;
+
+    private volatile int pieces;
+
+    /**
+     * @param options options controlling how pieces are packed; their
+     *                metrics are replaced.
+     */
+    public PackingWorker(PackingOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PackingWorker <host> <port> [engine]");
+            System.exit(2);
+        }
+        PackingOptions options = PackingOptions.DEFAULT;
+        if (args.length > 2) {
+            options = options.withEngine(PackingEngine.valueOf(args[2]));
+        }
+        new PackingWorker(options).run(args[0], Integer.parseInt(args[1]));
+    }
+
+    /**
+     * Connects to a coordinator and packs its tasks until told to stop.
+     *
+     * @param host host of the coordinator.
+     * @param port port of the coordinator.
+     * @throws IOException if the coordinator cannot be reached or the
+     *                     connection is lost.
+     */
+    public void run(String host, int port) throws IOException {
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            PackingProtocol.writeHello(out);
+            heartbeat.scheduleAtFixedRate(() -> sendProgress(out), HEARTBEAT_MILLIS, HEARTBEAT_MILLIS,
+                    TimeUnit.MILLISECONDS);
+
+            PackingProtocol.Frame frame;
+            while ((frame = PackingProtocol.read(in)) != null && frame.getType() != PackingProtocol.SHUTDOWN) {
+                if (frame.getType() != PackingProtocol.TASK) {
+                    throw new IOException("Unexpected message type " + frame.getType());
+                }
+                pack(frame, out);
+            }
+        } finally {
+            heartbeat.shutdownNow();
+        }
+    }
+
+    private void pack(PackingProtocol.Frame frame, OutputStream out) throws IOException {
+        long id = frame.getTask();
+        PieceType[] types = frame.getPieceTypes();
+        bins = 0;
+        pieces = 0;
+        task = id;
+        PackingMetrics metrics = new PackingMetrics() {
+            @Override
+            public void count(Metric metric, long delta) {
+            }
+
+            @Override
+            public void record(Metric metric, long value) {
+            }
+
+            @Override
+            public void binPacked(Bin bin, long nanos) {
+                try {
+                    synchronized (out) {
+                        PackingProtocol.writeBin(out, id, bin);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                bins++;
+                pieces += bin.getPlacedCount();
+            }
+        };
+        try {
+            BinPacking.BlockPackingStrategy(types, frame.getBinDimension(), options.withMetrics(metrics));
+            synchronized (out) {
+                task = -1;
+                PackingProtocol.writeDone(out, id, bins);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            synchronized (out) {
+                task = -1;
+                PackingProtocol.writeFailed(out, id, e.toString());
+            }
+        }
+    }
+
+    private void sendProgress(OutputStream out) {
+        try {
+            // under the lock, so that no progress follows the end of the task
+            synchronized (out) {
+                if (task >= 0) {
+                    PackingProtocol.writeProgress(out, task, bins, pieces);
+                }
+            }
+        } catch (IOException e) {
+            // the packing thread fails on its next message
+        }
+    }
+}
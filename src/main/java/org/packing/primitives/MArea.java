@@ -6,12 +6,38 @@ import java.awt.*;
 import java.awt.geom.*;
 import java.util.Comparator;
 
+/**
+ * Area with an ID, an area measure and an accumulated rotation.
+ * <p>
+ * Translations and quarter turn rotations are not applied to the geometry
+ * right away: they are accumulated in a pending pose, and the bounding box
+ * is moved along with it, so pieces can be rotated and moved around while
+ * searching for a place without rewriting their curves. The pose is applied
+ * the first time the transformed geometry is needed, by an operation of this
+ * MArea or by an MArea operation taking it as argument. Plain {@link Area}
+ * operations and constructors read the geometry of their arguments directly,
+ * so {@link #materialize()} must be called before handing an MArea to them.
+ * The bins call it on their pieces when they are closed and before handing
+ * them out, so packing results never carry a pending pose.
+ */
 public class MArea extends Area {
     /**
-     * Area measure.
+     * Area measure, NaN while it has to be computed again from the geometry.
      */
     private double area;
 
+    /**
+     * Transform still to be applied to the geometry, null if none. Only
+     * holds translations, scales and quarter turn rotations.
+     */
+    private AffineTransform pose;
+
+    /**
+     * Bounding box of the posed geometry. Replaced, never modified, so it
+     * can be shared between copies.
+     */
+    private Rectangle2D.Double bounds;
+
     private int ID;
     /**
      * Accumulate rotation in degrees of this MArea
@@ -28,6 +54,8 @@ public class MArea extends Area {
         super(path);
         this.ID = ID;
         rotation = 0;
+        bounds = (Rectangle2D.Double) super.getBounds2D();
+        area = measure(super.getPathIterator(null));
     }
 
     /**
@@ -41,6 +69,21 @@ public class MArea extends Area {
         this.area = area.area;
         this.ID = ID;
         rotation = area.getRotation();
+        pose = area.pose == null ? null : new AffineTransform(area.pose);
+        bounds = area.bounds;
+    }
+
+    /**
+     * Creates an MArea based on a MArea previously constructed, with a
+     * different accumulated rotation
+     *
+     * @param area     MArea from which we are going to construct this MArea
+     * @param ID       identification for this MArea
+     * @param rotation accumulated rotation in degrees of this MArea
+     */
+    public MArea(MArea area, int ID, double rotation) {
+        this(area, ID);
+        this.rotation = rotation;
     }
 
     /**
@@ -55,6 +98,7 @@ public class MArea extends Area {
         this.area = rectangle.getWidth() * rectangle.getHeight();
         this.ID = ID;
         rotation = 0;
+        bounds = (Rectangle2D.Double) super.getBounds2D();
     }
 
     /**
@@ -70,6 +114,21 @@ public class MArea extends Area {
         this.area = rectangle.getWidth() * rectangle.getHeight();
         this.ID = ID;
         rotation = 0;
+        bounds = (Rectangle2D.Double) super.getBounds2D();
+    }
+
+    /**
+     * Creates an MArea based on a double precision Rectangle that is the
+     * result of rotating another piece
+     *
+     * @param rectangle from which we are going to construct this MArea
+     * @param ID        identification for this MArea
+     * @param rotation  accumulated rotation in degrees of this MArea
+     * @see Rectangle2D.Double
+     */
+    public MArea(Rectangle2D.Double rectangle, int ID, double rotation) {
+        this(rectangle, ID);
+        this.rotation = rotation;
     }
 
     /**
@@ -82,6 +141,7 @@ public class MArea extends Area {
         this.area = 0;
         this.ID = ID;
         rotation = 0;
+        bounds = new Rectangle2D.Double();
     }
 
     /**
@@ -91,6 +151,7 @@ public class MArea extends Area {
         super();
         this.area = 0;
         rotation = 0;
+        bounds = new Rectangle2D.Double();
     }
 
     /**
@@ -103,6 +164,8 @@ public class MArea extends Area {
         super(MAreaHolesConstructor(outer, inner));
         this.ID = outer.getID();
         rotation = 0;
+        bounds = (Rectangle2D.Double) super.getBounds2D();
+        area = measure(super.getPathIterator(null));
     }
 
     private static MArea MAreaHolesConstructor(MArea outer, MArea inner) {
@@ -119,7 +182,7 @@ public class MArea extends Area {
      * @return Bounding box rectangle of this MArea in integer precision.
      */
     public Rectangle getBoundingBox() {
-        return (Rectangle) this.getBounds();
+        return bounds.getBounds();
     }
 
     /**
@@ -129,7 +192,7 @@ public class MArea extends Area {
      * @see Rectangle2D.Double
      */
     public Rectangle2D.Double getBoundingBox2D() {
-        return (Rectangle2D.Double) this.getBounds2D();
+        return new Rectangle2D.Double(bounds.x, bounds.y, bounds.width, bounds.height);
     }
 
 
@@ -137,9 +200,97 @@ public class MArea extends Area {
      * @return area measure of this MArea
      */
     public double getArea() {
+        if (Double.isNaN(area)) {
+            area = measure(getPathIterator(null));
+        }
         return area;
     }
 
+    /**
+     * Exact area enclosed by a path, as the sum of the signed areas swept by
+     * its segments (the shoelace formula, extended to curves). The integral
+     * of {@code x dy - y dx} along a quadratic or cubic segment is a
+     * polynomial of degree at most 5, which three point Gauss-Legendre
+     * quadrature integrates exactly.
+     *
+     * @param it path to measure, with holes oriented against their outline.
+     * @return enclosed area.
+     */
+    private static double measure(PathIterator it) {
+        double[] c = new double[6];
+        double sum = 0;
+        double startX = 0;
+        double startY = 0;
+        double x = 0;
+        double y = 0;
+        for (; !it.isDone(); it.next()) {
+            switch (it.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    sum += x * startY - startX * y;
+                    startX = x = c[0];
+                    startY = y = c[1];
+                    break;
+                case PathIterator.SEG_LINETO:
+                    sum += x * c[1] - c[0] * y;
+                    x = c[0];
+                    y = c[1];
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    sum += curve(x, y, c[0], c[1], c[0], c[1], c[2], c[3], true);
+                    x = c[2];
+                    y = c[3];
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    sum += curve(x, y, c[0], c[1], c[2], c[3], c[4], c[5], false);
+                    x = c[4];
+                    y = c[5];
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    sum += x * startY - startX * y;
+                    x = startX;
+                    y = startY;
+                    break;
+            }
+        }
+        sum += x * startY - startX * y;
+        return Math.abs(sum) / 2;
+    }
+
+    private static final double[] GAUSS_NODES = {0.5 - Math.sqrt(0.15), 0.5, 0.5 + Math.sqrt(0.15)};
+
+    private static final double[] GAUSS_WEIGHTS = {5.0 / 18, 8.0 / 18, 5.0 / 18};
+
+    /**
+     * Integral of {@code x dy - y dx} along a Bezier segment.
+     *
+     * @param quadratic true if the second control point is unused.
+     */
+    private static double curve(double x0, double y0, double x1, double y1, double x2, double y2, double x3,
+                                double y3, boolean quadratic) {
+        double sum = 0;
+        for (int i = 0; i < 3; i++) {
+            double t = GAUSS_NODES[i];
+            double u = 1 - t;
+            double x;
+            double y;
+            double dx;
+            double dy;
+            if (quadratic) {
+                x = u * u * x0 + 2 * u * t * x1 + t * t * x3;
+                y = u * u * y0 + 2 * u * t * y1 + t * t * y3;
+                dx = 2 * (u * (x1 - x0) + t * (x3 - x1));
+                dy = 2 * (u * (y1 - y0) + t * (y3 - y1));
+            } else {
+                x = u * u * u * x0 + 3 * u * u * t * x1 + 3 * u * t * t * x2 + t * t * t * x3;
+                y = u * u * u * y0 + 3 * u * u * t * y1 + 3 * u * t * t * y2 + t * t * t * y3;
+                dx = 3 * (u * u * (x1 - x0) + 2 * u * t * (x2 - x1) + t * t * (x3 - x2));
+                dy = 3 * (u * u * (y1 - y0) + 2 * u * t * (y2 - y1) + t * t * (y3 - y2));
+            }
+            sum += GAUSS_WEIGHTS[i] * (x * dy - y * dx);
+        }
+        return sum;
+    }
+
 
     /**
      * @return ID of this MArea
@@ -166,7 +317,7 @@ public class MArea extends Area {
      * @param y
      */
     public void placeInPosition(double x, double y) {
-        Rectangle bb = getBoundingBox();
+        Rectangle2D.Double bb = getBoundingBox2D();
         AffineTransform transform = new AffineTransform();
         double thisX = bb.getX();
         double dx = Math.abs(thisX - x);
@@ -220,17 +371,206 @@ public class MArea extends Area {
         return rotation;
     }
 
+    /**
+     * Applies the pending pose to the geometry.
+     *
+     * @return this MArea.
+     */
+    public MArea materialize() {
+        if (pose != null) {
+            AffineTransform transform = pose;
+            pose = null;
+            super.transform(transform);
+        }
+        return this;
+    }
+
+    /**
+     * Materializes the argument of an operation if it is an MArea.
+     */
+    private static Area materialize(Area area) {
+        if (area instanceof MArea) {
+            ((MArea) area).materialize();
+        }
+        return area;
+    }
+
+    /**
+     * Transforms this MArea. Translations, scales and quarter turn rotations
+     * are only recorded in the pose; other transforms are applied at once.
+     *
+     * @param t transform to apply.
+     */
+    @Override
+    public void transform(AffineTransform t) {
+        if (t.isIdentity()) {
+            return;
+        }
+        if ((t.getType() & (AffineTransform.TYPE_GENERAL_ROTATION | AffineTransform.TYPE_GENERAL_TRANSFORM)) != 0) {
+            materialize();
+            super.transform(t);
+            bounds = (Rectangle2D.Double) super.getBounds2D();
+            area = Double.NaN;
+            return;
+        }
+        area *= Math.abs(t.getDeterminant());
+        if (pose == null) {
+            pose = new AffineTransform(t);
+        } else {
+            pose.preConcatenate(t);
+        }
+        // an axis aligned box stays axis aligned: its corners give the new box
+        double[] corners = {bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height};
+        t.transform(corners, 0, corners, 0, 2);
+        bounds = new Rectangle2D.Double(Math.min(corners[0], corners[2]), Math.min(corners[1], corners[3]),
+                Math.abs(corners[2] - corners[0]), Math.abs(corners[3] - corners[1]));
+    }
+
+    @Override
+    public Rectangle2D getBounds2D() {
+        return new Rectangle2D.Double(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return bounds.getBounds();
+    }
+
+    @Override
+    public void add(Area rhs) {
+        materialize();
+        super.add(materialize(rhs));
+        bounds = (Rectangle2D.Double) super.getBounds2D();
+        area = Double.NaN;
+    }
+
+    @Override
+    public void subtract(Area rhs) {
+        materialize();
+        super.subtract(materialize(rhs));
+        bounds = (Rectangle2D.Double) super.getBounds2D();
+        area = Double.NaN;
+    }
+
+    @Override
+    public void intersect(Area rhs) {
+        materialize();
+        super.intersect(materialize(rhs));
+        bounds = (Rectangle2D.Double) super.getBounds2D();
+        area = Double.NaN;
+    }
+
+    @Override
+    public void exclusiveOr(Area rhs) {
+        materialize();
+        super.exclusiveOr(materialize(rhs));
+        bounds = (Rectangle2D.Double) super.getBounds2D();
+        area = Double.NaN;
+    }
+
+    @Override
+    public void reset() {
+        pose = null;
+        super.reset();
+        bounds = new Rectangle2D.Double();
+        area = 0;
+    }
+
+    @Override
+    public boolean equals(Area other) {
+        materialize();
+        return super.equals(materialize(other));
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        materialize();
+        return super.contains(x, y);
+    }
+
+    @Override
+    public boolean contains(double x, double y, double w, double h) {
+        materialize();
+        return super.contains(x, y, w, h);
+    }
+
+    @Override
+    public boolean intersects(double x, double y, double w, double h) {
+        materialize();
+        return super.intersects(x, y, w, h);
+    }
+
+    @Override
+    public PathIterator getPathIterator(AffineTransform at) {
+        materialize();
+        return super.getPathIterator(at);
+    }
+
+    @Override
+    public Area createTransformedArea(AffineTransform t) {
+        materialize();
+        return super.createTransformedArea(t);
+    }
+
+    @Override
+    public Object clone() {
+        materialize();
+        return super.clone();
+    }
+
     public static final Comparator<MArea> BY_AREA = new ByArea();
 
+    public static final Comparator<MArea> BY_MAX_SIDE = new ByMaxSide();
+
+    public static final Comparator<MArea> BY_PERIMETER = new ByPerimeter();
+
+    public static final Comparator<MArea> BY_HEIGHT = new ByHeight();
+
 
     /**
-     * Provides an area based comparison between two MAreas. It is assumed that
-     * the area measure is up to date at the time of this comparison
+     * Provides an area based comparison between two MAreas.
      */
     private static class ByArea implements Comparator<MArea> {
         @Override
         public int compare(MArea o1, MArea o2) {
-            return Double.compare(o1.area, o2.area);
+            return Double.compare(o1.getArea(), o2.getArea());
+        }
+    }
+
+    /**
+     * Provides a comparison between two MAreas based on the longest side of
+     * their bounding boxes.
+     */
+    private static class ByMaxSide implements Comparator<MArea> {
+        @Override
+        public int compare(MArea o1, MArea o2) {
+            Rectangle2D b1 = o1.getBounds2D();
+            Rectangle2D b2 = o2.getBounds2D();
+            return Double.compare(Math.max(b1.getWidth(), b1.getHeight()), Math.max(b2.getWidth(), b2.getHeight()));
+        }
+    }
+
+    /**
+     * Provides a comparison between two MAreas based on the perimeter of
+     * their bounding boxes.
+     */
+    private static class ByPerimeter implements Comparator<MArea> {
+        @Override
+        public int compare(MArea o1, MArea o2) {
+            Rectangle2D b1 = o1.getBounds2D();
+            Rectangle2D b2 = o2.getBounds2D();
+            return Double.compare(b1.getWidth() + b1.getHeight(), b2.getWidth() + b2.getHeight());
+        }
+    }
+
+    /**
+     * Provides a comparison between two MAreas based on the height of their
+     * bounding boxes.
+     */
+    private static class ByHeight implements Comparator<MArea> {
+        @Override
+        public int compare(MArea o1, MArea o2) {
+            return Double.compare(o1.getBounds2D().getHeight(), o2.getBounds2D().getHeight());
         }
     }
 
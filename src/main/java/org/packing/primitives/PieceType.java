@@ -0,0 +1,78 @@
+package main.java.org.packing.primitives;
+
+
+/**
+ * A piece and the number of identical copies of it in an order. The copies
+ * have consecutive IDs, from the ID of the piece.
+ */
+public class PieceType {
+
+    private final MArea piece;
+
+    private final int quantity;
+
+    /**
+     * Initializes a piece type.
+     *
+     * @param piece    piece, with the ID of its first copy.
+     * @param quantity number of copies.
+     * @throws IllegalArgumentException if the quantity is negative.
+     */
+    public PieceType(MArea piece, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Negative quantity: " + quantity);
+        }
+        this.piece = piece;
+        this.quantity = quantity;
+    }
+
+    public MArea getPiece() {
+        return piece;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * @param copy number of the copy, from 0.
+     * @return ID of that copy.
+     */
+    public int getID(int copy) {
+        return piece.getID() + copy;
+    }
+
+    /**
+     * Creates every copy of the piece.
+     *
+     * @return new pieces, with consecutive IDs.
+     */
+    public MArea[] toMAreas() {
+        MArea[] copies = new MArea[quantity];
+        for (int c = 0; c < quantity; c++) {
+            copies[c] = new MArea(piece, getID(c));
+        }
+        return copies;
+    }
+
+    /**
+     * Creates every copy of every piece type.
+     *
+     * @param types piece types.
+     * @return new pieces, type after type.
+     */
+    public static MArea[] toMAreas(PieceType[] types) {
+        int n = 0;
+        for (PieceType type : types) {
+            n += type.quantity;
+        }
+        MArea[] pieces = new MArea[n];
+        n = 0;
+        for (PieceType type : types) {
+            MArea[] copies = type.toMAreas();
+            System.arraycopy(copies, 0, pieces, n, copies.length);
+            n += copies.length;
+        }
+        return pieces;
+    }
+}
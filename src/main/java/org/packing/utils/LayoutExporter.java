@@ -0,0 +1,54 @@
+package main.java.org.packing.utils;
+
+
+
+import java.io.IOException;
+import java.io.Writer;
+
+
+/**
+ * Text exports of packing results, for inspection and debugging. The binary
+ * {@link LayoutFile} is the format to exchange results with.
+ */
+public class LayoutExporter {
+
+    private LayoutExporter() {
+    }
+
+    /**
+     * Writes the placements as CSV, one line per piece after a header line.
+     *
+     * @param placements placements to export.
+     * @param writer     destination, not closed.
+     * @throws IOException if writing fails.
+     */
+    public static void writeCsv(PlacementList placements, Writer writer) throws IOException {
+        writer.write("bin,id,x,y,rotation\n");
+        for (int i = 0; i < placements.size(); i++) {
+            writer.write(placements.getBin(i) + "," + placements.getID(i) + "," + placements.getX(i) + ","
+                    + placements.getY(i) + "," + placements.getQuarterTurns(i) * 90 + "\n");
+        }
+    }
+
+    /**
+     * Writes the placements as a JSON object holding the bin dimension and
+     * an array of placements.
+     *
+     * @param placements placements to export.
+     * @param writer     destination, not closed.
+     * @throws IOException if writing fails.
+     */
+    public static void writeJson(PlacementList placements, Writer writer) throws IOException {
+        writer.write("{\"binWidth\":" + placements.getBinDimension().width + ",\"binHeight\":"
+                + placements.getBinDimension().height + ",\"placements\":[");
+        for (int i = 0; i < placements.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write("\n{\"bin\":" + placements.getBin(i) + ",\"id\":" + placements.getID(i) + ",\"x\":"
+                    + placements.getX(i) + ",\"y\":" + placements.getY(i) + ",\"rotation\":"
+                    + placements.getQuarterTurns(i) * 90 + "}");
+        }
+        writer.write("\n]}\n");
+    }
+}
@@ -0,0 +1,272 @@
+package main.java.org.packing.utils;
+
+
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Compact binary files for piece lists and packing results.
+ * <p>
+ * Every file is little-endian and starts with a 24 byte header:
+ * <pre>
+ *  0 int   magic, "BPAK"
+ *  4 short format version, currently 1
+ *  6 short kind, 1 for pieces, 2 for placements
+ *  8 int   bin width
+ * 12 int   bin height
+ * 16 long  number of records
+ * </pre>
+ * followed by fixed-width records, so record {@code i} starts at
+ * {@code 24 + i * size} and the file can be read through a memory mapping.
+ * Piece records are 16 bytes: width and height as doubles; the pieces have
+ * consecutive IDs from 0. Placement records are 28 bytes: bin index and
+ * piece ID as ints, x and y as doubles, and the rotation in quarter turns
+ * as an int.
+ */
+public class LayoutFile {
+
+    public static final int MAGIC = 'B' | 'P' << 8 | 'A' << 16 | 'K' << 24;
+
+    public static final short VERSION = 1;
+
+    public static final short PIECES = 1;
+
+    public static final short PLACEMENTS = 2;
+
+    public static final int HEADER_SIZE = 24;
+
+    public static final int PIECE_RECORD_SIZE = 16;
+
+    public static final int PLACEMENT_RECORD_SIZE = 28;
+
+    /**
+     * Largest window of the file mapped at once.
+     */
+    private static final long WINDOW = 1 << 30;
+
+    private LayoutFile() {
+    }
+
+    /**
+     * Writes a piece list. The IDs of the pieces are not stored, and pieces
+     * with several copies are written once per copy.
+     *
+     * @param path   file to write, replaced atomically if it exists.
+     * @param pieces pieces to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void writePieces(Path path, PieceList pieces) throws IOException {
+        PieceList expanded = pieces.expand();
+        int n = expanded.size();
+        write(path, channel -> {
+            writeHeader(channel, PIECES, expanded.getBinDimension(), n, PIECE_RECORD_SIZE);
+            for (Window w = new Window(channel, FileChannel.MapMode.READ_WRITE, n, PIECE_RECORD_SIZE); w.next(); ) {
+                MappedByteBuffer b = w.buffer;
+                for (int i = w.first, p = 0; i < w.end; i++, p += PIECE_RECORD_SIZE) {
+                    b.putDouble(p, expanded.getWidth(i));
+                    b.putDouble(p + 8, expanded.getHeight(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads a piece list.
+     *
+     * @param path file to read.
+     * @return the pieces, with IDs from 0.
+     * @throws IOException if the file cannot be read or is not a piece list.
+     */
+    public static PieceList readPieces(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header = readHeader(channel, PIECES);
+            Dimension binDimension = new Dimension(header.getInt(8), header.getInt(12));
+            int n = count(channel, header, PIECE_RECORD_SIZE);
+            double[] widths = new double[n];
+            double[] heights = new double[n];
+            for (Window w = new Window(channel, FileChannel.MapMode.READ_ONLY, n, PIECE_RECORD_SIZE); w.next(); ) {
+                MappedByteBuffer b = w.buffer;
+                for (int i = w.first, p = 0; i < w.end; i++, p += PIECE_RECORD_SIZE) {
+                    widths[i] = b.getDouble(p);
+                    heights[i] = b.getDouble(p + 8);
+                }
+            }
+            return new PieceList(binDimension, 0, widths, heights, n);
+        }
+    }
+
+    /**
+     * Writes the placements of a packed order.
+     *
+     * @param path       file to write, replaced atomically if it exists.
+     * @param placements placements to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void writePlacements(Path path, PlacementList placements) throws IOException {
+        int n = placements.size();
+        write(path, channel -> {
+            writeHeader(channel, PLACEMENTS, placements.getBinDimension(), n, PLACEMENT_RECORD_SIZE);
+            for (Window w = new Window(channel, FileChannel.MapMode.READ_WRITE, n, PLACEMENT_RECORD_SIZE); w.next(); ) {
+                MappedByteBuffer b = w.buffer;
+                for (int i = w.first, p = 0; i < w.end; i++, p += PLACEMENT_RECORD_SIZE) {
+                    b.putInt(p, placements.getBin(i));
+                    b.putInt(p + 4, placements.getID(i));
+                    b.putDouble(p + 8, placements.getX(i));
+                    b.putDouble(p + 16, placements.getY(i));
+                    b.putInt(p + 24, placements.getQuarterTurns(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the placements of a packed order.
+     *
+     * @param path file to read.
+     * @return the placements.
+     * @throws IOException if the file cannot be read or does not hold
+     *                     placements.
+     */
+    public static PlacementList readPlacements(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header = readHeader(channel, PLACEMENTS);
+            Dimension binDimension = new Dimension(header.getInt(8), header.getInt(12));
+            int n = count(channel, header, PLACEMENT_RECORD_SIZE);
+            int[] bins = new int[n];
+            int[] ids = new int[n];
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            byte[] quarterTurns = new byte[n];
+            for (Window w = new Window(channel, FileChannel.MapMode.READ_ONLY, n, PLACEMENT_RECORD_SIZE); w.next(); ) {
+                MappedByteBuffer b = w.buffer;
+                for (int i = w.first, p = 0; i < w.end; i++, p += PLACEMENT_RECORD_SIZE) {
+                    bins[i] = b.getInt(p);
+                    ids[i] = b.getInt(p + 4);
+                    xs[i] = b.getDouble(p + 8);
+                    ys[i] = b.getDouble(p + 16);
+                    quarterTurns[i] = (byte) b.getInt(p + 24);
+                }
+            }
+            return new PlacementList(binDimension, bins, ids, xs, ys, quarterTurns, n);
+        }
+    }
+
+    /**
+     * Writes a file next to its destination, then moves it there atomically,
+     * so that readers see either the former file or the complete new one.
+     */
+    private static void write(Path path, Contents contents) throws IOException {
+        Path target = path.toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                contents.write(channel);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, short kind, Dimension binDimension, int n, int recordSize)
+            throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) n * recordSize);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC);
+        header.putShort(4, VERSION);
+        header.putShort(6, kind);
+        header.putInt(8, binDimension.width);
+        header.putInt(12, binDimension.height);
+        header.putLong(16, n);
+    }
+
+    private static MappedByteBuffer readHeader(FileChannel channel, short kind) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            throw new IOException("Not a layout file: too short");
+        }
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a layout file: bad magic");
+        }
+        if (header.getShort(4) != VERSION) {
+            throw new IOException("Unsupported layout file version " + header.getShort(4));
+        }
+        if (header.getShort(6) != kind) {
+            throw new IOException("Layout file holds kind " + header.getShort(6) + ", expected " + kind);
+        }
+        return header;
+    }
+
+    private static int count(FileChannel channel, MappedByteBuffer header, int recordSize) throws IOException {
+        long n = header.getLong(16);
+        if (n < 0 || n > Integer.MAX_VALUE || HEADER_SIZE + n * recordSize > channel.size()) {
+            throw new IOException("Truncated layout file: " + n + " records announced");
+        }
+        return (int) n;
+    }
+
+    /**
+     * Writes the contents of a new file.
+     */
+    private interface Contents {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Walks the records of a file one mapped window at a time. Positions
+     * inside {@link #buffer} are relative to record {@link #first}.
+     */
+    private static class Window {
+        private final FileChannel channel;
+
+        private final FileChannel.MapMode mode;
+
+        private final int count;
+
+        private final int recordSize;
+
+        private final int perWindow;
+
+        MappedByteBuffer buffer;
+
+        int first;
+
+        int end;
+
+        Window(FileChannel channel, FileChannel.MapMode mode, int count, int recordSize) {
+            this.channel = channel;
+            this.mode = mode;
+            this.count = count;
+            this.recordSize = recordSize;
+            this.perWindow = (int) (WINDOW / recordSize);
+        }
+
+        /**
+         * Maps the next window.
+         *
+         * @return false once every record has been visited.
+         */
+        boolean next() throws IOException {
+            first = end;
+            if (first >= count) {
+                return false;
+            }
+            end = (int) Math.min((long) first + perWindow, count);
+            buffer = channel.map(mode, HEADER_SIZE + (long) first * recordSize, (long) (end - first) * recordSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package main.java.org.packing.utils;
+
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.primitives.PieceType;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Messages exchanged between a packing coordinator and its workers over a
+ * socket.
+ * <p>
+ * Every message is a little-endian frame: the length of the rest of the
+ * frame as an int, the message type as a byte, then its fields:
+ * <pre>
+ * HELLO    int magic "BPAK", short version         worker to coordinator
+ * TASK     long task, int bin width, int bin height, int n,
+ *          n * (int first ID, int quantity, double width, double height)
+ * PROGRESS long task, int bins, int pieces         worker to coordinator
+ * BIN      long task, int n,
+ *          n * (int ID, double x, double y, byte quarter turns)
+ * DONE     long task, int bins                     worker to coordinator
+ * FAILED   long task, int length, UTF-8 message    worker to coordinator
+ * SHUTDOWN                                         coordinator to worker
+ * </pre>
+ * A task is a list of rectangular piece types to pack. The worker answers
+ * with one BIN per filled bin as soon as it is filled, PROGRESS every now
+ * and then, and DONE or FAILED at the end.
+ * <p>
+ * The write methods flush the stream; callers writing from several threads
+ * must synchronize on it.
+ */
+public final class PackingProtocol {
+
+    public static final short VERSION = 1;
+
+    public static final byte HELLO = 1;
+
+    public static final byte TASK = 2;
+
+    public static final byte PROGRESS = 3;
+
+    public static final byte BIN = 4;
+
+    public static final byte DONE = 5;
+
+    public static final byte FAILED = 6;
+
+    public static final byte SHUTDOWN = 7;
+
+    public static final int TYPE_RECORD_SIZE = 24;
+
+    public static final int PLACEMENT_RECORD_SIZE = 21;
+
+    /**
+     * Largest frame accepted, in bytes.
+     */
+    private static final int MAX_FRAME = 1 << 30;
+
+    /**
+     * Shortest frame of each message type, type byte included.
+     */
+    private static final int[] MIN_LENGTHS = {0, 7, 21, 17, 13, 13, 13, 1};
+
+    private PackingProtocol() {
+    }
+
+    public static void writeHello(OutputStream out) throws IOException {
+        write(out, frame(HELLO, 6).putInt(LayoutFile.MAGIC).putShort(VERSION));
+    }
+
+    /**
+     * @param out          stream to the worker.
+     * @param task         ID of the task.
+     * @param binDimension dimensions of the bins.
+     * @param types        rectangular pieces to pack.
+     * @throws IOException if the stream cannot be written.
+     */
+    public static void writeTask(OutputStream out, long task, Dimension binDimension, PieceType[] types)
+            throws IOException {
+        ByteBuffer b = frame(TASK, 20 + (long) types.length * TYPE_RECORD_SIZE);
+        b.putLong(task).putInt(binDimension.width).putInt(binDimension.height).putInt(types.length);
+        for (PieceType type : types) {
+            Rectangle2D bounds = type.getPiece().getBounds2D();
+            b.putInt(type.getID(0)).putInt(type.getQuantity()).putDouble(bounds.getWidth()).putDouble(bounds.getHeight());
+        }
+        write(out, b);
+    }
+
+    public static void writeProgress(OutputStream out, long task, int bins, int pieces) throws IOException {
+        write(out, frame(PROGRESS, 16).putLong(task).putInt(bins).putInt(pieces));
+    }
+
+    /**
+     * @param out  stream to the coordinator.
+     * @param task ID of the task.
+     * @param bin  filled bin.
+     * @throws IOException if the stream cannot be written.
+     */
+    public static void writeBin(OutputStream out, long task, Bin bin) throws IOException {
+        PlacementList placements = PlacementList.of(new Bin[]{bin});
+        int n = placements.size();
+        ByteBuffer b = frame(BIN, 12 + (long) n * PLACEMENT_RECORD_SIZE);
+        b.putLong(task).putInt(n);
+        for (int i = 0; i < n; i++) {
+            b.putInt(placements.getID(i)).putDouble(placements.getX(i)).putDouble(placements.getY(i))
+                    .put((byte) placements.getQuarterTurns(i));
+        }
+        write(out, b);
+    }
+
+    public static void writeDone(OutputStream out, long task, int bins) throws IOException {
+        write(out, frame(DONE, 12).putLong(task).putInt(bins));
+    }
+
+    public static void writeFailed(OutputStream out, long task, String message) throws IOException {
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        write(out, frame(FAILED, 12 + text.length).putLong(task).putInt(text.length).put(text));
+    }
+
+    public static void writeShutdown(OutputStream out) throws IOException {
+        write(out, frame(SHUTDOWN, 0));
+    }
+
+    /**
+     * Reads the next message.
+     *
+     * @param in stream to read.
+     * @return the message, null at the end of the stream.
+     * @throws IOException if the stream cannot be read or the frame is
+     *                     malformed.
+     */
+    public static Frame read(InputStream in) throws IOException {
+        DataInputStream data = in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in);
+        int length;
+        try {
+            length = Integer.reverseBytes(data.readInt());
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 1 || length > MAX_FRAME) {
+            throw new IOException("Malformed frame: length " + length);
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        byte type = bytes[0];
+        if (type < HELLO || type > SHUTDOWN || length < MIN_LENGTHS[type]) {
+            throw new IOException("Malformed frame: type " + type + ", length " + length);
+        }
+        ByteBuffer b = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        b.position(1);
+        return new Frame(type, b);
+    }
+
+    private static ByteBuffer frame(byte type, long size) throws IOException {
+        if (size + 1 > MAX_FRAME) {
+            throw new IOException("Frame too large: " + size + " bytes");
+        }
+        ByteBuffer b = ByteBuffer.allocate(5 + (int) size).order(ByteOrder.LITTLE_ENDIAN);
+        return b.putInt(1 + (int) size).put(type);
+    }
+
+    private static void write(OutputStream out, ByteBuffer b) throws IOException {
+        out.write(b.array(), 0, b.position());
+        out.flush();
+    }
+
+    /**
+     * A message read from a stream. Its fields are decoded by the getters
+     * matching its type.
+     */
+    public static final class Frame {
+
+        private final byte type;
+
+        private final ByteBuffer payload;
+
+        Frame(byte type, ByteBuffer payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        /**
+         * Checks a HELLO message.
+         *
+         * @throws IOException if the message is not a HELLO of this version.
+         */
+        public void checkHello() throws IOException {
+            expect(HELLO);
+            if (payload.getInt(1) != LayoutFile.MAGIC) {
+                throw new IOException("Not a packing worker: bad magic");
+            }
+            short version = payload.getShort(5);
+            if (version != VERSION) {
+                throw new IOException("Unsupported protocol version " + version);
+            }
+        }
+
+        /**
+         * @return ID of the task of a TASK, PROGRESS, BIN, DONE or FAILED
+         * message.
+         */
+        public long getTask() {
+            return payload.getLong(1);
+        }
+
+        /**
+         * @return bin dimensions of a TASK message.
+         */
+        public Dimension getBinDimension() {
+            return new Dimension(payload.getInt(9), payload.getInt(13));
+        }
+
+        /**
+         * @return pieces of a TASK message.
+         * @throws IOException if the message is truncated.
+         */
+        public PieceType[] getPieceTypes() throws IOException {
+            int n = count(17, TYPE_RECORD_SIZE);
+            PieceType[] types = new PieceType[n];
+            payload.position(21);
+            for (int i = 0; i < n; i++) {
+                int id = payload.getInt();
+                int quantity = payload.getInt();
+                double width = payload.getDouble();
+                double height = payload.getDouble();
+                types[i] = new PieceType(new MArea(new Rectangle2D.Double(0, 0, width, height), id), quantity);
+            }
+            return types;
+        }
+
+        /**
+         * @return bins of a PROGRESS or DONE message.
+         */
+        public int getBins() {
+            return payload.getInt(9);
+        }
+
+        /**
+         * @return pieces of a PROGRESS message.
+         */
+        public int getPieces() {
+            return payload.getInt(13);
+        }
+
+        /**
+         * @param binDimension dimensions of the bins of the task.
+         * @return placements of a BIN message, all in bin 0.
+         * @throws IOException if the message is truncated.
+         */
+        public PlacementList getPlacements(Dimension binDimension) throws IOException {
+            int n = count(9, PLACEMENT_RECORD_SIZE);
+            int[] bins = new int[n];
+            int[] ids = new int[n];
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            byte[] quarterTurns = new byte[n];
+            payload.position(13);
+            for (int i = 0; i < n; i++) {
+                ids[i] = payload.getInt();
+                xs[i] = payload.getDouble();
+                ys[i] = payload.getDouble();
+                quarterTurns[i] = payload.get();
+            }
+            return new PlacementList(binDimension, bins, ids, xs, ys, quarterTurns, n);
+        }
+
+        /**
+         * @return message of a FAILED message.
+         * @throws IOException if the message is truncated.
+         */
+        public String getMessage() throws IOException {
+            int n = count(9, 1);
+            return new String(payload.array(), 13, n, StandardCharsets.UTF_8);
+        }
+
+        private void expect(byte expected) throws IOException {
+            if (type != expected) {
+                throw new IOException("Unexpected message type " + type + ", expected " + expected);
+            }
+        }
+
+        /**
+         * Reads a record count, checking that the records are all there.
+         */
+        private int count(int at, int recordSize) throws IOException {
+            int n = payload.getInt(at);
+            if (n < 0 || at + 4 + (long) n * recordSize > payload.limit()) {
+                throw new IOException("Truncated message: " + n + " records announced");
+            }
+            return n;
+        }
+    }
+}
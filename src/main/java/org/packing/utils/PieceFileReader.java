@@ -0,0 +1,346 @@
+package main.java.org.packing.utils;
+
+
+
+import java.awt.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Reads order files straight from a memory mapped file, without decoding
+ * characters or creating strings.
+ * <p>
+ * The file holds the bin width and height, the number of piece lines, and
+ * then one line per piece starting with its width and height, optionally
+ * followed by its quantity, a whole number of identical copies, 1 if
+ * missing; a piece with quantity 0 is no piece at all. Anything else on the
+ * line, not starting with a digit, is ignored. Copies get consecutive IDs
+ * from 0, in file order.
+ * <p>
+ * The pieces can be read all at once with {@link #readAll(Path)}, or in
+ * chunks with {@link #readChunk(int)} so that packing can start before the
+ * whole file has been read. Files larger than a single mapping are mapped
+ * one window at a time.
+ */
+public class PieceFileReader implements Closeable {
+
+    /**
+     * Default largest window of the file mapped at once.
+     */
+    public static final long WINDOW = 1 << 30;
+
+    /**
+     * Longest number accepted, in characters.
+     */
+    private static final int MAX_TOKEN = 64;
+
+    /**
+     * Exactly representable powers of ten.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final FileChannel channel;
+
+    private final long fileSize;
+
+    /**
+     * Largest window of the file mapped at once.
+     */
+    private final long window;
+
+    private MappedByteBuffer buffer;
+
+    /**
+     * Position in the file of the start of the mapped window.
+     */
+    private long windowStart;
+
+    private final Dimension binDimension;
+
+    private final int pieceCount;
+
+    private int read;
+
+    /**
+     * Copies in the lines read so far.
+     */
+    private int copies;
+
+    /**
+     * Opens an order file and reads its header.
+     *
+     * @param path order file.
+     * @throws IOException if the file cannot be read or its header is
+     *                     malformed.
+     */
+    public PieceFileReader(Path path) throws IOException {
+        this(path, WINDOW);
+    }
+
+    /**
+     * Opens an order file and reads its header, mapping at most a window of
+     * the file at once.
+     *
+     * @param path   order file.
+     * @param window largest window mapped at once, in bytes, at least 64,
+     *               the longest number accepted.
+     * @throws IOException if the file cannot be read or its header is
+     *                     malformed.
+     */
+    public PieceFileReader(Path path, long window) throws IOException {
+        if (window < MAX_TOKEN) {
+            throw new IllegalArgumentException("Window of " + window + " bytes, at least " + MAX_TOKEN + " required");
+        }
+        this.window = window;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            fileSize = channel.size();
+            map(0);
+            binDimension = new Dimension(nextInt(), nextInt());
+            pieceCount = nextInt();
+            skipLine();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a whole order file.
+     *
+     * @param path order file.
+     * @return the bin dimension and all the pieces.
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    public static PieceList readAll(Path path) throws IOException {
+        try (PieceFileReader reader = new PieceFileReader(path)) {
+            PieceList pieces = reader.readChunk(reader.getPieceCount());
+            return pieces != null ? pieces : new PieceList(reader.getBinDimension(), 0, new double[0], new double[0], 0);
+        }
+    }
+
+    public Dimension getBinDimension() {
+        return binDimension;
+    }
+
+    /**
+     * Get the number of piece lines announced by the header.
+     *
+     * @return number of piece lines in the file.
+     */
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    /**
+     * Reads the next piece lines of the file.
+     *
+     * @param max maximum number of lines to read.
+     * @return up to max piece lines, null once every line has been read.
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    public PieceList readChunk(int max) throws IOException {
+        int n = Math.min(max, pieceCount - read);
+        if (n <= 0) {
+            return null;
+        }
+        double[] widths = new double[n];
+        double[] heights = new double[n];
+        int[] quantities = new int[n];
+        for (int i = 0; i < n; i++) {
+            widths[i] = nextDouble();
+            heights[i] = nextDouble();
+            quantities[i] = nextQuantity();
+            skipLine();
+        }
+        read += n;
+        PieceList pieces = new PieceList(binDimension, copies, widths, heights, quantities, n);
+        copies += pieces.getPieceCount();
+        return pieces;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        channel.close();
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(window, fileSize - start));
+    }
+
+    /**
+     * Makes sure the next token is inside the mapped window.
+     */
+    private void ensureToken() throws IOException {
+        if (buffer.remaining() < MAX_TOKEN && windowStart + buffer.limit() < fileSize) {
+            map(windowStart + buffer.position());
+        }
+    }
+
+    /**
+     * Skips whitespace, crossing windows if needed.
+     *
+     * @return false at the end of the file.
+     */
+    private boolean skipWhitespace() throws IOException {
+        while (true) {
+            while (buffer.hasRemaining()) {
+                if (buffer.get(buffer.position()) > ' ') {
+                    ensureToken();
+                    return true;
+                }
+                buffer.position(buffer.position() + 1);
+            }
+            if (windowStart + buffer.limit() >= fileSize) {
+                return false;
+            }
+            map(windowStart + buffer.limit());
+        }
+    }
+
+    /**
+     * Skips the rest of the current line.
+     */
+    private void skipLine() throws IOException {
+        while (true) {
+            while (buffer.hasRemaining()) {
+                if (buffer.get() == '\n') {
+                    return;
+                }
+            }
+            if (windowStart + buffer.limit() >= fileSize) {
+                return;
+            }
+            map(windowStart + buffer.limit());
+        }
+    }
+
+    /**
+     * Reads the quantity of a piece, if its line holds one.
+     *
+     * @return the quantity, 1 if the line has no other number.
+     */
+    private int nextQuantity() throws IOException {
+        while (true) {
+            while (buffer.hasRemaining()) {
+                byte c = buffer.get(buffer.position());
+                if (c == '\n' || (c > ' ' && (c < '0' || c > '9'))) {
+                    return 1;
+                }
+                if (c > ' ') {
+                    return nextInt();
+                }
+                buffer.position(buffer.position() + 1);
+            }
+            if (windowStart + buffer.limit() >= fileSize) {
+                return 1;
+            }
+            map(windowStart + buffer.limit());
+        }
+    }
+
+    private int nextInt() throws IOException {
+        double value = nextDouble();
+        if (value != (int) value) {
+            throw malformed("integer expected");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a decimal number. Numbers with at most 15 significant digits
+     * and a small exponent are computed exactly from their digits; the
+     * others are handed to {@link Double#parseDouble}.
+     */
+    private double nextDouble() throws IOException {
+        if (!skipWhitespace()) {
+            throw malformed("unexpected end of file");
+        }
+        MappedByteBuffer b = buffer;
+        int start = b.position();
+        int p = start;
+        int limit = b.limit();
+        boolean negative = false;
+        byte c = b.get(p);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            p++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        while (p < limit && (c = b.get(p)) >= '0' && c <= '9') {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+            }
+            any = true;
+            p++;
+        }
+        if (p < limit && b.get(p) == '.') {
+            p++;
+            while (p < limit && (c = b.get(p)) >= '0' && c <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                }
+                any = true;
+                p++;
+            }
+        }
+        if (!any) {
+            throw malformed("number expected");
+        }
+        boolean simple = true;
+        if (p < limit && ((c = b.get(p)) == 'e' || c == 'E')) {
+            simple = false;
+            p++;
+            if (p < limit && ((c = b.get(p)) == '-' || c == '+')) {
+                p++;
+            }
+            while (p < limit && (c = b.get(p)) >= '0' && c <= '9') {
+                p++;
+            }
+        }
+        if (p < limit && b.get(p) > ' ') {
+            throw malformed("number expected");
+        }
+        b.position(p);
+
+        if (simple && digits <= 15 && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        byte[] token = new byte[p - start];
+        b.get(start, token);
+        try {
+            return Double.parseDouble(new String(token, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw malformed("number expected");
+        }
+    }
+
+    private IOException malformed(String message) {
+        return new IOException("Malformed order file at byte " + (windowStart + buffer.position()) + ": " + message);
+    }
+}
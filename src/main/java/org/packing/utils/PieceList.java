@@ -0,0 +1,206 @@
+package main.java.org.packing.utils;
+
+
+
+import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.primitives.PieceType;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+
+
+/**
+ * Rectangular pieces read from an order file, kept as primitive widths,
+ * heights and quantities. Each entry of the list stands for a number of
+ * identical copies, which get consecutive IDs. The {@link MArea} of a piece
+ * is only created when asked for.
+ */
+public class PieceList {
+
+    private final Dimension binDimension;
+
+    /**
+     * ID of the first copy of the first entry; the following copies have
+     * consecutive IDs, entry after entry.
+     */
+    private final int firstID;
+
+    private final double[] widths;
+
+    private final double[] heights;
+
+    /**
+     * Number of copies of each entry, null if every entry is a single piece.
+     */
+    private final int[] quantities;
+
+    private final int size;
+
+    /**
+     * ID of the first copy of each entry, null if every entry is a single
+     * piece.
+     */
+    private final int[] entryIDs;
+
+    private final int pieceCount;
+
+    /**
+     * Initializes a list of single pieces. The arrays are used as they are,
+     * not copied.
+     *
+     * @param binDimension dimensions of the bins of the order.
+     * @param firstID      ID of the first piece.
+     * @param widths       widths of the pieces.
+     * @param heights      heights of the pieces.
+     * @param size         number of pieces in the arrays.
+     */
+    public PieceList(Dimension binDimension, int firstID, double[] widths, double[] heights, int size) {
+        this(binDimension, firstID, widths, heights, null, size);
+    }
+
+    /**
+     * Initializes the list. The arrays are used as they are, not copied.
+     *
+     * @param binDimension dimensions of the bins of the order.
+     * @param firstID      ID of the first copy of the first entry.
+     * @param widths       widths of the entries.
+     * @param heights      heights of the entries.
+     * @param quantities   numbers of copies of the entries, null for one
+     *                     copy each; an entry may have none.
+     * @param size         number of entries in the arrays.
+     */
+    public PieceList(Dimension binDimension, int firstID, double[] widths, double[] heights, int[] quantities,
+                     int size) {
+        this.binDimension = binDimension;
+        this.firstID = firstID;
+        this.widths = widths;
+        this.heights = heights;
+        this.size = size;
+        boolean single = true;
+        for (int i = 0; i < size && quantities != null; i++) {
+            single &= quantities[i] == 1;
+        }
+        this.quantities = single ? null : quantities;
+        if (single) {
+            entryIDs = null;
+            pieceCount = size;
+        } else {
+            entryIDs = new int[size];
+            long count = 0;
+            for (int i = 0; i < size; i++) {
+                if (quantities[i] < 0) {
+                    throw new IllegalArgumentException("Negative quantity: " + quantities[i]);
+                }
+                entryIDs[i] = (int) (firstID + count);
+                count += quantities[i];
+            }
+            if (firstID + count > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many pieces: " + count);
+            }
+            pieceCount = (int) count;
+        }
+    }
+
+    public Dimension getBinDimension() {
+        return binDimension;
+    }
+
+    public int getFirstID() {
+        return firstID;
+    }
+
+    /**
+     * @return number of entries of the list.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of pieces, counting every copy.
+     */
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    public double getWidth(int i) {
+        return widths[i];
+    }
+
+    public double getHeight(int i) {
+        return heights[i];
+    }
+
+    public int getQuantity(int i) {
+        return quantities == null ? 1 : quantities[i];
+    }
+
+    /**
+     * Creates the first copy of the piece at a position of the list.
+     *
+     * @param i position of the piece.
+     * @return new piece at the origin, with the ID of its first copy.
+     */
+    public MArea getPiece(int i) {
+        int id = entryIDs == null ? firstID + i : entryIDs[i];
+        return new MArea(new Rectangle2D.Double(0, 0, widths[i], heights[i]), id);
+    }
+
+    /**
+     * Creates every copy of every piece of the list.
+     *
+     * @return new pieces, in list order and with consecutive IDs.
+     */
+    public MArea[] toMAreas() {
+        MArea[] pieces = new MArea[pieceCount];
+        for (int i = 0, n = 0; i < size; i++) {
+            int id = entryIDs == null ? firstID + i : entryIDs[i];
+            for (int c = 0; c < getQuantity(i); c++) {
+                pieces[n++] = new MArea(new Rectangle2D.Double(0, 0, widths[i], heights[i]), id + c);
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * Creates one piece type per entry of the list with at least one copy,
+     * for {@code BinPacking.BlockPackingStrategy}.
+     *
+     * @return piece types, in list order.
+     */
+    public PieceType[] toPieceTypes() {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (getQuantity(i) > 0) {
+                n++;
+            }
+        }
+        PieceType[] types = new PieceType[n];
+        for (int i = 0, t = 0; i < size; i++) {
+            if (getQuantity(i) > 0) {
+                types[t++] = new PieceType(getPiece(i), getQuantity(i));
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Expands the entries with several copies into single pieces.
+     *
+     * @return a list with one entry per piece, this list if it already has.
+     */
+    public PieceList expand() {
+        if (quantities == null) {
+            return this;
+        }
+        double[] w = new double[pieceCount];
+        double[] h = new double[pieceCount];
+        for (int i = 0, n = 0; i < size; i++) {
+            for (int c = 0; c < quantities[i]; c++, n++) {
+                w[n] = widths[i];
+                h[n] = heights[i];
+            }
+        }
+        return new PieceList(binDimension, firstID, w, h, pieceCount);
+    }
+}
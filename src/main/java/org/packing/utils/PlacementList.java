@@ -0,0 +1,127 @@
+package main.java.org.packing.utils;
+
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+
+
+/**
+ * Placements of a packed order, kept as primitive arrays: for each piece the
+ * bin it went to, its ID, the corner of its bounding box closest to the
+ * origin and its rotation in quarter turns.
+ */
+public class PlacementList {
+
+    private final Dimension binDimension;
+
+    private final int[] bins;
+
+    private final int[] ids;
+
+    private final double[] xs;
+
+    private final double[] ys;
+
+    private final byte[] quarterTurns;
+
+    private final int size;
+
+    /**
+     * Initializes the list. The arrays are used as they are, not copied.
+     *
+     * @param binDimension dimensions of the bins.
+     * @param bins         bin index of each placement.
+     * @param ids          piece ID of each placement.
+     * @param xs           x of each placement.
+     * @param ys           y of each placement.
+     * @param quarterTurns rotation of each placement, from 0 to 3 quarter
+     *                     turns.
+     * @param size         number of placements in the arrays.
+     */
+    public PlacementList(Dimension binDimension, int[] bins, int[] ids, double[] xs, double[] ys, byte[] quarterTurns,
+                         int size) {
+        this.binDimension = binDimension;
+        this.bins = bins;
+        this.ids = ids;
+        this.xs = xs;
+        this.ys = ys;
+        this.quarterTurns = quarterTurns;
+        this.size = size;
+    }
+
+    /**
+     * Collects the placements of packed bins.
+     *
+     * @param packed bins, as returned by the packing strategies.
+     * @return placements, bin by bin.
+     */
+    public static PlacementList of(Bin[] packed) {
+        int n = 0;
+        for (Bin bin : packed) {
+            n += bin.getPlacedCount();
+        }
+        int[] bins = new int[n];
+        int[] ids = new int[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        byte[] quarterTurns = new byte[n];
+        int k = 0;
+        for (int b = 0; b < packed.length; b++) {
+            for (MArea piece : packed[b].getPlacedPieces()) {
+                Rectangle2D bounds = piece.getBounds2D();
+                bins[k] = b;
+                ids[k] = piece.getID();
+                xs[k] = bounds.getX();
+                ys[k] = bounds.getY();
+                quarterTurns[k] = (byte) Math.floorMod(Math.round(piece.getRotation() / 90), 4);
+                k++;
+            }
+        }
+        Dimension binDimension = packed.length > 0 ? packed[0].getDimension() : new Dimension();
+        return new PlacementList(binDimension, bins, ids, xs, ys, quarterTurns, n);
+    }
+
+    public Dimension getBinDimension() {
+        return binDimension;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getBin(int i) {
+        return bins[i];
+    }
+
+    public int getID(int i) {
+        return ids[i];
+    }
+
+    public double getX(int i) {
+        return xs[i];
+    }
+
+    public double getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * @param i position of the placement.
+     * @return rotation of the piece, from 0 to 3 quarter turns.
+     */
+    public int getQuarterTurns(int i) {
+        return quarterTurns[i];
+    }
+
+    /**
+     * @param i position of the placement.
+     * @return true if the piece was turned by a quarter or three quarters.
+     */
+    public boolean isRotated(int i) {
+        return (quarterTurns[i] & 1) != 0;
+    }
+}
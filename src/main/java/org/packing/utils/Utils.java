@@ -11,6 +11,8 @@ import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
@@ -73,6 +75,18 @@ public class Utils {
 
 
 
+    /**
+     * Reads an order file through {@link PieceFileReader}, which is much
+     * faster than {@link #loadPieces(BufferedReader)} on large files.
+     *
+     * @param path order file
+     * @return the bin dimension and the pieces read from file
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static PieceList loadPieces(Path path) throws IOException {
+        return PieceFileReader.readAll(path);
+    }
+
     /**
      * @param reader
      * @return @Object[] that contains the specified bin dimension, the
@@ -87,16 +101,19 @@ public class Utils {
     }
 
     /**
-     * From a scanner, reads the pieces.
+     * From a scanner, reads the pieces. A piece line may hold a quantity
+     * after the width and height, every copy being a separate piece, read
+     * as {@link PieceFileReader} does.
      *
      * @return
+     * @throws IOException if a quantity is not a whole number
      */
-    private static Object[] readInput(Scanner sc) {
+    private static Object[] readInput(Scanner sc) throws IOException {
         Dimension binDimension = new Dimension(sc.nextInt(), sc.nextInt());
 
         int N = sc.nextInt();
         sc.nextLine();
-        MArea[] pieces = new MArea[N];
+        List<MArea> pieces = new ArrayList<>(N);
         int n = 0;
         while (n < N) {
             String s = sc.nextLine();
@@ -104,12 +121,23 @@ public class Utils {
 
             double width = Double.valueOf(src[0]);
             double height = Double.valueOf(src[1]);
+            int quantity = src.length > 2 && Character.isDigit(src[2].charAt(0)) ? parseQuantity(src[2], n) : 1;
 
-            pieces[n] = new MArea(new Rectangle2D.Double(0, 0, width, height), n);
+            for (int c = 0; c < quantity; c++) {
+                pieces.add(new MArea(new Rectangle2D.Double(0, 0, width, height), pieces.size()));
+            }
             ++n;
         }
         sc.close();
-        return new Object[] {binDimension, pieces};
+        return new Object[] {binDimension, pieces.toArray(new MArea[0])};
+    }
+
+    private static int parseQuantity(String token, int line) throws IOException {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed order file at piece line " + (line + 1) + ": integer expected");
+        }
     }
 
 }
@@ -0,0 +1,129 @@
+package test.java.org.packing.core;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.FreeSpaceIndex;
+import main.java.org.packing.core.Metric;
+import main.java.org.packing.core.MetricsRecorder;
+import main.java.org.packing.core.PackingEngine;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.core.PieceOrder;
+import main.java.org.packing.core.PlacementRule;
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import static test.java.org.packing.core.Layouts.check;
+import static test.java.org.packing.core.Layouts.checkLayout;
+import static test.java.org.packing.core.Layouts.mixedOrder;
+
+/**
+ * First fit decreasing packs rectangles over all the open bins, going back
+ * to the space left in the first bins, with every storage of the free
+ * rectangles; the orders it does not accept are packed bin by bin.
+ */
+public class FirstFitDecreasingTest {
+
+	private static final Dimension BIN = new Dimension(400, 300);
+
+	public static void main(String[] args) {
+		rectangles();
+		fallback();
+		reuse();
+		tooLarge();
+		System.out.println("FirstFitDecreasingTest OK");
+	}
+
+	private static void rectangles() {
+		PackingOptions[] variants = {
+				PackingOptions.DEFAULT,
+				PackingOptions.DEFAULT.withFreeSpaceIndex(FreeSpaceIndex.GRID),
+				PackingOptions.DEFAULT.withFixedPointScale(1),
+				PackingOptions.DEFAULT.withFixedPointScale(4),
+				PackingOptions.DEFAULT.withFixedPointScale(1).withOffHeap(true),
+				PackingOptions.DEFAULT.withEngine(PackingEngine.SKYLINE)
+		};
+		for (PackingOptions variant : variants) {
+			for (PieceOrder order : PieceOrder.values()) {
+				PackingOptions options = variant.withPieceOrder(order);
+				for (long seed = 1; seed <= 4; seed++) {
+					MetricsRecorder metrics = new MetricsRecorder();
+					Bin[] bins = BinPacking.FirstFitDecreasingStrategy(rectangles(seed, 300), BIN,
+							options.withMetrics(metrics));
+					String what = options + ", seed " + seed;
+					try {
+						checkLayout(bins, rectangles(seed, 300));
+					} catch (AssertionError e) {
+						throw new AssertionError(what + ": " + e.getMessage(), e);
+					}
+					check(metrics.getBins() == bins.length, what + ": " + metrics.getBins() + " bins reported for "
+							+ bins.length);
+					check(metrics.getCount(Metric.PIECES_PLACED) == 300, what + ": "
+							+ metrics.getCount(Metric.PIECES_PLACED) + " pieces placed");
+					// the skyline only offers the space above its segments, which the short side
+					// fit over all bins fills worse than the skyline rule of a single bin
+					if (options.getEngine() == PackingEngine.MAXIMAL_RECTANGLES) {
+						int binByBin = BinPacking.BinPackingStrategy(rectangles(seed, 300), BIN, options).length;
+						check(Math.abs(bins.length - binByBin) <= 1, what + ": " + bins.length + " bins, "
+								+ binByBin + " bin by bin");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Orders with irregular pieces, and rules other than best short side
+	 * fit, are packed bin by bin.
+	 */
+	private static void fallback() {
+		for (PlacementRule rule : PlacementRule.values()) {
+			PackingOptions options = PackingOptions.DEFAULT.withPlacementRule(rule);
+			checkLayout(BinPacking.FirstFitDecreasingStrategy(mixedOrder(5, 200), BIN, options), mixedOrder(5, 200));
+			checkLayout(BinPacking.FirstFitDecreasingStrategy(rectangles(5, 200), BIN, options), rectangles(5, 200));
+		}
+	}
+
+	/**
+	 * Two large pieces open a bin each; the squares coming last fill the
+	 * space left in both, without a third bin.
+	 */
+	private static void reuse() {
+		Bin[] bins = BinPacking.FirstFitDecreasingStrategy(largeThenSquares(), BIN, PackingOptions.DEFAULT);
+		checkLayout(bins, largeThenSquares());
+		check(bins.length == 2, "space left in the open bins not reused: " + bins.length + " bins");
+	}
+
+	private static void tooLarge() {
+		MArea[] pieces = rectangles(1, 20);
+		pieces[10] = new MArea(new Rectangle2D.Double(0, 0, 500, 10), 10);
+		try {
+			BinPacking.FirstFitDecreasingStrategy(pieces, BIN, PackingOptions.DEFAULT);
+		} catch (IllegalArgumentException e) {
+			return;
+		}
+		throw new AssertionError("a piece larger than the bin was accepted");
+	}
+
+	private static MArea[] rectangles(long seed, int n) {
+		Random random = new Random(seed);
+		MArea[] pieces = new MArea[n];
+		for (int i = 0; i < n; i++) {
+			pieces[i] = new MArea(new Rectangle2D.Double(0, 0, 5 + random.nextInt(200), 5 + random.nextInt(150)), i);
+		}
+		return pieces;
+	}
+
+	private static MArea[] largeThenSquares() {
+		MArea[] pieces = new MArea[14];
+		for (int i = 0; i < pieces.length; i++) {
+			Rectangle2D.Double shape = i < 2 ? new Rectangle2D.Double(0, 0, 300, 200)
+					: new Rectangle2D.Double(0, 0, 100, 100);
+			pieces[i] = new MArea(shape, i);
+		}
+		return pieces;
+	}
+}
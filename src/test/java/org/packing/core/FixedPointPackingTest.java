@@ -0,0 +1,58 @@
+package test.java.org.packing.core;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.core.PieceOrder;
+import main.java.org.packing.core.PlacementRule;
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import static test.java.org.packing.core.Layouts.checkLayout;
+
+/**
+ * Rectangles off the grid of the fixed point packer are packed on the Area
+ * path of the bins, which must place them as exactly as the other paths.
+ */
+public class FixedPointPackingTest {
+
+	private static final Dimension BIN = new Dimension(300, 200);
+
+	public static void main(String[] args) {
+		for (long seed = 1; seed <= 5; seed++) {
+			for (PlacementRule rule : PlacementRule.values()) {
+				for (PieceOrder order : PieceOrder.values()) {
+					PackingOptions options = PackingOptions.DEFAULT.withFixedPointScale(1).withPlacementRule(rule)
+							.withPieceOrder(order);
+					MArea[] pieces = fractionalOrder(seed, 80);
+					Bin[] bins = BinPacking.BinPackingStrategy(pieces, BIN, options);
+					try {
+						checkLayout(bins, fractionalOrder(seed, 80));
+					} catch (AssertionError e) {
+						throw new AssertionError(rule + "/" + order + ", seed " + seed + ": " + e.getMessage(), e);
+					}
+				}
+			}
+		}
+		System.out.println("FixedPointPackingTest OK");
+	}
+
+	/**
+	 * Rectangles with half and quarter units in their sides, mixed with whole
+	 * ones.
+	 */
+	private static MArea[] fractionalOrder(long seed, int n) {
+		Random random = new Random(seed);
+		MArea[] pieces = new MArea[n];
+		for (int i = 0; i < n; i++) {
+			double w = 5 + random.nextInt(80) + (i % 3 == 0 ? 0 : random.nextInt(4) / 4.0);
+			double h = 5 + random.nextInt(60) + (i % 2 == 0 ? 0 : 0.5);
+			pieces[i] = new MArea(new Rectangle2D.Double(0, 0, w, h), i);
+		}
+		return pieces;
+	}
+}
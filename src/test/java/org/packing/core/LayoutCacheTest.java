@@ -0,0 +1,109 @@
+package test.java.org.packing.core;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.LayoutCache;
+import main.java.org.packing.core.MetricsRecorder;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.utils.LayoutFile;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static test.java.org.packing.core.Layouts.check;
+import static test.java.org.packing.core.Layouts.checkLayout;
+
+/**
+ * Callers with their own metrics share the cached layouts, and every caller
+ * gets bins carrying its own options. A corrupted entry of the disk tier is
+ * a miss, and a disk tier that cannot be written leaves the cache in memory.
+ */
+public class LayoutCacheTest {
+
+	private static final Dimension BIN = new Dimension(400, 300);
+
+	public static void main(String[] args) throws IOException {
+		LayoutCache cache = new LayoutCache(1_000_000);
+		MetricsRecorder first = new MetricsRecorder();
+		MetricsRecorder second = new MetricsRecorder();
+
+		MArea[] pieces = order();
+		PackingOptions firstOptions = PackingOptions.DEFAULT.withMetrics(first);
+		Bin[] packed = cache.BinPackingStrategy(pieces, BIN, firstOptions);
+		checkLayout(packed, order());
+		check(first.getOrders() == 1, "first caller reported " + first.getOrders() + " orders");
+
+		PackingOptions secondOptions = PackingOptions.DEFAULT.withMetrics(second);
+		Bin[] restored = cache.BinPackingStrategy(order(), BIN, secondOptions);
+		check(cache.getHits() == 1, "the second caller missed the entry of the first");
+		checkLayout(restored, order());
+		for (Bin bin : restored) {
+			check(bin.getOptions().getMetrics() == second, "restored bin reports to " + bin.getOptions().getMetrics());
+		}
+		check(first.getOrders() == 1, "first caller reported the hit of the second");
+
+		Path directory = Files.createTempDirectory("layouts");
+		try {
+			checkCorruptedEntry(directory);
+		} finally {
+			try (Stream<Path> files = Files.list(directory)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+
+		LayoutCache unwritable = new LayoutCache(1_000_000, directory.resolve("missing"));
+		checkLayout(unwritable.BinPackingStrategy(order(), BIN, PackingOptions.DEFAULT), order());
+		checkLayout(unwritable.BinPackingStrategy(order(), BIN, PackingOptions.DEFAULT), order());
+		check(unwritable.getHits() == 1, "the cache did not go on in memory after failing to write");
+		System.out.println("LayoutCacheTest OK");
+	}
+
+	/**
+	 * Gives the first two placements of the entry written by one cache the
+	 * same piece ID, then checks that a cold cache on the same directory
+	 * packs the order again.
+	 */
+	private static void checkCorruptedEntry(Path directory) throws IOException {
+		new LayoutCache(1_000_000, directory).BinPackingStrategy(order(), BIN, PackingOptions.DEFAULT);
+		LayoutCache warm = new LayoutCache(1_000_000, directory);
+		checkLayout(warm.BinPackingStrategy(order(), BIN, PackingOptions.DEFAULT), order());
+		check(warm.getDiskHits() == 1, "the entry written to disk was not read back");
+
+		Path placements;
+		try (Stream<Path> files = Files.list(directory)) {
+			placements = files.filter(f -> f.toString().endsWith(".placements")).findFirst().orElseThrow();
+		}
+		try (FileChannel channel = FileChannel.open(placements, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer id = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(id, LayoutFile.HEADER_SIZE + 4);
+			id.flip();
+			channel.write(id, LayoutFile.HEADER_SIZE + LayoutFile.PLACEMENT_RECORD_SIZE + 4);
+		}
+
+		LayoutCache cold = new LayoutCache(1_000_000, directory);
+		checkLayout(cold.BinPackingStrategy(order(), BIN, PackingOptions.DEFAULT), order());
+		check(cold.getDiskHits() == 0 && cold.getMisses() == 1, "the corrupted entry was not a miss");
+	}
+
+	private static MArea[] order() {
+		Random random = new Random(11);
+		MArea[] pieces = new MArea[80];
+		for (int i = 0; i < pieces.length; i++) {
+			pieces[i] = new MArea(new Rectangle2D.Double(0, 0, 10 + random.nextInt(90), 10 + random.nextInt(70)), i);
+		}
+		return pieces;
+	}
+}
@@ -0,0 +1,174 @@
+package test.java.org.packing.core;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Orders and checks shared by the packing tests. The tests are plain
+ * programs: each one runs its cases from main and throws an
+ * {@link AssertionError} on the first failure.
+ */
+public final class Layouts {
+	/**
+	 * Tolerance on coordinates and areas.
+	 */
+	public static final double EPSILON = 1e-6;
+
+	private Layouts() {
+	}
+
+	/**
+	 * Random order mixing rectangles of odd and even sizes with a pentagon
+	 * every seventh piece, which sends every piece through the Area path of
+	 * the bins.
+	 *
+	 * @param seed random seed.
+	 * @param n    number of pieces.
+	 * @return pieces with IDs from 0.
+	 */
+	public static MArea[] mixedOrder(long seed, int n) {
+		Random random = new Random(seed);
+		MArea[] pieces = new MArea[n];
+		for (int i = 0; i < n; i++) {
+			int w = 5 + random.nextInt(150);
+			int h = 5 + random.nextInt(100);
+			if (i % 7 == 0) {
+				Path2D.Double path = new Path2D.Double();
+				path.moveTo(0, 0);
+				path.lineTo(w, 0);
+				path.lineTo(w, h / 2.0);
+				path.lineTo(w / 2.0, h);
+				path.lineTo(0, h);
+				path.closePath();
+				pieces[i] = new MArea(path, i);
+			} else {
+				pieces[i] = new MArea(new Rectangle2D.Double(0, 0, w, h), i);
+			}
+		}
+		return pieces;
+	}
+
+	/**
+	 * Checks that the bins hold every piece exactly once, with its area,
+	 * inside the bin and without overlapping another piece, and that the
+	 * geometry of every piece, as read by plain {@link Area} operations, is
+	 * where its bounds say.
+	 *
+	 * @param bins   packed bins.
+	 * @param pieces pieces of the order, with distinct IDs.
+	 */
+	public static void checkLayout(Bin[] bins, MArea[] pieces) {
+		int maxID = 0;
+		for (MArea piece : pieces) {
+			maxID = Math.max(maxID, piece.getID());
+		}
+		MArea[] byID = new MArea[maxID + 1];
+		for (MArea piece : pieces) {
+			byID[piece.getID()] = piece;
+		}
+		boolean[] seen = new boolean[maxID + 1];
+		for (int b = 0; b < bins.length; b++) {
+			Dimension dimension = bins[b].getDimension();
+			MArea[] placed = bins[b].getPlacedPieces();
+			for (int i = 0; i < placed.length; i++) {
+				MArea piece = placed[i];
+				int id = piece.getID();
+				check(id >= 0 && id <= maxID && byID[id] != null, "unknown piece " + id + " in bin " + b);
+				check(!seen[id], "piece " + id + " placed twice");
+				seen[id] = true;
+				check(Math.abs(piece.getArea() - byID[id].getArea()) < EPSILON * Math.max(1, byID[id].getArea()),
+						"piece " + id + " changed area");
+				Rectangle2D bounds = piece.getBounds2D();
+				check(bounds.getMinX() > -EPSILON && bounds.getMinY() > -EPSILON
+								&& bounds.getMaxX() < dimension.getWidth() + EPSILON
+								&& bounds.getMaxY() < dimension.getHeight() + EPSILON,
+						"piece " + id + " outside bin " + b + ": " + bounds);
+				Rectangle2D geometry = new Area(piece).getBounds2D();
+				check(Math.abs(geometry.getX() - bounds.getX()) < EPSILON
+								&& Math.abs(geometry.getY() - bounds.getY()) < EPSILON,
+						"piece " + id + " handed out with a pending pose: " + geometry + " instead of " + bounds);
+				for (int j = 0; j < i; j++) {
+					Rectangle2D other = placed[j].getBounds2D();
+					boolean boxesOverlap = bounds.getMinX() < other.getMaxX() - EPSILON
+							&& other.getMinX() < bounds.getMaxX() - EPSILON
+							&& bounds.getMinY() < other.getMaxY() - EPSILON
+							&& other.getMinY() < bounds.getMaxY() - EPSILON;
+					check(!boxesOverlap || !overlap(piece, placed[j]),
+							"pieces " + id + " and " + placed[j].getID() + " overlap in bin " + b);
+				}
+			}
+		}
+		for (MArea piece : pieces) {
+			check(seen[piece.getID()], "piece " + piece.getID() + " missing");
+		}
+	}
+
+	/**
+	 * @return bounds and rotation of every piece, to tell later whether the
+	 * pieces were modified.
+	 */
+	public static double[][] snapshot(MArea[] pieces) {
+		double[][] state = new double[pieces.length][];
+		for (int i = 0; i < pieces.length; i++) {
+			Rectangle2D bounds = pieces[i].getBounds2D();
+			state[i] = new double[]{bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight(),
+					pieces[i].getRotation()};
+		}
+		return state;
+	}
+
+	/**
+	 * @return the layout of the bins, to tell later whether they were
+	 * modified.
+	 */
+	public static double[][][] snapshot(Bin[] bins) {
+		double[][][] state = new double[bins.length][][];
+		for (int b = 0; b < bins.length; b++) {
+			state[b] = snapshot(bins[b].getPlacedPieces());
+		}
+		return state;
+	}
+
+	public static void checkUnchanged(double[][] before, double[][] after, String what) {
+		check(before.length == after.length, what + " changed size");
+		for (int i = 0; i < before.length; i++) {
+			check(Arrays.equals(before[i], after[i]), what + " changed at " + i + ": "
+					+ Arrays.toString(before[i]) + " -> " + Arrays.toString(after[i]));
+		}
+	}
+
+	public static void checkUnchanged(double[][][] before, double[][][] after, String what) {
+		check(before.length == after.length, what + " changed size");
+		for (int b = 0; b < before.length; b++) {
+			checkUnchanged(before[b], after[b], what + " bin " + b);
+		}
+	}
+
+	public static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	/**
+	 * Overlap by more than rounding slivers along touching edges. The pieces
+	 * are materialized first, since plain Area operations ignore their pose.
+	 */
+	private static boolean overlap(MArea a, MArea b) {
+		Area common = new Area(a.materialize());
+		common.intersect(b.materialize());
+		if (common.isEmpty()) {
+			return false;
+		}
+		Rectangle2D bounds = common.getBounds2D();
+		return bounds.getWidth() > EPSILON && bounds.getHeight() > EPSILON;
+	}
+}
@@ -0,0 +1,46 @@
+package test.java.org.packing.core;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.LocalSearchPacking;
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static test.java.org.packing.core.Layouts.checkLayout;
+import static test.java.org.packing.core.Layouts.checkUnchanged;
+import static test.java.org.packing.core.Layouts.mixedOrder;
+import static test.java.org.packing.core.Layouts.snapshot;
+
+/**
+ * The search packs again the pieces of the bins it is given: the improved
+ * solution must be a valid layout and the given bins must be left as they
+ * were.
+ */
+public class LocalSearchPackingTest {
+
+	private static final Dimension BIN = new Dimension(400, 300);
+
+	public static void main(String[] args) {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (long seed = 1; seed <= 12; seed++) {
+				MArea[] pieces = mixedOrder(seed, 60);
+				Bin[] bins = BinPacking.BinPackingStrategy(pieces, BIN);
+				checkLayout(bins, pieces);
+				double[][][] before = snapshot(bins);
+				Bin[] improved = LocalSearchPacking.LocalSearchStrategy(bins, 300, TimeUnit.MILLISECONDS, 2, seed,
+						executor);
+				checkLayout(improved, pieces);
+				checkUnchanged(before, snapshot(bins), "input bins of seed " + seed);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		System.out.println("LocalSearchPackingTest OK");
+	}
+}
@@ -0,0 +1,165 @@
+package test.java.org.packing.core;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.NfpNesting;
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.ForkJoinPool;
+
+import static test.java.org.packing.core.Layouts.EPSILON;
+import static test.java.org.packing.core.Layouts.check;
+import static test.java.org.packing.core.Layouts.checkLayout;
+
+/**
+ * The no-fit polygon nesting places pieces by their outline: non convex
+ * pieces are decomposed into convex parts whose no-fit polygons are joined,
+ * so a piece fits in the notch of another, and positions found on the
+ * flattened outlines are confirmed on the real curves.
+ */
+public class NfpNestingTest {
+
+	public static void main(String[] args) {
+		notch();
+		curves();
+		mixed();
+		cache();
+		tooLarge();
+		System.out.println("NfpNestingTest OK");
+	}
+
+	/**
+	 * A U shape covering the whole bin but its notch, and a square filling
+	 * the depth of the notch: the square only fits if the U is not taken for
+	 * its convex hull.
+	 */
+	private static void notch() {
+		Dimension bin = new Dimension(310, 200);
+		MArea[] pieces = {u(0), new MArea(new Rectangle2D.Double(0, 0, 100, 100), 1)};
+		NfpNesting nesting = new NfpNesting(bin, new double[]{0}, MArea::getID, ForkJoinPool.commonPool());
+		Bin[] bins = nesting.NestingStrategy(pieces);
+		checkLayout(bins, new MArea[]{u(0), new MArea(new Rectangle2D.Double(0, 0, 100, 100), 1)});
+		check(bins.length == 1, "the square did not go in the notch: " + bins.length + " bins");
+		for (MArea piece : bins[0].getPlacedPieces()) {
+			if (piece.getID() == 1) {
+				Rectangle2D bounds = piece.getBounds2D();
+				check(Math.abs(bounds.getX() - 100) < EPSILON && Math.abs(bounds.getY() - 100) < EPSILON,
+						"square placed at " + bounds + " instead of in the notch");
+			}
+		}
+	}
+
+	/**
+	 * Discs are flattened to build their no-fit polygons; the real discs
+	 * must not overlap.
+	 */
+	private static void curves() {
+		Dimension bin = new Dimension(250, 250);
+		Bin[] bins = NfpNesting.NestingStrategy(discs(12), bin);
+		checkLayout(bins, discs(12));
+	}
+
+	/**
+	 * L shapes, triangles and discs with quarter turns, on several threads.
+	 */
+	private static void mixed() {
+		Dimension bin = new Dimension(400, 300);
+		NfpNesting nesting = new NfpNesting(bin, new double[]{0, 90, 180, 270}, MArea::getID, new ForkJoinPool(4));
+		Bin[] bins = nesting.NestingStrategy(mixedShapes());
+		checkLayout(bins, mixedShapes());
+	}
+
+	/**
+	 * Pieces of the same shape id share their no-fit polygons, across
+	 * orders too.
+	 */
+	private static void cache() {
+		Dimension bin = new Dimension(400, 300);
+		NfpNesting nesting = new NfpNesting(bin, new double[]{0, 90}, piece -> piece.getID() % 3,
+				ForkJoinPool.commonPool());
+		checkLayout(nesting.NestingStrategy(repeated()), repeated());
+		int cached = nesting.getCachedNoFitPolygons();
+		check(cached > 0 && cached <= 3 * 3 * 2 * 2, cached + " no-fit polygons cached for 3 shapes");
+		checkLayout(nesting.NestingStrategy(repeated()), repeated());
+		check(nesting.getCachedNoFitPolygons() == cached, "the second order built new no-fit polygons");
+	}
+
+	private static void tooLarge() {
+		try {
+			NfpNesting.NestingStrategy(new MArea[]{new MArea(new Rectangle2D.Double(0, 0, 500, 10), 0)},
+					new Dimension(100, 100));
+		} catch (IllegalArgumentException e) {
+			return;
+		}
+		throw new AssertionError("a piece larger than the bin was accepted");
+	}
+
+	private static MArea u(int id) {
+		Path2D.Double path = new Path2D.Double();
+		path.moveTo(0, 0);
+		path.lineTo(310, 0);
+		path.lineTo(310, 200);
+		path.lineTo(210, 200);
+		path.lineTo(210, 100);
+		path.lineTo(100, 100);
+		path.lineTo(100, 200);
+		path.lineTo(0, 200);
+		path.closePath();
+		return new MArea(path, id);
+	}
+
+	private static MArea[] discs(int n) {
+		MArea[] pieces = new MArea[n];
+		for (int i = 0; i < n; i++) {
+			Path2D.Double path = new Path2D.Double(new Ellipse2D.Double(0, 0, 60, 60));
+			pieces[i] = new MArea(path, i);
+		}
+		return pieces;
+	}
+
+	private static MArea[] mixedShapes() {
+		MArea[] pieces = new MArea[24];
+		for (int i = 0; i < pieces.length; i++) {
+			double w = 40 + 7 * (i % 5);
+			double h = 30 + 11 * (i % 4);
+			Path2D.Double path = new Path2D.Double();
+			switch (i % 3) {
+				case 0:
+					path.moveTo(0, 0);
+					path.lineTo(w, 0);
+					path.lineTo(w, h / 3);
+					path.lineTo(w / 3, h / 3);
+					path.lineTo(w / 3, h);
+					path.lineTo(0, h);
+					path.closePath();
+					break;
+				case 1:
+					path.moveTo(0, 0);
+					path.lineTo(w, 0);
+					path.lineTo(w / 2, h);
+					path.closePath();
+					break;
+				default:
+					path.append(new Ellipse2D.Double(0, 0, w, h), false);
+			}
+			pieces[i] = new MArea(path, i);
+		}
+		return pieces;
+	}
+
+	/**
+	 * Three shapes repeated, piece i having shape i modulo 3.
+	 */
+	private static MArea[] repeated() {
+		MArea[] shapes = mixedShapes();
+		MArea[] pieces = new MArea[15];
+		for (int i = 0; i < pieces.length; i++) {
+			pieces[i] = new MArea(shapes[i % 3], i);
+		}
+		return pieces;
+	}
+}
@@ -0,0 +1,45 @@
+package test.java.org.packing.core;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.Metric;
+import main.java.org.packing.core.MetricsRecorder;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static test.java.org.packing.core.Layouts.check;
+import static test.java.org.packing.core.Layouts.checkLayout;
+import static test.java.org.packing.core.Layouts.mixedOrder;
+
+/**
+ * The parallel strategy packs every piece once and reports the bins of its
+ * result only, not the last bins of the partitions that it packs again.
+ */
+public class ParallelBinPackingTest {
+
+	private static final Dimension BIN = new Dimension(400, 300);
+
+	public static void main(String[] args) {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int parallelism = 1; parallelism <= 4; parallelism++) {
+				MetricsRecorder metrics = new MetricsRecorder();
+				Bin[] bins = BinPacking.ParallelBinPackingStrategy(mixedOrder(parallelism, 300), BIN,
+						PackingOptions.DEFAULT.withMetrics(metrics), parallelism, 7, pool);
+				checkLayout(bins, mixedOrder(parallelism, 300));
+				check(metrics.getOrders() == 1, "parallelism " + parallelism + ": " + metrics.getOrders() + " orders");
+				check(metrics.getBins() == bins.length, "parallelism " + parallelism + ": " + metrics.getBins()
+						+ " bins reported for " + bins.length);
+				check(metrics.getCount(Metric.PIECES_PLACED) == 300, "parallelism " + parallelism + ": "
+						+ metrics.getCount(Metric.PIECES_PLACED) + " pieces placed for 300");
+			}
+		} finally {
+			pool.shutdown();
+		}
+		System.out.println("ParallelBinPackingTest OK");
+	}
+}
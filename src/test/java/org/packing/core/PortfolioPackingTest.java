@@ -0,0 +1,61 @@
+package test.java.org.packing.core;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.PortfolioPacking;
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static test.java.org.packing.core.Layouts.check;
+import static test.java.org.packing.core.Layouts.checkLayout;
+import static test.java.org.packing.core.Layouts.checkUnchanged;
+import static test.java.org.packing.core.Layouts.mixedOrder;
+import static test.java.org.packing.core.Layouts.snapshot;
+
+/**
+ * The portfolio races its runs on the same order: each run must pack its own
+ * copies, so that the result is valid and the caller's pieces are left as
+ * they were. The race ends with its budget, even when no run has finished.
+ */
+public class PortfolioPackingTest {
+
+	private static final Dimension BIN = new Dimension(400, 300);
+
+	public static void main(String[] args) {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (long seed = 1; seed <= 12; seed++) {
+				MArea[] pieces = mixedOrder(seed, 60);
+				double[][] before = snapshot(pieces);
+				Bin[] bins = PortfolioPacking.PortfolioStrategy(pieces, BIN, PortfolioPacking.defaultPortfolio(),
+						1, TimeUnit.HOURS, executor);
+				checkLayout(bins, pieces);
+				checkUnchanged(before, snapshot(pieces), "input pieces of seed " + seed);
+			}
+			deadline(executor);
+		} finally {
+			executor.shutdownNow();
+		}
+		System.out.println("PortfolioPackingTest OK");
+	}
+
+	/**
+	 * A budget far too short for the order: the call returns about when the
+	 * budget expires, with no result or a valid one.
+	 */
+	private static void deadline(ExecutorService executor) {
+		MArea[] pieces = mixedOrder(13, 5000);
+		long start = System.nanoTime();
+		Bin[] bins = PortfolioPacking.PortfolioStrategy(pieces, BIN, PortfolioPacking.defaultPortfolio(),
+				20, TimeUnit.MILLISECONDS, executor);
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		check(millis < 1000, "a 20 ms budget took " + millis + " ms");
+		if (bins != null) {
+			checkLayout(bins, pieces);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package test.java.org.packing.core;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.PackingEngine;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.core.PieceOrder;
+import main.java.org.packing.core.PlacementRule;
+import main.java.org.packing.primitives.MArea;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import static test.java.org.packing.core.Layouts.check;
+import static test.java.org.packing.core.Layouts.checkLayout;
+import static test.java.org.packing.core.Layouts.mixedOrder;
+
+/**
+ * The skyline engines, with and without their waste map, pack valid layouts
+ * with every rule and order, through both strategies, and fill a bin
+ * exactly when the pieces tile it.
+ */
+public class SkylinePackingTest {
+
+	private static final Dimension BIN = new Dimension(400, 300);
+
+	private static final PackingEngine[] ENGINES = {PackingEngine.SKYLINE, PackingEngine.SKYLINE_WASTE_MAP};
+
+	public static void main(String[] args) {
+		for (PackingEngine engine : ENGINES) {
+			for (PlacementRule rule : PlacementRule.values()) {
+				for (PieceOrder order : PieceOrder.values()) {
+					PackingOptions options = PackingOptions.DEFAULT.withEngine(engine).withPlacementRule(rule)
+							.withPieceOrder(order);
+					for (long seed = 1; seed <= 3; seed++) {
+						String what = engine + "/" + rule + "/" + order + ", seed " + seed;
+						checkCase(BinPacking.BinPackingStrategy(mixedOrder(seed, 150), BIN, options),
+								mixedOrder(seed, 150), what);
+						checkCase(BinPacking.BinPackingStrategy(rectangles(seed, 150), BIN, options),
+								rectangles(seed, 150), what + ", rectangles");
+						checkCase(BinPacking.FirstFitDecreasingStrategy(rectangles(seed, 150), BIN, options),
+								rectangles(seed, 150), what + ", first fit decreasing");
+					}
+				}
+			}
+			tiles(engine);
+		}
+		System.out.println("SkylinePackingTest OK");
+	}
+
+	/**
+	 * Squares tiling the bin exactly, then one more: the skyline must close
+	 * the first bin full, whatever piece it rejected last.
+	 */
+	private static void tiles(PackingEngine engine) {
+		for (PlacementRule rule : PlacementRule.values()) {
+			PackingOptions options = PackingOptions.DEFAULT.withEngine(engine).withPlacementRule(rule);
+			Bin[] bins = BinPacking.BinPackingStrategy(squares(13), BIN, options);
+			checkLayout(bins, squares(13));
+			check(bins.length == 2 && bins[0].getPlacedCount() == 12, engine + "/" + rule + ": "
+					+ bins.length + " bins, " + bins[0].getPlacedCount() + " squares in the first");
+		}
+	}
+
+	private static void checkCase(Bin[] bins, MArea[] pieces, String what) {
+		try {
+			checkLayout(bins, pieces);
+		} catch (AssertionError e) {
+			throw new AssertionError(what + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Rectangles from slivers to half the bin, some as wide or as high as
+	 * the bin.
+	 */
+	private static MArea[] rectangles(long seed, int n) {
+		Random random = new Random(seed);
+		MArea[] pieces = new MArea[n];
+		for (int i = 0; i < n; i++) {
+			double w = i % 25 == 0 ? BIN.width : 1 + random.nextInt(200);
+			double h = i % 31 == 0 ? BIN.height : 1 + random.nextInt(150);
+			pieces[i] = new MArea(new Rectangle2D.Double(0, 0, w, h), i);
+		}
+		return pieces;
+	}
+
+	private static MArea[] squares(int n) {
+		MArea[] pieces = new MArea[n];
+		for (int i = 0; i < n; i++) {
+			pieces[i] = new MArea(new Rectangle2D.Double(0, 0, 100, 100), i);
+		}
+		return pieces;
+	}
+}
@@ -0,0 +1,128 @@
+package test.java.org.packing.utils;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.utils.LayoutFile;
+import main.java.org.packing.utils.PieceList;
+import main.java.org.packing.utils.PlacementList;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static test.java.org.packing.core.Layouts.check;
+import static test.java.org.packing.core.Layouts.mixedOrder;
+
+/**
+ * Piece lists and placements read back from a layout file as they were
+ * written, replacing files leaves nothing behind, and truncated files or
+ * files of another kind are rejected.
+ */
+public class LayoutFileTest {
+
+    private static final Dimension BIN = new Dimension(400, 300);
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("layouts");
+        try {
+            pieces(directory);
+            placements(directory);
+            rejected(directory);
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+        System.out.println("LayoutFileTest OK");
+    }
+
+    /**
+     * Pieces with several copies are written once per copy.
+     */
+    private static void pieces(Path directory) throws IOException {
+        double[] widths = {10.5, 20, 0.1, 399};
+        double[] heights = {3, 1e-3, 7.25, 299.75};
+        int[] quantities = {2, 0, 3, 1};
+        PieceList written = new PieceList(BIN, 0, widths, heights, quantities, widths.length);
+        Path file = directory.resolve("order.bpak");
+        LayoutFile.writePieces(file, written);
+        PieceList read = LayoutFile.readPieces(file);
+        PieceList expected = written.expand();
+        check(read.getBinDimension().equals(BIN), "bin " + read.getBinDimension());
+        check(read.size() == 6 && read.size() == expected.size(), read.size() + " pieces read");
+        for (int i = 0; i < read.size(); i++) {
+            check(read.getWidth(i) == expected.getWidth(i) && read.getHeight(i) == expected.getHeight(i)
+                    && read.getQuantity(i) == 1, "piece " + i + " differs");
+            check(read.getPiece(i).getID() == i, "piece " + i + " has ID " + read.getPiece(i).getID());
+        }
+        LayoutFile.writePieces(file, new PieceList(BIN, 0, new double[0], new double[0], 0));
+        check(LayoutFile.readPieces(file).size() == 0, "the empty list replacing the order was not read");
+        try (Stream<Path> files = Files.list(directory)) {
+            check(files.count() == 1, "temporary files left in " + directory);
+        }
+    }
+
+    private static void placements(Path directory) throws IOException {
+        Bin[] bins = BinPacking.BinPackingStrategy(mixedOrder(3, 200), BIN);
+        PlacementList written = PlacementList.of(bins);
+        Path file = directory.resolve("placements.bpak");
+        LayoutFile.writePlacements(file, written);
+        PlacementList read = LayoutFile.readPlacements(file);
+        check(read.getBinDimension().equals(BIN), "bin " + read.getBinDimension());
+        check(read.size() == 200 && read.size() == written.size(), read.size() + " placements read");
+        boolean rotated = false;
+        for (int i = 0; i < read.size(); i++) {
+            check(read.getBin(i) == written.getBin(i) && read.getID(i) == written.getID(i)
+                    && read.getX(i) == written.getX(i) && read.getY(i) == written.getY(i)
+                    && read.getQuarterTurns(i) == written.getQuarterTurns(i), "placement " + i + " differs");
+            rotated |= read.isRotated(i);
+        }
+        check(rotated, "no rotated piece in the layout, the rotations are not tested");
+    }
+
+    private static void rejected(Path directory) throws IOException {
+        Path pieces = directory.resolve("order.bpak");
+        LayoutFile.writePieces(pieces, new PieceList(BIN, 0, new double[]{1, 2}, new double[]{3, 4}, 2));
+        expectFailure(() -> LayoutFile.readPlacements(pieces), "pieces read as placements");
+
+        Path placements = directory.resolve("placements.bpak");
+        expectFailure(() -> LayoutFile.readPieces(placements), "placements read as pieces");
+
+        try (FileChannel channel = FileChannel.open(placements, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        expectFailure(() -> LayoutFile.readPlacements(placements), "truncated placements");
+
+        try (FileChannel channel = FileChannel.open(pieces, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'P', 'K'}), 0);
+        }
+        expectFailure(() -> LayoutFile.readPieces(pieces), "bad magic");
+
+        try (FileChannel channel = FileChannel.open(pieces, StandardOpenOption.WRITE)) {
+            channel.truncate(LayoutFile.HEADER_SIZE - 1);
+        }
+        expectFailure(() -> LayoutFile.readPieces(pieces), "file shorter than its header");
+    }
+
+    private interface Read {
+        void run() throws IOException;
+    }
+
+    private static void expectFailure(Read read, String what) {
+        try {
+            read.run();
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError(what + ": accepted");
+    }
+}
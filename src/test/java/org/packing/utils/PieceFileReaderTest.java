@@ -0,0 +1,188 @@
+package test.java.org.packing.utils;
+
+
+import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.utils.PieceFileReader;
+import main.java.org.packing.utils.PieceList;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static test.java.org.packing.core.Layouts.check;
+
+/**
+ * The memory mapped reader parses numbers exactly as
+ * {@link Double#parseDouble} does, reads the same pieces whatever the size
+ * of its windows and of its chunks, and reads the optional quantity column.
+ */
+public class PieceFileReaderTest {
+
+    public static void main(String[] args) throws IOException {
+        numbers();
+        windows();
+        quantities();
+        malformed();
+        System.out.println("PieceFileReaderTest OK");
+    }
+
+    /**
+     * Numbers of every form, on both the exact and the fallback paths.
+     */
+    private static void numbers() throws IOException {
+        Random random = new Random(5);
+        List<String> tokens = new ArrayList<>(List.of("0", "7", "+3", "12.5", "0.1", "0.30000000000000004", ".5",
+                "5.", "1e3", "1.5E-2", "2.5e+1", "123456789012345", "1234567890123456789", "0.000000000000000000000001",
+                "4.9e-324", "1.7976931348623157e308", "00012.0100"));
+        for (int i = 0; i < 2000; i++) {
+            switch (i % 4) {
+                case 0:
+                    tokens.add(Double.toString(random.nextDouble() * 1000));
+                    break;
+                case 1:
+                    tokens.add(String.format(Locale.ROOT, "%.3f", random.nextDouble() * 1e6));
+                    break;
+                case 2:
+                    tokens.add(Integer.toString(random.nextInt(100_000)));
+                    break;
+                default:
+                    tokens.add(String.format(Locale.ROOT, "%.17g", random.nextDouble() * Math.pow(10, random.nextInt(30) - 15)));
+            }
+        }
+        StringBuilder order = new StringBuilder("3000 2000\n" + tokens.size() + "\n");
+        for (String token : tokens) {
+            order.append(token).append(' ').append(token).append('\n');
+        }
+        PieceList pieces = read(order.toString(), PieceFileReader.WINDOW);
+        check(pieces.size() == tokens.size(), pieces.size() + " pieces read for " + tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            double expected = Double.parseDouble(tokens.get(i));
+            check(pieces.getWidth(i) == expected && pieces.getHeight(i) == expected,
+                    tokens.get(i) + " read as " + pieces.getWidth(i));
+        }
+    }
+
+    /**
+     * Windows smaller than a line and larger than the file, and chunks of
+     * several sizes, read the same pieces.
+     */
+    private static void windows() throws IOException {
+        Random random = new Random(9);
+        StringBuilder order = new StringBuilder("3000 2000\n500\n");
+        for (int i = 0; i < 500; i++) {
+            order.append(1 + random.nextInt(3000)).append('.').append(random.nextInt(1000)).append("   ")
+                    .append(random.nextDouble() * 2000);
+            if (i % 3 == 0) {
+                order.append(' ').append(random.nextInt(5));
+            }
+            if (i % 5 == 0) {
+                order.append(" # piece ").append(i);
+            }
+            order.append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        PieceList expected = read(order.toString(), PieceFileReader.WINDOW);
+        for (long window : new long[]{64, 65, 100, 127, 4096}) {
+            checkSame(expected, read(order.toString(), window), "window of " + window + " bytes");
+            for (int chunk : new int[]{1, 7, 499}) {
+                checkSame(expected, readChunks(order.toString(), window, chunk),
+                        "window of " + window + " bytes, chunks of " + chunk);
+            }
+        }
+        try {
+            read(order.toString(), 63);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError("a window shorter than the longest number was accepted");
+    }
+
+    private static void quantities() throws IOException {
+        PieceList pieces = read("100 100\n6\n10 20 3 # three\n5 5\n7 8 # none\n1 2 0\n3 4\t2\n9 9 1\n",
+                PieceFileReader.WINDOW);
+        int[] quantities = {3, 1, 1, 0, 2, 1};
+        int[] firstIDs = {0, 3, 4, 5, 5, 7};
+        check(pieces.size() == quantities.length, pieces.size() + " lines");
+        check(pieces.getPieceCount() == 8, pieces.getPieceCount() + " pieces");
+        for (int i = 0; i < quantities.length; i++) {
+            check(pieces.getQuantity(i) == quantities[i], "quantity of line " + i + ": " + pieces.getQuantity(i));
+        }
+        MArea[] copies = pieces.toMAreas();
+        for (int i = 0; i < copies.length; i++) {
+            check(copies[i].getID() == i, "piece " + i + " has ID " + copies[i].getID());
+        }
+        PieceList expanded = pieces.expand();
+        for (int i = 0, k = 0; i < quantities.length; i++) {
+            check(k == firstIDs[i], "line " + i + " starts at copy " + k);
+            for (int c = 0; c < quantities[i]; c++, k++) {
+                check(expanded.getWidth(k) == pieces.getWidth(i), "copy " + k + " of line " + i);
+            }
+        }
+    }
+
+    private static void malformed() {
+        String[] orders = {
+                "100 100\n2\n10 20\n",
+                "100 100\n1\n10x 20\n",
+                "100 100\n1\n10 -\n",
+                "100.5 100\n1\n10 20\n",
+                "100 100\n1\n10 20 1.5\n"
+        };
+        for (String order : orders) {
+            try {
+                read(order, PieceFileReader.WINDOW);
+            } catch (IOException e) {
+                continue;
+            }
+            throw new AssertionError("malformed order accepted: " + order.replace("\n", "\\n"));
+        }
+    }
+
+    private static void checkSame(PieceList expected, PieceList actual, String what) {
+        check(actual.size() == expected.size(), what + ": " + actual.size() + " lines");
+        for (int i = 0; i < expected.size(); i++) {
+            check(actual.getWidth(i) == expected.getWidth(i) && actual.getHeight(i) == expected.getHeight(i)
+                    && actual.getQuantity(i) == expected.getQuantity(i), what + ": line " + i + " differs");
+        }
+    }
+
+    private static PieceList read(String order, long window) throws IOException {
+        return readChunks(order, window, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads an order in chunks, joined back into one list.
+     */
+    private static PieceList readChunks(String order, long window, int chunk) throws IOException {
+        Path file = Files.createTempFile("order", ".txt");
+        try {
+            Files.write(file, order.getBytes(StandardCharsets.US_ASCII));
+            try (PieceFileReader reader = new PieceFileReader(file, window)) {
+                int n = reader.getPieceCount();
+                double[] widths = new double[n];
+                double[] heights = new double[n];
+                int[] quantities = new int[n];
+                int read = 0;
+                int copies = 0;
+                for (PieceList part; (part = reader.readChunk(chunk)) != null; ) {
+                    check(part.getFirstID() == copies, "chunk starts at ID " + part.getFirstID() + " after "
+                            + copies + " pieces");
+                    copies += part.getPieceCount();
+                    for (int i = 0; i < part.size(); i++, read++) {
+                        widths[read] = part.getWidth(i);
+                        heights[read] = part.getHeight(i);
+                        quantities[read] = part.getQuantity(i);
+                    }
+                }
+                check(read == n, read + " lines read for " + n);
+                return new PieceList(reader.getBinDimension(), 0, widths, heights, quantities, n);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
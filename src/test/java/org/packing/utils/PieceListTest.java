@@ -0,0 +1,97 @@
+package test.java.org.packing.utils;
+
+
+import main.java.org.packing.core.Bin;
+import main.java.org.packing.core.BinPacking;
+import main.java.org.packing.core.PackingOptions;
+import main.java.org.packing.primitives.MArea;
+import main.java.org.packing.primitives.PieceType;
+import main.java.org.packing.utils.PieceList;
+import main.java.org.packing.utils.Utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static test.java.org.packing.core.Layouts.check;
+import static test.java.org.packing.core.Layouts.checkLayout;
+import static test.java.org.packing.core.Layouts.checkUnchanged;
+import static test.java.org.packing.core.Layouts.snapshot;
+
+/**
+ * Quantities of the order files: both readers must agree on the pieces they
+ * create and on the lines they reject, and the block packing of the types
+ * must be a valid layout.
+ */
+public class PieceListTest {
+
+    public static void main(String[] args) throws IOException {
+        zeroQuantity();
+        malformedQuantity();
+        blockPacking();
+        System.out.println("PieceListTest OK");
+    }
+
+    private static void zeroQuantity() throws IOException {
+        String order = "100 100\n3\n10 20 0\n5 5 2\n7 7\n";
+        PieceList list = read(order);
+        check(list.getPieceCount() == 3, "piece count " + list.getPieceCount());
+        MArea[] pieces = list.toMAreas();
+        MArea[] scanned = (MArea[]) Utils.loadPieces(new BufferedReader(new StringReader(order)))[1];
+        check(pieces.length == 3 && scanned.length == 3, "pieces " + pieces.length + ", " + scanned.length);
+        double[] sides = {5, 5, 7};
+        for (int i = 0; i < 3; i++) {
+            check(pieces[i].getID() == i && scanned[i].getID() == i, "ID of piece " + i);
+            check(pieces[i].getBoundingBox2D().width == sides[i] && scanned[i].getBoundingBox2D().width == sides[i],
+                    "size of piece " + i);
+        }
+        PieceType[] types = list.toPieceTypes();
+        check(types.length == 2, "types " + types.length);
+        check(types[0].getID(0) == 0 && types[0].getQuantity() == 2, "first type");
+        check(types[1].getID(0) == 2 && types[1].getQuantity() == 1, "second type");
+        check(list.expand().size() == 3, "expanded size " + list.expand().size());
+    }
+
+    private static void malformedQuantity() {
+        String order = "100 100\n2\n10 20 2.5\n5 5\n";
+        try {
+            read(order);
+            throw new AssertionError("PieceFileReader accepted quantity 2.5");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            Utils.loadPieces(new BufferedReader(new StringReader(order)));
+            throw new AssertionError("Utils.loadPieces accepted quantity 2.5");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static void blockPacking() throws IOException {
+        PieceList list = read("1000 600\n5\n100 50 300\n70 70 40\n33 41 0\n33 41 150\n250 120 7 # note\n");
+        PieceType[] types = list.toPieceTypes();
+        MArea[] pieces = list.toMAreas();
+        MArea[] firstCopies = new MArea[types.length];
+        for (int t = 0; t < types.length; t++) {
+            firstCopies[t] = types[t].getPiece();
+        }
+        double[][] before = snapshot(firstCopies);
+        Bin[] bins = BinPacking.BlockPackingStrategy(types, list.getBinDimension(), PackingOptions.DEFAULT);
+        checkLayout(bins, pieces);
+        checkUnchanged(before, snapshot(firstCopies), "piece types");
+        checkLayout(BinPacking.BinPackingStrategy(pieces, list.getBinDimension()), list.toMAreas());
+    }
+
+    private static PieceList read(String order) throws IOException {
+        Path file = Files.createTempFile("order", ".txt");
+        try {
+            Files.write(file, order.getBytes("US-ASCII"));
+            return Utils.loadPieces(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
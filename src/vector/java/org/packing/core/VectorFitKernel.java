@@ -0,0 +1,47 @@
+package main.java.org.packing.core;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link FitKernel} checking as many free rectangles per instruction as the
+ * preferred vector shape of the processor holds doubles: 4 with AVX2, 8
+ * with AVX-512. Uses the incubating Vector API, so it only loads when the
+ * {@code jdk.incubator.vector} module is added, both to compile and to
+ * run; {@link FitScan} falls back to scalar code otherwise.
+ */
+final class VectorFitKernel implements FitKernel {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public double minLeftover(double[] widths, double[] heights, int from, int to, double width, double height) {
+		DoubleVector best = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+		int i = from;
+		for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+			DoubleVector fw = DoubleVector.fromArray(SPECIES, widths, i);
+			DoubleVector fh = DoubleVector.fromArray(SPECIES, heights, i);
+			VectorMask<Double> fits = fw.compare(VectorOperators.GE, width).and(fh.compare(VectorOperators.GE, height));
+			VectorMask<Double> fitsRotated = fw.compare(VectorOperators.GE, height)
+					.and(fh.compare(VectorOperators.GE, width));
+			DoubleVector leftover = fw.sub(width).min(fh.sub(height))
+					.blend(Double.POSITIVE_INFINITY, fits.not());
+			DoubleVector leftoverRotated = fw.sub(height).min(fh.sub(width))
+					.blend(Double.POSITIVE_INFINITY, fitsRotated.not());
+			best = best.min(leftover.min(leftoverRotated));
+		}
+		double min = best.reduceLanes(VectorOperators.MIN);
+		for (; i < to; i++) {
+			double fw = widths[i];
+			double fh = heights[i];
+			if (height <= fh && width <= fw) {
+				min = Math.min(min, Math.min(fw - width, fh - height));
+			}
+			if (height <= fw && width <= fh) {
+				min = Math.min(min, Math.min(fw - height, fh - width));
+			}
+		}
+		return min;
+	}
+}